@@ -0,0 +1,429 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.*;
+
+/**
+ * The AnalysisMetrics class records where a run spends its time. With
+ * metrics.enabled=true the run measures the wall time, thread CPU time and
+ * bytes allocated by the thread for each stage, for each analyzer's
+ * processing of every batch and for each analyzer's report. Every
+ * measurement is also a JFR event, so a flight recording of the run shows
+ * the stages and batches. The totals, the input size and the token count
+ * are written as JSON to output.file.metrics, metrics.json by default, next
+ * to the other reports, with the footprint of the off-heap token storage
+ * and the waits and depths of the pipeline's ring buffers when the run has
+ * them. Work done on several threads, as in parallel
+ * mode, is added up, so an analyzer's time can exceed the read stage.
+ *
+ * When metrics are not enabled no AnalysisMetrics object is created, and
+ * the instrumented code only checks for null.
+ *
+ *@author   April Albaugh
+ */
+
+public class AnalysisMetrics {
+
+    public static final String DEFAULT_METRICS_FILE = "metrics.json";
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS =
+            THREADS instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported()
+            ? (com.sun.management.ThreadMXBean) THREADS : null;
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+    private Map<String, Timer> stages;
+    private Map<String, Timer> processTimers;
+    private Map<String, Timer> writeTimers;
+    private LongAdder tokens;
+    private long bytes;
+    private Map<String, Long> storage;
+    private Map<String, Map<String, Long>> queues;
+    private Sample run;
+
+    /**
+     * Constructor for the AnalysisMetrics object. The run is timed from
+     * here until the report is written.
+     */
+    public AnalysisMetrics() {
+        stages = new LinkedHashMap<String, Timer>();
+        processTimers = new LinkedHashMap<String, Timer>();
+        writeTimers = new LinkedHashMap<String, Timer>();
+        tokens = new LongAdder();
+        queues = new LinkedHashMap<String, Map<String, Long>>();
+        run = start("run", null);
+    }
+
+    /**
+     * The forProperties method creates the metrics for a run when
+     * metrics.enabled is true
+     *
+     *@param properties the run properties
+     *@return   the metrics, or null when they are off
+     */
+    public static AnalysisMetrics forProperties(Properties properties) {
+        if (!Boolean.parseBoolean(properties.getProperty("metrics.enabled"))) {
+            return null;
+        }
+        return new AnalysisMetrics();
+    }
+
+    /**
+     * The stageTimer method returns the timer of a run stage
+     *
+     *@param stage  the stage name
+     *@return   the timer
+     */
+    public synchronized Timer stageTimer(String stage) {
+        return stages.computeIfAbsent(stage, name -> new Timer(name, null));
+    }
+
+    /**
+     * The processTimer method returns the timer of an analyzer's token
+     * processing
+     *
+     *@param analyzer   the analyzer
+     *@return   the timer
+     */
+    public synchronized Timer processTimer(Analyzer analyzer) {
+        String name = analyzer.getClass().getSimpleName();
+        return processTimers.computeIfAbsent(name, key -> new Timer("process", key));
+    }
+
+    /**
+     * The writeTimer method returns the timer of an analyzer's report
+     *
+     *@param analyzer   the analyzer
+     *@return   the timer
+     */
+    public synchronized Timer writeTimer(Analyzer analyzer) {
+        String name = analyzer.getClass().getSimpleName();
+        return writeTimers.computeIfAbsent(name, key -> new Timer("write", key));
+    }
+
+    /**
+     * The addTokens method counts tokens passed to the analyzers
+     *
+     *@param count  the number of tokens
+     */
+    public void addTokens(int count) {
+        tokens.add(count);
+    }
+
+    /**
+     * Gets the tokens attribute
+     *
+     *@return   The number of tokens passed to the analyzers
+     */
+    public long getTokens() {
+        return tokens.sum();
+    }
+
+    /**
+     * Sets the bytes attribute, the size of the input
+     *
+     *@param bytes  The new bytes value
+     */
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Sets the storage attribute, the footprint of the off-heap token
+     * storage
+     *
+     *@param storage    the footprint values by name
+     */
+    public void setStorage(Map<String, Long> storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * The addQueue method adds the statistics of a ring buffer
+     *
+     *@param name   the ring buffer name
+     *@param stats  the statistics by name
+     */
+    public synchronized void addQueue(String name, Map<String, Long> stats) {
+        queues.put(name, stats);
+    }
+
+    /**
+     * The start method starts a measurement on the current thread
+     *
+     *@param stage      the stage name
+     *@param analyzer   the analyzer name, or null
+     *@return   the sample to pass to Timer.stop
+     */
+    static Sample start(String stage, String analyzer) {
+        return new Sample(stage, analyzer);
+    }
+
+    /**
+     * The writeReport method stops timing the run and writes the metrics as
+     * JSON to output.file.metrics in output.dir
+     *
+     *@param properties     the run properties
+     *@param inputFilePath  the analyzed file
+     */
+    public void writeReport(Properties properties, String inputFilePath) {
+        Timer total = new Timer("run", null);
+        total.stop(run, tokens.sum());
+        String outputFilePath = properties.getProperty("output.dir")
+                + properties.getProperty("output.file.metrics", DEFAULT_METRICS_FILE);
+        try (PrintWriter out =
+                new PrintWriter(new BufferedWriter(new FileWriter(outputFilePath)))) {
+            double seconds = total.wallNanos.sum() / 1e9;
+            out.println("{");
+            out.println("  \"input\": " + quote(new File(inputFilePath).getAbsolutePath()) + ",");
+            out.println("  \"bytes\": " + bytes + ",");
+            out.println("  \"tokens\": " + tokens.sum() + ",");
+            out.println("  \"wallNanos\": " + total.wallNanos.sum() + ",");
+            out.println("  \"tokensPerSecond\": " + Math.round(tokens.sum() / seconds) + ",");
+            out.println("  \"megabytesPerSecond\": "
+                    + Math.round(bytes / seconds / (1 << 20) * 100) / 100.0 + ",");
+            if (storage != null) {
+                out.println("  \"storage\": {");
+                writeValues(out, storage, "    ");
+                out.println("  },");
+            }
+            if (!queues.isEmpty()) {
+                out.println("  \"queues\": {");
+                int remaining = queues.size();
+                for (Map.Entry<String, Map<String, Long>> queue : queues.entrySet()) {
+                    out.println("    " + quote(queue.getKey()) + ": {");
+                    writeValues(out, queue.getValue(), "      ");
+                    out.println(--remaining > 0 ? "    }," : "    }");
+                }
+                out.println("  },");
+            }
+            out.println("  \"stages\": {");
+            writeTimers(out, stages, "    ");
+            out.println("  },");
+            out.println("  \"analyzers\": {");
+            Set<String> names = new LinkedHashSet<String>(processTimers.keySet());
+            names.addAll(writeTimers.keySet());
+            int remaining = names.size();
+            for (String name : names) {
+                out.println("    " + quote(name) + ": {");
+                Map<String, Timer> timers = new LinkedHashMap<String, Timer>();
+                if (processTimers.containsKey(name)) {
+                    timers.put("process", processTimers.get(name));
+                }
+                if (writeTimers.containsKey(name)) {
+                    timers.put("write", writeTimers.get(name));
+                }
+                writeTimers(out, timers, "      ");
+                out.println(--remaining > 0 ? "    }," : "    }");
+            }
+            out.println("  }");
+            out.println("}");
+        } catch (FileNotFoundException fileNotFoundEx) {
+            System.out.println("Could not find file");
+            fileNotFoundEx.printStackTrace();
+        } catch (IOException ioEx) {
+            System.out.println("Could not write the file");
+            ioEx.printStackTrace();
+        } catch (Exception exception) {
+            System.out.println("Something bad happened");
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * The writeTimers method writes timers as JSON object members
+     *
+     *@param out    the report writer
+     *@param timers the timers by name
+     *@param indent the indent of the members
+     */
+    private static void writeTimers(PrintWriter out, Map<String, Timer> timers, String indent) {
+        int remaining = timers.size();
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            Timer timer = entry.getValue();
+            out.println(indent + quote(entry.getKey()) + ": {\"calls\": " + timer.calls.sum()
+                    + ", \"tokens\": " + timer.tokens.sum()
+                    + ", \"wallNanos\": " + timer.wallNanos.sum()
+                    + ", \"cpuNanos\": " + timer.cpuNanos.sum()
+                    + ", \"allocatedBytes\": " + timer.allocatedBytes.sum()
+                    + (--remaining > 0 ? "}," : "}"));
+        }
+    }
+
+    /**
+     * The writeValues method writes numbers as JSON object members
+     *
+     *@param out    the report writer
+     *@param values the numbers by name
+     *@param indent the indent of the members
+     */
+    private static void writeValues(PrintWriter out, Map<String, Long> values, String indent) {
+        int remaining = values.size();
+        for (Map.Entry<String, Long> entry : values.entrySet()) {
+            out.println(indent + quote(entry.getKey()) + ": " + entry.getValue()
+                    + (--remaining > 0 ? "," : ""));
+        }
+    }
+
+    /**
+     * The quote method quotes a JSON string
+     *
+     *@param value  the string
+     *@return   the JSON string
+     */
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int index = 0; index < value.length(); index++) {
+            char character = value.charAt(index);
+            if (character == '"' || character == '\\') {
+                quoted.append('\\').append(character);
+            } else if (character < ' ') {
+                quoted.append(String.format("\\u%04x", (int) character));
+            } else {
+                quoted.append(character);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * The currentCpuTime method returns the CPU time of the current thread,
+     * or 0 when it is not supported
+     *
+     *@return   the CPU time in nanoseconds
+     */
+    private static long currentCpuTime() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * The currentAllocatedBytes method returns the bytes allocated by the
+     * current thread, or 0 when it is not supported
+     *
+     *@return   the allocated bytes
+     */
+    private static long currentAllocatedBytes() {
+        return ALLOCATIONS != null ? ALLOCATIONS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * The Timer class adds up the measurements of one stage or analyzer.
+     * It may be used by several threads at once.
+     */
+    public static class Timer {
+
+        private String stage;
+        private String analyzer;
+        private LongAdder calls;
+        private LongAdder tokens;
+        private LongAdder wallNanos;
+        private LongAdder cpuNanos;
+        private LongAdder allocatedBytes;
+
+        /**
+         * Constructor for the Timer object
+         *
+         *@param stage      the stage name
+         *@param analyzer   the analyzer name, or null
+         */
+        Timer(String stage, String analyzer) {
+            this.stage = stage;
+            this.analyzer = analyzer;
+            calls = new LongAdder();
+            tokens = new LongAdder();
+            wallNanos = new LongAdder();
+            cpuNanos = new LongAdder();
+            allocatedBytes = new LongAdder();
+        }
+
+        /**
+         * The start method starts a measurement on the current thread
+         *
+         *@return   the sample to pass to stop
+         */
+        public Sample start() {
+            return AnalysisMetrics.start(stage, analyzer);
+        }
+
+        /**
+         * The stop method ends a measurement started on the current thread
+         * and adds it to the timer
+         *
+         *@param sample     the started sample
+         *@param tokenCount the number of tokens processed
+         */
+        public void stop(Sample sample, long tokenCount) {
+            calls.increment();
+            tokens.add(tokenCount);
+            wallNanos.add(System.nanoTime() - sample.wallNanos);
+            cpuNanos.add(currentCpuTime() - sample.cpuNanos);
+            allocatedBytes.add(currentAllocatedBytes() - sample.allocatedBytes);
+            sample.commit(tokenCount);
+        }
+    }
+
+    /**
+     * The Sample class holds the start of one measurement and its JFR event
+     */
+    public static class Sample {
+
+        private long wallNanos;
+        private long cpuNanos;
+        private long allocatedBytes;
+        private StageEvent event;
+
+        /**
+         * Constructor for the Sample object, which reads the clocks
+         *
+         *@param stage      the stage name
+         *@param analyzer   the analyzer name, or null
+         */
+        Sample(String stage, String analyzer) {
+            event = new StageEvent();
+            event.stage = stage;
+            event.analyzer = analyzer;
+            event.begin();
+            allocatedBytes = currentAllocatedBytes();
+            cpuNanos = currentCpuTime();
+            wallNanos = System.nanoTime();
+        }
+
+        /**
+         * The commit method ends the JFR event
+         *
+         *@param tokenCount the number of tokens processed
+         */
+        void commit(long tokenCount) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.tokens = tokenCount;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * The StageEvent class is the JFR event for one measurement
+     */
+    @Name("java112.analyzer.Stage")
+    @Label("Analysis Stage")
+    @Category("File Analyzer")
+    @Description("A stage of a run, or one analyzer processing a batch or writing its report")
+    public static class StageEvent extends Event {
+
+        @Label("Stage")
+        String stage;
+
+        @Label("Analyzer")
+        String analyzer;
+
+        @Label("Tokens")
+        long tokens;
+    }
+
+}
@@ -1,14 +1,21 @@
 package java112.analyzer;
 
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * The AnalyzeFile class is the main controlling class. This class has 
  * an instance variable that holds the path to the input file. This class runs 
  * the analysis on the input file and checks for a command line argument. This 
  * class calls each Analyzer class and processes tokens, and calls a method to 
- * write the output files.
+ * write the output files. With cache.dir set the results of a file that was
+ * analyzed before with the same settings are read from a ResultCache
+ * instead of tokenizing the file again. The analyzers that can share one
+ * loop over each batch are run by a FusedKernel unless fusion.enabled is
+ * false. With storage.backend=offheap the distinct tokens are kept in a
+ * TokenArena, which is freed by the close method.
  *
  *@author   April Albaugh
  */
@@ -20,6 +27,15 @@ public class AnalyzeFile {
     private Properties properties;
     private String inputFilePath;
     private List<Analyzer> analyzers;
+    private TokenDispatcher dispatcher;
+    private AnalyzerRegistry registry;
+    private AnalysisMetrics metrics;
+    private ResultCache resultCache;
+    private String cacheKey;
+    private Path cacheStaging;
+    private Properties reportProperties;
+    private InputCodec codec;
+    private TokenArena arena;
 
     /**
      *  Constructor for the AnalyzeFile object
@@ -28,6 +44,29 @@ public class AnalyzeFile {
 
     }
 
+    /**
+     *  Constructor for an AnalyzeFile object that shares a keyword list
+     *  which has already been loaded.
+     *
+     *@param properties the loaded properties
+     *@param keywordMatcher the compiled keyword list
+     */
+    public AnalyzeFile(Properties properties, KeywordMatcher keywordMatcher) {
+        this(properties, new AnalyzerRegistry(properties, keywordMatcher));
+    }
+
+    /**
+     *  Constructor for an AnalyzeFile object that creates its analyzers
+     *  from a shared registry.
+     *
+     *@param properties the loaded properties
+     *@param registry   the registry of the analyzers to run
+     */
+    public AnalyzeFile(Properties properties, AnalyzerRegistry registry) {
+        this.properties = properties;
+        this.registry = registry;
+    }
+
     /**
      * The runAnalysis method tests if one argument has been entered by the
      * user, if not it will output a message. It will receive the input file  
@@ -42,28 +81,166 @@ public class AnalyzeFile {
                                 + "an input file name");
             return;
         } else { 
-            inputFilePath = args[0];
             String propertiesFilePath = args[1];
             loadProperties(propertiesFilePath);
-            beginAnalyzers();
-            openAndReadFile();
-            writeAllOutputFiles();
+            registry = new AnalyzerRegistry(properties);
+            try {
+                analyze(args[0]);
+                writeAllOutputFiles();
+            } finally {
+                close();
+            }
+        }
+    }
+
+    /**
+     * Gets the analyzers attribute
+     *
+     *@return   the analyzers of the last analyzed file
+     */
+    public List<Analyzer> getAnalyzers() {
+        return analyzers;
+    }
+
+    /**
+     * The close method deletes the analyzers' spilled runs that were not
+     * merged into a report and frees the off-heap memory of the run's token
+     * tables. The analyzers can not be used after that when storage.backend
+     * is offheap.
+     */
+    public void close() {
+        if (analyzers != null) {
+            for (Analyzer analyzer : analyzers) {
+                analyzer.close();
+            }
+        }
+        if (arena != null) {
+            arena.close();
+            arena = null;
         }
     }
 
     /**
-     * The beginAnalyzers method starts each Analyzer
+     * The analyze method runs every analyzer over one input file using the
+     * shared setup and returns the analyzers without writing reports.
+     *
+     *@param inputFilePath  the file to analyze
+     *@return   the analyzers holding the results for the file
+     */
+    public List<Analyzer> analyze(String inputFilePath) {
+        this.inputFilePath = inputFilePath;
+        if (readCachedResults()) {
+            return analyzers;
+        }
+        beginAnalyzers();
+        openAndReadFile();
+        return analyzers;
+    }
+
+    /**
+     * The readCachedResults method looks the input file up in the result
+     * cache when cache.dir is set. On a hit the analyzers are read from the
+     * cache. On a miss the analyzers are set up to also write their binary
+     * reports to a staging directory, which is stored in the cache with the
+     * reports.
+     *
+     *@return   true if the results were read from the cache
+     */
+    private boolean readCachedResults() {
+        try {
+            resultCache = ResultCache.forProperties(properties, registry.getOutputProperties());
+            if (resultCache == null) {
+                return false;
+            }
+            cacheKey = resultCache.computeKey(inputFilePath);
+            Path entry = resultCache.find(cacheKey);
+            if (entry != null) {
+                metrics = AnalysisMetrics.forProperties(properties);
+                analyzers = createAnalyzers();
+                if (resultCache.read(entry, analyzers)) {
+                    return true;
+                }
+            }
+            cacheStaging = resultCache.createStaging();
+            reportProperties = properties;
+            properties = ResultCache.stagingProperties(properties, cacheStaging);
+        } catch (NoSuchFileException noSuchFileEx) {
+            System.out.println("Could not find file");
+            noSuchFileEx.printStackTrace();
+            resultCache = null;
+        } catch (IOException ioEx) {
+            System.out.println("Could not use the result cache");
+            ioEx.printStackTrace();
+            resultCache = null;
+        }
+        return false;
+    }
+
+    /**
+     * The storeCachedResults method stores the staged binary reports in the
+     * result cache, first copying them to output.dir when output.binary is
+     * true. The run properties are used again afterwards.
+     */
+    private void storeCachedResults() {
+        Properties stagingProperties = properties;
+        properties = reportProperties;
+        try {
+            if (Boolean.parseBoolean(properties.getProperty("output.binary"))) {
+                for (Analyzer analyzer : analyzers) {
+                    if (!(analyzer instanceof BinaryStateAnalyzer)) {
+                        continue;
+                    }
+                    String name = properties.getProperty(((BinaryStateAnalyzer) analyzer)
+                            .getReportProperty()) + BinaryReportOutput.BINARY_EXTENSION;
+                    Files.copy(cacheStaging.resolve(name),
+                            Paths.get(properties.getProperty("output.dir") + name),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            resultCache.store(cacheKey, cacheStaging, analyzers, stagingProperties);
+        } catch (IOException ioEx) {
+            System.out.println("Could not store the results in the cache");
+            ioEx.printStackTrace();
+            resultCache.discard(cacheStaging);
+        }
+        cacheStaging = null;
+    }
+
+    /**
+     * The beginAnalyzers method starts each Analyzer and the dispatcher that
+     * passes them the tokens, and the run metrics when metrics.enabled is
+     * true
      */
     private void beginAnalyzers() {
+        metrics = AnalysisMetrics.forProperties(properties);
+        arena = TokenArena.forProperties(properties);
+        analyzers = createAnalyzers();
+        dispatcher = new TokenDispatcher(analyzers, isFusionEnabled(),
+                TokenTable.forArena(arena));
+        if (metrics != null) {
+            dispatcher.setMetrics(metrics);
+        }
+    }
 
-        analyzers = new ArrayList<Analyzer>();
+    /**
+     * The isFusionEnabled method tests if the analyzers that can share a
+     * FusedKernel should be run by one. Turning fusion off runs every
+     * analyzer on its own, which helps when debugging an analyzer.
+     *
+     *@return   false only when fusion.enabled is false
+     */
+    private boolean isFusionEnabled() {
+        return !"false".equals(properties.getProperty("fusion.enabled"));
+    }
 
-        analyzers.add(new SummaryReport(properties));
-        analyzers.add(new UniqueTokenAnalyzer(properties));
-        analyzers.add(new BigWordAnalyzer(properties));
-        analyzers.add(new TokenCountAnalyzer(properties));
-        analyzers.add(new TokenSizeAnalyzer(properties));
-        analyzers.add(new KeywordAnalyzer(properties));
+    /**
+     * The createAnalyzers method creates a new set of the analyzers whose
+     * reports are configured
+     *
+     *@return   the analyzers in report order
+     */
+    List<Analyzer> createAnalyzers() {
+        return registry.createAnalyzers(properties);
     }
 
     /**
@@ -71,11 +248,21 @@ public class AnalyzeFile {
      *  line into the Properties object.
      */
     private void loadProperties(String propertiesFilePath)  {
+        properties = readProperties(propertiesFilePath);
+    }
+
+    /**
+     *  The readProperties method loads a properties file from the classpath.
+     *
+     *@param propertiesFilePath the properties resource name
+     *@return   the loaded properties
+     */
+    static Properties readProperties(String propertiesFilePath)  {
 
-        properties = new Properties();
+        Properties properties = new Properties();
 
         try {
-            properties.load(this.getClass().getResourceAsStream(propertiesFilePath));
+            properties.load(AnalyzeFile.class.getResourceAsStream(propertiesFilePath));
         } catch(IOException ioEx) {
             System.out.println("Could not load the properties file");
             ioEx.printStackTrace();
@@ -84,22 +271,196 @@ public class AnalyzeFile {
             exception.printStackTrace();
         }
 
+        return properties;
     }
 
     /**
-     * The openAndReadFile method will read the input file
-     *
+     * The openAndReadFile method will read the input file. By default the file
+     * is memory mapped and scanned by the MappedFileTokenizer. Setting the
+     * tokenizer.mode property to reference uses the original line reader and
+     * split tokenizer, which produces exactly the same tokens. A compressed
+     * file, detected by its first bytes, is decoded by its InputCodec and
+     * tokenized as a stream. With analysis.mode set to pipeline the file, or
+     * its decoded stream, is read, tokenized and analyzed on separate
+     * threads. With metrics the whole read is measured as the read stage.
      */
     private void openAndReadFile() {
+        AnalysisMetrics.Sample sample = null;
+        if (metrics != null) {
+            sample = metrics.stageTimer("read").start();
+        }
+        codec = detectCodec();
+        if ("reference".equals(properties.getProperty("tokenizer.mode"))) {
+            readFileByLine();
+        } else if ("pipeline".equals(properties.getProperty("analysis.mode"))) {
+            readFileInPipeline();
+        } else if (codec != null) {
+            readCompressedFile();
+        } else if ("parallel".equals(properties.getProperty("analysis.mode"))
+                && canMergeAnalyzers()) {
+            readFileInParallel();
+        } else {
+            readMappedFile();
+        }
+        if (metrics != null) {
+            metrics.setBytes(new File(inputFilePath).length());
+            metrics.stageTimer("read").stop(sample, metrics.getTokens());
+        }
+    }
+
+    /**
+     * The detectCodec method finds the codec of a compressed input file
+     *
+     *@return   the codec, or null for a file that is not compressed or
+     *      can not be read, which the read then reports
+     */
+    private InputCodec detectCodec() {
+        try {
+            return InputCodec.detect(Paths.get(inputFilePath));
+        } catch (IOException ioEx) {
+            return null;
+        }
+    }
+
+    /**
+     * The readCompressedFile method tokenizes the decoded stream of a
+     * compressed input file and passes each batch of tokens to the
+     * dispatcher.
+     */
+    private void readCompressedFile() {
+        try (InputStream input = codec.open(Paths.get(inputFilePath), properties)) {
+            MappedFileTokenizer tokenizer = new MappedFileTokenizer(inputFilePath);
+            tokenizer.setPredicate(dispatcher.getTokenPredicate());
+            tokenizer.tokenize(input, new TokenBatch(), dispatcher::dispatch);
+        } catch (NoSuchFileException noSuchFileEx) {
+            System.out.println("Could not find file");
+            noSuchFileEx.printStackTrace();
+        } catch (IOException ioEx) {
+            System.out.println("Could not read the file");
+            ioEx.printStackTrace();
+        } catch (Exception exception) {
+            System.out.println("Something bad happened");
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * The readMappedFile method tokenizes the memory mapped input file and
+     * passes each batch of tokens to the dispatcher. The file is mapped in
+     * segments of the input.map.segment.size property.
+     */
+    private void readMappedFile() {
+        try {
+            MappedFileTokenizer tokenizer = new MappedFileTokenizer(inputFilePath);
+            tokenizer.setSegmentSize(MappedFileTokenizer.segmentSize(properties));
+            tokenizer.setPredicate(dispatcher.getTokenPredicate());
+            tokenizer.tokenize(new TokenBatch(), dispatcher::dispatch);
+        } catch (NoSuchFileException noSuchFileEx) {
+            System.out.println("Could not find file");
+            noSuchFileEx.printStackTrace();
+        } catch (IOException ioEx) {
+            System.out.println("Could not read the file");
+            ioEx.printStackTrace();
+        } catch (Exception exception) {
+            System.out.println("Something bad happened");
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * The readFileInPipeline method reads the input file, or the decoded
+     * stream of a compressed file, in a PipelineAnalysis that passes the
+     * batches to the dispatcher's analyzers on their own threads.
+     */
+    private void readFileInPipeline() {
+        Path path = Paths.get(inputFilePath);
+        try (InputStream input = codec != null ? codec.open(path, properties)
+                : Files.newInputStream(path)) {
+            PipelineAnalysis pipeline = new PipelineAnalysis(inputFilePath, dispatcher,
+                    properties);
+            if (metrics != null) {
+                pipeline.setMetrics(metrics);
+            }
+            pipeline.run(input);
+        } catch (NoSuchFileException noSuchFileEx) {
+            System.out.println("Could not find file");
+            noSuchFileEx.printStackTrace();
+        } catch (IOException ioEx) {
+            System.out.println("Could not read the file");
+            ioEx.printStackTrace();
+        } catch (Exception exception) {
+            System.out.println("Something bad happened");
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * The canMergeAnalyzers method tests if the ranges of a parallel run can
+     * be merged. A run with an analyzer that is not mergeable, such as one
+     * from a provider, is mapped on one thread instead.
+     *
+     *@return   true if every analyzer can be merged
+     */
+    private boolean canMergeAnalyzers() {
+        Analyzer unmergeable = AnalyzerRegistry.findUnmergeable(analyzers);
+        if (unmergeable != null) {
+            System.out.println("The " + unmergeable.getClass().getSimpleName()
+                    + " analyzer can not be merged, so the file is analyzed on one thread");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * The readFileInParallel method analyzes ranges of the mapped input file
+     * on the number of threads in the analysis.threads property, or one per
+     * processor, and keeps the merged analyzers.
+     */
+    private void readFileInParallel() {
+        int threads = Integer.parseInt(properties.getProperty("analysis.threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        try {
+            ParallelAnalysis analysis = new ParallelAnalysis(inputFilePath,
+                    this::createAnalyzers, threads);
+            if (metrics != null) {
+                analysis.setMetrics(metrics);
+            }
+            analysis.setFusion(isFusionEnabled());
+            analysis.setArena(arena);
+            analysis.setSegmentSize(MappedFileTokenizer.segmentSize(properties));
+            analyzers = analysis.run();
+        } catch (NoSuchFileException noSuchFileEx) {
+            System.out.println("Could not find file");
+            noSuchFileEx.printStackTrace();
+        } catch (IOException ioEx) {
+            System.out.println("Could not read the file");
+            ioEx.printStackTrace();
+        } catch (Exception exception) {
+            System.out.println("Something bad happened");
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * The readFileByLine method reads the input file, or the decoded stream
+     * of a compressed file, one line at a time and calls the createTokens
+     * method for each line. This is the reference tokenizer.
+     */
+    private void readFileByLine() {
         BufferedReader input = null;
         try {
-            input = new BufferedReader(new FileReader(inputFilePath));
+            if (codec == null) {
+                input = new BufferedReader(new FileReader(inputFilePath));
+            } else {
+                input = new BufferedReader(new InputStreamReader(
+                        codec.open(Paths.get(inputFilePath), properties)));
+            }
 
-            while (input.ready()) {
-                String line = null;
-                line = input.readLine();
+            String line = null;
+            while ((line = input.readLine()) != null) {
                 createTokens(line);
             }
+            dispatcher.flush();
         } catch (FileNotFoundException fileNotFoundEx) {
             System.out.println("Could not find file");
             fileNotFoundEx.printStackTrace();
@@ -135,26 +496,82 @@ public class AnalyzeFile {
     }
 
     /**
-     * The analyzeTokens method loops through the Analyzers, and calls the
-     * processToken method, if token is not blank, for each analyzer.
+     * The analyzeTokens method passes the token to the dispatcher, which
+     * calls each analyzer if the token is not blank.
      *
      *@param token  token processed words from input file
      */
     private void analyzeTokens(String token) {
-        if (token.length() > 0) {
+        dispatcher.dispatch(token);
+    }
+
+    /**
+     * The writeAllOutputFiles method calls each Analyzer writeOutputFile method.
+     * The reports are written at the same time, one task per analyzer,
+     * unless output.parallel is false. With metrics each report is measured
+     * and the metrics report is written last.
+     */
+    public void writeAllOutputFiles() { 
+        if ("false".equals(properties.getProperty("output.parallel"))
+                || analyzers.size() < 2) {
             for (Analyzer analyzer : analyzers) {
-                analyzer.processToken(token);
+                writeOutputFile(analyzer);
+            }  
+        } else {
+            writeOutputFilesInParallel();
+        }
+        if (cacheStaging != null) {
+            storeCachedResults();
+        }
+        if (metrics != null) {
+            if (arena != null) {
+                metrics.setStorage(arena.getFootprint());
             }
+            metrics.writeReport(properties, inputFilePath);
         }
     }
 
     /**
-     * The writeAllOutputFiles method calls each Analyzer writeOutputFile method.
+     * The writeOutputFilesInParallel method writes each report on its own
+     * thread and waits for all of them.
      */
-    private void writeAllOutputFiles() { 
-        for (Analyzer analyzer : analyzers) {
-                analyzer.writeOutputFile(inputFilePath);
-        }  
+    private void writeOutputFilesInParallel() {
+        int threads = Math.min(analyzers.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<?>> reports = new ArrayList<Future<?>>();
+            for (Analyzer analyzer : analyzers) {
+                reports.add(executor.submit(() -> writeOutputFile(analyzer)));
+            }
+            for (Future<?> report : reports) {
+                report.get();
+            }
+        } catch (InterruptedException interruptedEx) {
+            Thread.currentThread().interrupt();
+            System.out.println("Interrupted while writing the reports");
+        } catch (ExecutionException executionEx) {
+            System.out.println("Something bad happened");
+            executionEx.getCause().printStackTrace();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The writeOutputFile method writes one analyzer's report, measuring it
+     * when there are metrics.
+     *
+     *@param analyzer   the analyzer
+     */
+    private void writeOutputFile(Analyzer analyzer) {
+        if (metrics == null) {
+            analyzer.writeOutputFile(inputFilePath);
+            return;
+        }
+        AnalysisMetrics.Timer timer = metrics.writeTimer(analyzer);
+        AnalysisMetrics.Sample sample = timer.start();
+        analyzer.writeOutputFile(inputFilePath);
+        timer.stop(sample, 0);
     }
 
 }
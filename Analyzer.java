@@ -3,7 +3,9 @@ package java112.analyzer;
 import java.util.*;
 
 /**
- * The Analyzer interface with two abstract methods
+ * The Analyzer interface with two abstract methods and a batch method that
+ * by default passes each token of the batch to processToken. An analyzer
+ * that only reads some of the tokens can say which with a TokenPredicate.
  *
  *@author   April Albaugh
  */
@@ -17,10 +19,42 @@ public interface Analyzer {
      */
     void processToken(String token);
 
+    /**
+     * The processTokens method processes a batch of tokens in order. Analyzers
+     * can override it with a loop over the whole batch.
+     *
+     *@param batch  tokens from the input file
+     */
+    default void processTokens(TokenBatch batch) {
+        for (int index = 0; index < batch.size(); index++) {
+            processToken(batch.getToken(index));
+        }
+    }
+
+    /**
+     * The getTokenPredicate method tells the tokenizer which tokens the
+     * analyzer reads. The other tokens of a batch are kept as their length
+     * only, and the analyzer must not ask for their text or id.
+     *
+     *@return   the predicate, by default ALL
+     */
+    default TokenPredicate getTokenPredicate() {
+        return TokenPredicate.ALL;
+    }
+
     /**
      * The writeOutputFile method writes a report for all tokens
      *@param inputFilePath  inputFilePath file name
      */
     void writeOutputFile(String inputFilePath);
 
+    /**
+     * The close method frees what the analyzer keeps outside the heap, such
+     * as spilled runs that were never merged into a report. It is called
+     * when the run is over, whether the reports were written or not.
+     */
+    default void close() {
+
+    }
+
 }
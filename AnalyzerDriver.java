@@ -12,13 +12,23 @@ public class AnalyzerDriver {
     /**
      * The main program for the AnalyzerDriver class that instantiates an
      * AnalyzeFile object. Passes the command line arguments to the runAnalysis
-     * method.
+     * method. When the first argument is -batch the remaining arguments are
+     * passed to a BatchAnalysis instead, and when it is -merge to a
+     * BinaryReportMerger.
      *
      *@param args   The command line arguments
      */
     public static void main(String[] args) {
-        AnalyzeFile analyzer = new AnalyzeFile();
-        analyzer.runAnalysis(args);
+        if (args.length > 0 && BatchAnalysis.BATCH_ARG.equals(args[0])) {
+            BatchAnalysis batch = new BatchAnalysis();
+            batch.runBatch(args);
+        } else if (args.length > 0 && BinaryReportMerger.MERGE_ARG.equals(args[0])) {
+            BinaryReportMerger merger = new BinaryReportMerger();
+            merger.runMerge(args);
+        } else {
+            AnalyzeFile analyzer = new AnalyzeFile();
+            analyzer.runAnalysis(args);
+        }
     }
 
 }
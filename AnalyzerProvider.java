@@ -0,0 +1,76 @@
+package java112.analyzer;
+
+import java.util.Properties;
+import java.util.function.BiFunction;
+
+/**
+ * The AnalyzerProvider interface describes an analyzer to the
+ * AnalyzerRegistry: the output property naming its report, the properties
+ * it can not run without, and how to create it. An analyzer is only
+ * created when its output property is set. Providers outside this package
+ * are found with a ServiceLoader, listed in
+ * META-INF/services/java112.analyzer.AnalyzerProvider.
+ *
+ * An analyzer only takes part in parallel analysis and the batch corpus
+ * reports if it is a MergeableAnalyzer, and in -merge, output.binary and
+ * the result cache if it is also a BinaryStateAnalyzer. A run with an
+ * analyzer that is not mergeable analyzes a parallel file on one thread,
+ * writes no corpus reports in a batch and can not merge binary reports.
+ *
+ *@author   April Albaugh
+ */
+
+public interface AnalyzerProvider {
+
+    /**
+     * Gets the outputProperty attribute
+     *
+     *@return   the property naming the analyzer's report
+     */
+    String getOutputProperty();
+
+    /**
+     * Gets the requiredProperties attribute
+     *
+     *@return   the properties that must be set for the analyzer to run
+     */
+    default String[] getRequiredProperties() {
+        return new String[0];
+    }
+
+    /**
+     * The create method creates a new analyzer
+     *
+     *@param properties the run properties
+     *@param registry   the registry, which shares setup such as the keywords
+     *@return   the analyzer
+     */
+    Analyzer create(Properties properties, AnalyzerRegistry registry);
+
+    /**
+     * The of method creates a provider from a factory
+     *
+     *@param outputProperty     the property naming the report
+     *@param factory            creates the analyzer
+     *@param requiredProperties the properties that must be set
+     *@return   the provider
+     */
+    static AnalyzerProvider of(String outputProperty,
+            BiFunction<Properties, AnalyzerRegistry, Analyzer> factory,
+            String... requiredProperties) {
+        return new AnalyzerProvider() {
+            public String getOutputProperty() {
+                return outputProperty;
+            }
+
+            public String[] getRequiredProperties() {
+                return requiredProperties;
+            }
+
+            public Analyzer create(Properties properties, AnalyzerRegistry registry) {
+                return factory.apply(properties, registry);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,162 @@
+package java112.analyzer;
+
+import java.util.*;
+
+/**
+ * The AnalyzerRegistry class decides which analyzers a run needs and
+ * creates them. The six built in analyzers come first, in report order,
+ * followed by any providers found with a ServiceLoader. An analyzer is
+ * enabled when its output.file property is set and not blank, and its
+ * output property plus ".enabled" is not false. An enabled analyzer whose
+ * required properties are missing is left out with a message. The keyword
+ * file is only read when an analyzer asks for the KeywordMatcher.
+ *
+ *@author   April Albaugh
+ */
+
+public class AnalyzerRegistry {
+
+    private Properties properties;
+    private List<AnalyzerProvider> providers;
+    private KeywordMatcher keywordMatcher;
+
+    /**
+     * Constructor for the AnalyzerRegistry object
+     *
+     *@param properties the run properties
+     */
+    public AnalyzerRegistry(Properties properties) {
+        this(properties, null);
+    }
+
+    /**
+     * Constructor for an AnalyzerRegistry that shares a KeywordMatcher which
+     * has already been loaded
+     *
+     *@param properties     the run properties
+     *@param keywordMatcher the compiled keyword list, or null to load it
+     *      when it is needed
+     */
+    public AnalyzerRegistry(Properties properties, KeywordMatcher keywordMatcher) {
+        this.properties = properties;
+        this.keywordMatcher = keywordMatcher;
+        providers = new ArrayList<AnalyzerProvider>();
+        for (AnalyzerProvider provider : findProviders()) {
+            if (isEnabled(provider)) {
+                providers.add(provider);
+            }
+        }
+    }
+
+    /**
+     * The findProviders method lists the built in providers and the
+     * providers found with a ServiceLoader
+     *
+     *@return   every provider in report order
+     */
+    private List<AnalyzerProvider> findProviders() {
+        List<AnalyzerProvider> found = new ArrayList<AnalyzerProvider>();
+        found.add(AnalyzerProvider.of("output.file.summary",
+                (properties, registry) -> new SummaryReport(properties)));
+        found.add(AnalyzerProvider.of("output.file.unique",
+                (properties, registry) -> new UniqueTokenAnalyzer(properties)));
+        found.add(AnalyzerProvider.of("output.file.bigwords",
+                (properties, registry) -> new BigWordAnalyzer(properties),
+                "bigwords.minimum.length"));
+        found.add(AnalyzerProvider.of("output.file.token.count",
+                (properties, registry) -> new TokenCountAnalyzer(properties)));
+        found.add(AnalyzerProvider.of("output.file.token.size",
+                (properties, registry) -> new TokenSizeAnalyzer(properties)));
+        found.add(AnalyzerProvider.of("output.file.keyword",
+                (properties, registry) -> new KeywordAnalyzer(properties,
+                registry.getKeywordMatcher()), "file.path.keywords"));
+        for (AnalyzerProvider provider : ServiceLoader.load(AnalyzerProvider.class)) {
+            found.add(provider);
+        }
+        return found;
+    }
+
+    /**
+     * The isEnabled method tests if a provider's report is wanted and its
+     * required properties are set
+     *
+     *@param provider   the provider
+     *@return   true if the analyzer should run
+     */
+    private boolean isEnabled(AnalyzerProvider provider) {
+        String output = properties.getProperty(provider.getOutputProperty());
+        if (output == null || output.trim().isEmpty() || "false".equals(
+                properties.getProperty(provider.getOutputProperty() + ".enabled"))) {
+            return false;
+        }
+        for (String required : provider.getRequiredProperties()) {
+            if (properties.getProperty(required) == null) {
+                System.out.println("The " + provider.getOutputProperty()
+                        + " report needs the " + required + " property");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the keywordMatcher attribute, reading the keyword file the first
+     * time it is needed
+     *
+     *@return   The keywordMatcher value
+     */
+    public synchronized KeywordMatcher getKeywordMatcher() {
+        if (keywordMatcher == null) {
+            keywordMatcher = new KeywordMatcher(KeywordAnalyzer.readKeywords(properties));
+        }
+        return keywordMatcher;
+    }
+
+    /**
+     * Gets the outputProperties attribute
+     *
+     *@return   the output properties of the enabled analyzers, in order
+     */
+    public List<String> getOutputProperties() {
+        List<String> outputProperties = new ArrayList<String>();
+        for (AnalyzerProvider provider : providers) {
+            outputProperties.add(provider.getOutputProperty());
+        }
+        return outputProperties;
+    }
+
+    /**
+     * The createAnalyzers method creates a new set of the enabled analyzers
+     *
+     *@param analyzerProperties the properties the analyzers write with,
+     *      which can differ from the run properties in where they write
+     *@return   the analyzers in report order
+     */
+    public List<Analyzer> createAnalyzers(Properties analyzerProperties) {
+        List<Analyzer> analyzers = new ArrayList<Analyzer>();
+        for (AnalyzerProvider provider : providers) {
+            analyzers.add(provider.create(analyzerProperties, this));
+        }
+        return analyzers;
+    }
+
+    /**
+     * The findUnmergeable method finds an analyzer whose results can not be
+     * merged. Parallel analysis, the batch corpus reports and merging binary
+     * reports all merge analyzers, so a run with one of these can not use
+     * them.
+     *
+     *@param analyzers  the analyzers of a run
+     *@return   the first analyzer that is not a MergeableAnalyzer, or null
+     *      if every analyzer can be merged
+     */
+    public static Analyzer findUnmergeable(List<Analyzer> analyzers) {
+        for (Analyzer analyzer : analyzers) {
+            if (!(analyzer instanceof MergeableAnalyzer)) {
+                return analyzer;
+            }
+        }
+        return null;
+    }
+
+}
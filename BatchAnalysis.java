@@ -0,0 +1,329 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+/**
+ * The BatchAnalysis class analyzes many input files in one run. The inputs
+ * can be files, directories, glob patterns or a manifest file named with a
+ * leading @. The properties and the analyzer registry, with its compiled
+ * keyword list, are loaded once and shared by every job. Files are
+ * analyzed concurrently, on virtual threads when the runtime has them.
+ * Each file gets its own reports in a directory under output.dir, and the
+ * merged results are written to output.dir + corpus/. A run with an
+ * analyzer that can not be merged writes no corpus reports.
+ *
+ *@author   April Albaugh
+ */
+
+public class BatchAnalysis {
+
+    public static final String BATCH_ARG = "-batch";
+    public static final int MINIMUM_ARGS = 3;
+    public static final String CORPUS_DIR = "corpus";
+
+    private Properties properties;
+    private AnalyzerRegistry registry;
+    private String outputDir;
+    private AnalyzeFile corpusFile;
+    private boolean unmergeable;
+
+    /**
+     * Constructor for the BatchAnalysis object
+     */
+    public BatchAnalysis() {
+
+    }
+
+    /**
+     * The runBatch method expects -batch, the properties file and at least
+     * one input. It analyzes every input file and writes the per file and
+     * corpus reports.
+     *
+     *@param args  from the command line
+     */
+    public void runBatch(String[] args) {
+        if (args.length < MINIMUM_ARGS) {
+            System.out.println("Please enter " + BATCH_ARG + ", a properties file name "
+                                + "and one or more files, directories, globs or @manifests");
+            return;
+        }
+
+        properties = AnalyzeFile.readProperties(args[1]);
+        registry = new AnalyzerRegistry(properties);
+        outputDir = properties.getProperty("output.dir");
+        String[] inputs = Arrays.copyOfRange(args, 2, args.length);
+
+        try {
+            List<Path> files = findInputFiles(inputs);
+            List<Analyzer> corpus = analyzeFiles(files);
+            if (corpus != null) {
+                writeCorpusReports(corpus, String.join(" ", inputs));
+            }
+        } catch (IOException ioEx) {
+            System.out.println("Could not read the batch inputs");
+            ioEx.printStackTrace();
+        } catch (Exception exception) {
+            System.out.println("Something bad happened");
+            exception.printStackTrace();
+        } finally {
+            if (corpusFile != null) {
+                corpusFile.close();
+            }
+        }
+    }
+
+    /**
+     * The findInputFiles method expands each input into the regular files it
+     * names. Directories are walked, globs are matched below their first
+     * directory without wildcards, and manifests list one path per line.
+     *
+     *@param inputs the inputs from the command line
+     *@return   the files in a stable order
+     *@exception IOException  if a directory or manifest can not be read
+     */
+    private List<Path> findInputFiles(String[] inputs) throws IOException {
+        List<Path> files = new ArrayList<Path>();
+        for (String input : inputs) {
+            if (input.startsWith("@")) {
+                for (String line : Files.readAllLines(Paths.get(input.substring(1)))) {
+                    line = line.trim();
+                    if (line.length() > 0 && !line.startsWith("#")) {
+                        files.addAll(findInputFiles(new String[] {line}));
+                    }
+                }
+            } else if (isGlob(input)) {
+                files.addAll(matchGlob(input));
+            } else if (Files.isDirectory(Paths.get(input))) {
+                files.addAll(walk(Paths.get(input), path -> true));
+            } else {
+                files.add(Paths.get(input));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * The isGlob method tests for glob wildcard characters
+     *
+     *@param input  the input from the command line
+     *@return   true if the input is a glob pattern
+     */
+    private boolean isGlob(String input) {
+        return input.indexOf('*') >= 0 || input.indexOf('?') >= 0
+                || input.indexOf('[') >= 0 || input.indexOf('{') >= 0;
+    }
+
+    /**
+     * The matchGlob method walks the directory in front of the first
+     * wildcard and keeps the files matching the whole pattern.
+     *
+     *@param glob   the glob pattern
+     *@return   the matching files in order
+     *@exception IOException  if the directory can not be walked
+     */
+    private List<Path> matchGlob(String glob) throws IOException {
+        String separator = FileSystems.getDefault().getSeparator();
+        int wildcard = 0;
+        while (!isGlob(glob.substring(0, wildcard + 1))) {
+            wildcard++;
+        }
+        int directoryEnd = glob.lastIndexOf(separator, wildcard);
+        Path root = directoryEnd < 0 ? Paths.get("") : Paths.get(glob.substring(0, directoryEnd + 1));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        return walk(root, path -> matcher.matches(path));
+    }
+
+    /**
+     * The walk method lists the regular files below a directory
+     *
+     *@param root   the directory to walk
+     *@param filter keeps the files to analyze
+     *@return   the files sorted by path
+     *@exception IOException  if the directory can not be walked
+     */
+    private List<Path> walk(Path root, java.util.function.Predicate<Path> filter)
+            throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(filter)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * The analyzeFiles method submits one job per file and merges the
+     * finished jobs in file order into the corpus analyzers. At most a window
+     * of jobs is in flight, so finished results do not pile up in memory.
+     *
+     *@param files  the input files
+     *@return   the corpus analyzers, or null if there were no files
+     *@exception Exception  if a job fails
+     */
+    private List<Analyzer> analyzeFiles(List<Path> files) throws Exception {
+        int window = Integer.parseInt(properties.getProperty("batch.concurrency",
+                String.valueOf(Runtime.getRuntime().availableProcessors() * 4)));
+        List<String> outputNames = createOutputNames(files);
+        Deque<Future<AnalyzeFile>> running = new ArrayDeque<Future<AnalyzeFile>>();
+        List<Analyzer> corpus = null;
+
+        ExecutorService executor = createExecutor();
+        try {
+            for (int index = 0; index < files.size(); index++) {
+                if (running.size() >= window) {
+                    corpus = mergeCorpus(corpus, running.removeFirst().get());
+                }
+                String inputFilePath = files.get(index).toString();
+                String outputName = outputNames.get(index);
+                running.addLast(executor.submit(() -> analyzeFile(inputFilePath, outputName)));
+            }
+            while (!running.isEmpty()) {
+                corpus = mergeCorpus(corpus, running.removeFirst().get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return corpus;
+    }
+
+    /**
+     * The createExecutor method uses a virtual thread per task executor when
+     * the runtime supports it, otherwise a pool with a thread per processor.
+     *
+     *@return   the executor for the jobs
+     */
+    private ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException reflectiveEx) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * The createOutputNames method names each file's report directory after
+     * the file, adding a number when two files have the same name.
+     *
+     *@param files  the input files
+     *@return   the directory names in file order
+     */
+    private List<String> createOutputNames(List<Path> files) {
+        List<String> names = new ArrayList<String>();
+        Map<String, Integer> used = new HashMap<String, Integer>();
+        used.put(CORPUS_DIR, 1);
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            int count = used.merge(name, 1, Integer::sum);
+            names.add(count == 1 ? name : name + "_" + count);
+        }
+        return names;
+    }
+
+    /**
+     * The analyzeFile method analyzes one file with the shared setup and
+     * writes its reports to its own directory under output.dir.
+     *
+     *@param inputFilePath  the file to analyze
+     *@param outputName     the report directory name
+     *@return   the analyzed file, holding its analyzers
+     *@exception IOException  if the report directory can not be created
+     */
+    private AnalyzeFile analyzeFile(String inputFilePath, String outputName)
+            throws IOException {
+        Properties fileProperties = createOutputProperties(outputName);
+        AnalyzeFile analyzeFile = new AnalyzeFile(fileProperties, registry);
+        try {
+            analyzeFile.analyze(inputFilePath);
+            analyzeFile.writeAllOutputFiles();
+        } catch (RuntimeException exception) {
+            analyzeFile.close();
+            throw exception;
+        }
+        return analyzeFile;
+    }
+
+    /**
+     * The createOutputProperties method creates properties that default to
+     * the shared properties but write to a directory under output.dir. The
+     * files are already analyzed concurrently, so each file's reports are
+     * written one after another.
+     *
+     *@param outputName the report directory name
+     *@return   the properties for the reports
+     *@exception IOException  if the directory can not be created
+     */
+    private Properties createOutputProperties(String outputName) throws IOException {
+        String directory = outputDir + outputName + File.separator;
+        Files.createDirectories(Paths.get(directory));
+        Properties outputProperties = new Properties(properties);
+        outputProperties.setProperty("output.dir", directory);
+        outputProperties.setProperty("output.parallel", "false");
+        return outputProperties;
+    }
+
+    /**
+     * The mergeCorpus method merges the analyzers of the next file into the
+     * corpus analyzers and frees the file's off-heap storage. The first
+     * file's analyzers become the corpus analyzers, so its storage is kept
+     * until the corpus reports are written. When the first file has an
+     * analyzer that can not be merged every file is only closed.
+     *
+     *@param corpus         the corpus analyzers, null before the first file
+     *@param analyzeFile    the next analyzed file
+     *@return   the corpus analyzers, or null if they can not be merged
+     */
+    private List<Analyzer> mergeCorpus(List<Analyzer> corpus, AnalyzeFile analyzeFile) {
+        if (corpus == null && !unmergeable) {
+            Analyzer analyzer = AnalyzerRegistry.findUnmergeable(analyzeFile.getAnalyzers());
+            if (analyzer != null) {
+                System.out.println("The " + analyzer.getClass().getSimpleName()
+                        + " analyzer can not be merged, so no corpus reports are written");
+                unmergeable = true;
+            }
+        }
+        if (unmergeable) {
+            analyzeFile.close();
+            return null;
+        }
+        if (corpus == null) {
+            corpusFile = analyzeFile;
+            return analyzeFile.getAnalyzers();
+        }
+        ParallelAnalysis.mergeAnalyzers(corpus, analyzeFile.getAnalyzers());
+        analyzeFile.close();
+        return corpus;
+    }
+
+    /**
+     * The writeCorpusReports method writes the merged reports to the corpus
+     * directory. The analyzers of the first file hold the corpus results but
+     * still write with the first file's properties, so new analyzers are
+     * created with the corpus properties and the results merged into them.
+     *
+     *@param corpus the corpus analyzers
+     *@param inputs the batch inputs, shown as the input in the summary
+     *@exception IOException  if the corpus directory can not be created
+     */
+    private void writeCorpusReports(List<Analyzer> corpus, String inputs) throws IOException {
+        AnalyzeFile corpusFile = new AnalyzeFile(createOutputProperties(CORPUS_DIR),
+                registry);
+        List<Analyzer> analyzers = corpusFile.createAnalyzers();
+        TokenDispatcher.shareTable(analyzers);
+        try {
+            ParallelAnalysis.mergeAnalyzers(analyzers, corpus);
+            for (Analyzer analyzer : analyzers) {
+                analyzer.writeOutputFile(inputs);
+            }
+        } finally {
+            for (Analyzer analyzer : analyzers) {
+                analyzer.close();
+            }
+        }
+    }
+
+}
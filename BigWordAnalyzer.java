@@ -1,27 +1,35 @@
 package java112.analyzer;
 
 import java.io.*;
+import java.nio.file.NoSuchFileException;
 import java.util.*;
 
 /**
  * The BigWordAnalyzer class implements the Analyzer interface and
  * finds unique tokens that are greater than or equal to a specified number. 
- * It outputs the largest tokens in a report.
+ * It outputs the largest tokens in a report. The tokens are stored in a
+ * TokenTable, which can be shared with the other analyzers of the run, and
+ * the analyzer only keeps a BitSet of the big word ids. The big words can
+ * also be written as a binary report dictionary.
  *
  *@author   April Albaugh
  */
 
-public class BigWordAnalyzer implements Analyzer {
+public class BigWordAnalyzer implements MergeableAnalyzer<BigWordAnalyzer>,
+        TokenIdAnalyzer, BinaryStateAnalyzer {
 
     private Properties properties;
-    private Set<String> bigWords;
+    private TokenTable tokenTable;
+    private BitSet bigWordIds;
     private int minimumWordLength;
 
     /**
-     * Constructor for the BigWordAnalyzer object. Instantiates a TreeSet.
+     * Constructor for the BigWordAnalyzer object. Instantiates a TokenTable
+     * and a BitSet.
      */
     public BigWordAnalyzer()  {
-        bigWords = new TreeSet<String>();
+        tokenTable = new TokenTable();
+        bigWordIds = new BitSet();
     }
 
     /**
@@ -36,27 +44,139 @@ public class BigWordAnalyzer implements Analyzer {
     }
 
    /**
-     * The getBigWords method returns the TreeSet which holds the set 
-     * of biggest tokens
+     * The getBigWords method returns a sorted read only set of the
+     * biggest tokens
      *
      *@return   The bigWords set
      */
     public Set<String> getBigWords()  {
-        return bigWords;
+        SortedSet<String> bigWords = new TreeSet<String>();
+        for (int id = bigWordIds.nextSetBit(0); id >= 0; id = bigWordIds.nextSetBit(id + 1)) {
+            bigWords.add(tokenTable.getToken(id));
+        }
+        return Collections.unmodifiableSortedSet(bigWords);
     }
 
+    /**
+     * The setTokenTable method replaces the analyzer's own table with the
+     * table shared by the run.
+     *
+     *@param tokenTable the shared token table
+     */
+    public void setTokenTable(TokenTable tokenTable) {
+        this.tokenTable = tokenTable;
+    }
 
     /**
      *  The processToken method processes each token in input file and adds 
-     *  them to the TreeSet.
+     *  the big ones to the TokenTable.
      *
      *@param token Token from the AnalyzeFile class
      */
     public void processToken(String token) {
         if(token.length() >= minimumWordLength)  {
-             bigWords.add(token);
+             bigWordIds.set(tokenTable.add(token));
+        }
+
+    }
+
+    /**
+     *  The processTokenId method marks the token id if the token is big
+     *
+     *@param id     The token id in the TokenTable
+     *@param token  Token from the AnalyzeFile class
+     */
+    public void processTokenId(int id, String token) {
+        if(token.length() >= minimumWordLength)  {
+             bigWordIds.set(id);
         }
+    }
 
+    /**
+     *  Gets the bigWordIds attribute, the ids a FusedKernel marks
+     *
+     *@return   The bigWordIds value
+     */
+    BitSet getBigWordIds() {
+        return bigWordIds;
+    }
+
+    /**
+     *  Gets the minimumWordLength attribute
+     *
+     *@return   The minimumWordLength value
+     */
+    int getMinimumWordLength() {
+        return minimumWordLength;
+    }
+
+    /**
+     *  The getTokenPredicate method tells the tokenizer that only the big
+     *  tokens are read
+     *
+     *@return   the predicate for tokens of at least the minimum length
+     */
+    public TokenPredicate getTokenPredicate() {
+        return TokenPredicate.lengthBetween(minimumWordLength, Integer.MAX_VALUE);
+    }
+
+    /**
+     *  The processTokens method marks the ids of the big tokens of a batch.
+     *  A batch with ids from another table is processed token by token.
+     *
+     *@param batch  tokens from the input file
+     */
+    public void processTokens(TokenBatch batch) {
+        if (batch.getTokenTable() != tokenTable) {
+            for (int index = 0; index < batch.size(); index++) {
+                if (batch.getLength(index) >= minimumWordLength) {
+                    processToken(batch.getToken(index));
+                }
+            }
+            return;
+        }
+        for (int index = 0; index < batch.size(); index++) {
+            if (batch.getLength(index) >= minimumWordLength) {
+                bigWordIds.set(batch.getId(index));
+            }
+        }
+    }
+
+    /**
+     *  The merge method adds the big words of another BigWordAnalyzer
+     *
+     *@param other  BigWordAnalyzer for the next part of the input
+     */
+    public void merge(BigWordAnalyzer other) {
+        if (other.tokenTable == tokenTable) {
+            bigWordIds.or(other.bigWordIds);
+            return;
+        }
+        for (int id = other.bigWordIds.nextSetBit(0); id >= 0;
+                id = other.bigWordIds.nextSetBit(id + 1)) {
+            bigWordIds.set(tokenTable.add(other.tokenTable.getToken(id)));
+        }
+    }
+
+    /**
+     * Gets the reportProperty attribute
+     *
+     *@return   The property naming the big word report
+     */
+    public String getReportProperty() {
+        return "output.file.bigwords";
+    }
+
+    /**
+     * The readState method adds the big words of a binary report
+     *
+     *@param input  the binary report
+     *@exception IOException  if the report can not be read
+     */
+    public void readState(BinaryReportInput input) throws IOException {
+        for (String token = input.readToken(); token != null; token = input.readToken()) {
+            bigWordIds.set(tokenTable.add(token));
+        }
     }
 
     /**
@@ -68,14 +188,23 @@ public class BigWordAnalyzer implements Analyzer {
     public void writeOutputFile(String inputFilePath) {
         String outputFilePath = properties.getProperty("output.dir")
                 + properties.getProperty("output.file.bigwords");
-        try (PrintWriter output = 
-                new PrintWriter(new BufferedWriter(new FileWriter(outputFilePath)))) {
-            for (String word : bigWords) {
-                output.println(word);
+        try (ReportWriter output = ReportWriter.open(properties, outputFilePath);
+                BinaryReportOutput binary =
+                        BinaryReportOutput.open(properties, this, inputFilePath)) {
+            for (int id : tokenTable.sortedIds()) {
+                if (bigWordIds.get(id)) {
+                    output.println(tokenTable.getToken(id));
+                    if (binary != null) {
+                        binary.writeToken(tokenTable.getToken(id));
+                    }
+                }
+            }
+            if (binary != null) {
+                binary.endDictionary();
             }
-        } catch (FileNotFoundException fileNotFoundEx) {
+        } catch (NoSuchFileException noSuchFileEx) {
             System.out.println("Could not find file");
-            fileNotFoundEx.printStackTrace();
+            noSuchFileEx.printStackTrace();
         } catch (IOException ioEx) {
             System.out.println("Could not read the file");
             ioEx.printStackTrace();
@@ -0,0 +1,170 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * The BinaryReportInput class reads a binary report written by a
+ * BinaryReportOutput. Opening the report reads and checks the header.
+ *
+ *@author   April Albaugh
+ */
+
+public class BinaryReportInput implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private DataInputStream input;
+    private String analyzerName;
+    private String inputFilePath;
+    private byte[] previous;
+
+    /**
+     * Constructor for the BinaryReportInput object, which reads the header
+     *
+     *@param input  the stream to read from
+     *@exception IOException  if the stream is not a binary report
+     */
+    public BinaryReportInput(InputStream input) throws IOException {
+        this.input = new DataInputStream(input);
+        previous = new byte[64];
+        if (this.input.readInt() != BinaryReportOutput.MAGIC) {
+            throw new IOException("Not a binary report");
+        }
+        long version = readVarLong();
+        if (version != BinaryReportOutput.VERSION) {
+            throw new IOException("Unsupported binary report version " + version);
+        }
+        analyzerName = readString();
+        inputFilePath = readString();
+    }
+
+    /**
+     * The open method opens a binary report file
+     *
+     *@param path   the report file
+     *@return   the report, positioned after its header
+     *@exception IOException  if the file can not be read
+     */
+    public static BinaryReportInput open(Path path) throws IOException {
+        return new BinaryReportInput(new BufferedInputStream(Files.newInputStream(path),
+                BUFFER_SIZE));
+    }
+
+    /**
+     * Gets the analyzerName attribute, the class that wrote the report
+     *
+     *@return   The analyzerName value
+     */
+    public String getAnalyzerName() {
+        return analyzerName;
+    }
+
+    /**
+     * Gets the inputFilePath attribute, the file the report was made from
+     *
+     *@return   The inputFilePath value
+     */
+    public String getInputFilePath() {
+        return inputFilePath;
+    }
+
+    /**
+     * The readVarLong method reads a variable length number
+     *
+     *@return   the number
+     *@exception IOException  if the report can not be read
+     */
+    public long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int next = input.readUnsignedByte();
+            value |= (long) (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in binary report");
+    }
+
+    /**
+     * The readVarInt method reads a variable length number that fits in an
+     * int
+     *
+     *@return   the number
+     *@exception IOException  if the report can not be read
+     */
+    public int readVarInt() throws IOException {
+        long value = readVarLong();
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Number too large in binary report: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * The readByte method reads one byte
+     *
+     *@return   the byte
+     *@exception IOException  if the report can not be read
+     */
+    public int readByte() throws IOException {
+        return input.readUnsignedByte();
+    }
+
+    /**
+     * The readBytes method reads a length and an array of bytes
+     *
+     *@return   the bytes
+     *@exception IOException  if the report can not be read
+     */
+    public byte[] readBytes() throws IOException {
+        byte[] bytes = new byte[readVarInt()];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * The readString method reads a length and a UTF-8 string
+     *
+     *@return   the string
+     *@exception IOException  if the report can not be read
+     */
+    public String readString() throws IOException {
+        return new String(readBytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The readToken method reads the next token of a dictionary
+     *
+     *@return   the token, or null at the end of the dictionary
+     *@exception IOException  if the report can not be read
+     */
+    public String readToken() throws IOException {
+        int suffix = readVarInt();
+        if (suffix == 0) {
+            return null;
+        }
+        suffix--;
+        int shared = readVarInt();
+        int length = shared + suffix;
+        if (length > previous.length) {
+            byte[] grown = new byte[Math.max(length, previous.length * 2)];
+            System.arraycopy(previous, 0, grown, 0, shared);
+            previous = grown;
+        }
+        input.readFully(previous, shared, suffix);
+        return new String(previous, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * The close method closes the report
+     *
+     *@exception IOException  if the report can not be closed
+     */
+    public void close() throws IOException {
+        input.close();
+    }
+
+}
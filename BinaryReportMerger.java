@@ -0,0 +1,176 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * The BinaryReportMerger class combines the binary reports of separate runs
+ * without reading the input files again. Each input directory holds the
+ * .bin reports written by a run with output.binary=true. The reports are
+ * read back into new analyzers, merged in the order of the directories, as
+ * if the inputs had been one file, and written to output.dir.
+ *
+ *@author   April Albaugh
+ */
+
+public class BinaryReportMerger {
+
+    public static final String MERGE_ARG = "-merge";
+    public static final int MINIMUM_ARGS = 3;
+
+    private Properties properties;
+    private AnalyzerRegistry registry;
+
+    /**
+     * Constructor for the BinaryReportMerger object
+     */
+    public BinaryReportMerger() {
+
+    }
+
+    /**
+     * The main program for the BinaryReportMerger class
+     *
+     *@param args   The properties file name and the report directories
+     */
+    public static void main(String[] args) {
+        String[] mergeArgs = new String[args.length + 1];
+        mergeArgs[0] = MERGE_ARG;
+        System.arraycopy(args, 0, mergeArgs, 1, args.length);
+        new BinaryReportMerger().runMerge(mergeArgs);
+    }
+
+    /**
+     * The runMerge method expects -merge, the properties file and at least
+     * one directory of binary reports. It merges the reports and writes the
+     * combined reports to output.dir.
+     *
+     *@param args  from the command line
+     */
+    public void runMerge(String[] args) {
+        if (args.length < MINIMUM_ARGS) {
+            System.out.println("Please enter " + MERGE_ARG + ", a properties file name "
+                                + "and one or more directories of binary reports");
+            return;
+        }
+
+        properties = AnalyzeFile.readProperties(args[1]);
+        registry = new AnalyzerRegistry(properties);
+
+        List<Analyzer> merged = null;
+        try {
+            AnalyzeFile mergedFile = new AnalyzeFile(properties, registry);
+            merged = mergedFile.createAnalyzers();
+            if (!canMerge(merged)) {
+                return;
+            }
+            TokenDispatcher.shareTable(merged);
+            List<String> inputs = new ArrayList<String>();
+            for (int index = 2; index < args.length; index++) {
+                mergeReports(merged, args[index], inputs);
+            }
+            for (Analyzer analyzer : merged) {
+                analyzer.writeOutputFile(String.join(" ", inputs));
+            }
+        } catch (NoSuchFileException noSuchFileEx) {
+            System.out.println("Could not find file");
+            noSuchFileEx.printStackTrace();
+        } catch (IOException ioEx) {
+            System.out.println("Could not read the file");
+            ioEx.printStackTrace();
+        } catch (Exception exception) {
+            System.out.println("Something bad happened");
+            exception.printStackTrace();
+        } finally {
+            if (merged != null) {
+                for (Analyzer analyzer : merged) {
+                    analyzer.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * The canMerge method tests if every analyzer can be merged and read
+     * from a binary report
+     *
+     *@param analyzers  the analyzers to merge into
+     *@return   true if the reports can be merged
+     */
+    private boolean canMerge(List<Analyzer> analyzers) {
+        for (Analyzer analyzer : analyzers) {
+            if (!(analyzer instanceof MergeableAnalyzer)
+                    || !(analyzer instanceof BinaryStateAnalyzer)) {
+                System.out.println("The " + analyzer.getClass().getSimpleName()
+                        + " analyzer has no binary report that can be merged");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The mergeReports method creates new analyzers, reads each one's binary
+     * report from a directory and merges them into the merged analyzers. The
+     * input file of the first report is added to the inputs. The new
+     * analyzers are closed afterwards, so their spilled runs and off-heap
+     * storage are freed even when a report can not be read.
+     *
+     *@param merged     the analyzers holding the reports merged so far
+     *@param directory  the directory of binary reports
+     *@param inputs     the input files of the reports read so far
+     *@exception IOException  if a report is missing or can not be read
+     */
+    private void mergeReports(List<Analyzer> merged, String directory, List<String> inputs)
+            throws IOException {
+        List<Analyzer> analyzers = new AnalyzeFile(properties, registry).createAnalyzers();
+        try {
+            inputs.add(readStates(analyzers, analyzer -> Paths.get(directory,
+                    properties.getProperty(analyzer.getReportProperty())
+                    + BinaryReportOutput.BINARY_EXTENSION)));
+            ParallelAnalysis.mergeAnalyzers(merged, analyzers);
+        } finally {
+            for (Analyzer analyzer : analyzers) {
+                analyzer.close();
+            }
+        }
+    }
+
+    /**
+     * The readStates method reads the binary report of each analyzer,
+     * checking that it was written by the same kind of analyzer.
+     *
+     *@param analyzers  the analyzers
+     *@param reports    gives the report file of an analyzer
+     *@return   the input file of the first report
+     *@exception IOException  if an analyzer has no binary state or a
+     *      report is missing or can not be read
+     */
+    static String readStates(List<Analyzer> analyzers,
+            Function<BinaryStateAnalyzer, Path> reports) throws IOException {
+        String inputFilePath = null;
+        for (Analyzer analyzer : analyzers) {
+            if (!(analyzer instanceof BinaryStateAnalyzer)) {
+                throw new IOException(analyzer.getClass().getSimpleName()
+                        + " has no binary report");
+            }
+            BinaryStateAnalyzer stateAnalyzer = (BinaryStateAnalyzer) analyzer;
+            Path path = reports.apply(stateAnalyzer);
+            try (BinaryReportInput input = BinaryReportInput.open(path)) {
+                String name = analyzer.getClass().getSimpleName();
+                if (!name.equals(input.getAnalyzerName())) {
+                    throw new IOException(path + " was written by "
+                            + input.getAnalyzerName() + ", not " + name);
+                }
+                if (inputFilePath == null) {
+                    inputFilePath = input.getInputFilePath();
+                }
+                stateAnalyzer.readState(input);
+            }
+        }
+        return inputFilePath;
+    }
+
+}
@@ -0,0 +1,165 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Properties;
+
+/**
+ * The BinaryReportOutput class writes a binary report. The file starts with
+ * a header of the format version, the analyzer class name and the input
+ * file path. Numbers are unsigned variable length integers, seven bits to a
+ * byte. Tokens are written as a front coded dictionary in sorted order:
+ * each token is the length of its new suffix plus one, the number of
+ * leading characters it shares with the token before it, and the suffix.
+ * A 0 ends the dictionary.
+ *
+ *@author   April Albaugh
+ */
+
+public class BinaryReportOutput implements Closeable {
+
+    public static final int MAGIC = 0x4A414231;
+    public static final int VERSION = 1;
+    public static final String BINARY_EXTENSION = ".bin";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private DataOutputStream output;
+    private byte[] previous;
+    private int previousLength;
+
+    /**
+     * Constructor for the BinaryReportOutput object, which writes the header
+     *
+     *@param output         the stream to write to
+     *@param analyzerName   the analyzer class name
+     *@param inputFilePath  the analyzed file
+     *@exception IOException  if the header can not be written
+     */
+    public BinaryReportOutput(OutputStream output, String analyzerName, String inputFilePath)
+            throws IOException {
+        this.output = new DataOutputStream(output);
+        previous = new byte[64];
+        this.output.writeInt(MAGIC);
+        writeVarLong(VERSION);
+        writeString(analyzerName);
+        writeString(inputFilePath);
+    }
+
+    /**
+     * The open method opens the binary report of an analyzer when
+     * output.binary is true. The report is written to output.binary.dir,
+     * or to output.dir when that is not set.
+     *
+     *@param properties     the run properties
+     *@param analyzer       the analyzer
+     *@param inputFilePath  the analyzed file
+     *@return   the binary report, or null when binary output is off
+     *@exception IOException  if the report can not be created
+     */
+    public static BinaryReportOutput open(Properties properties, BinaryStateAnalyzer analyzer,
+            String inputFilePath) throws IOException {
+        if (!Boolean.parseBoolean(properties.getProperty("output.binary"))) {
+            return null;
+        }
+        Path path = Paths.get(properties.getProperty("output.binary.dir",
+                properties.getProperty("output.dir"))
+                + properties.getProperty(analyzer.getReportProperty()) + BINARY_EXTENSION);
+        return new BinaryReportOutput(new BufferedOutputStream(Files.newOutputStream(path),
+                BUFFER_SIZE), analyzer.getClass().getSimpleName(), inputFilePath);
+    }
+
+    /**
+     * The writeVarLong method writes a number that is not negative
+     *
+     *@param value  the number
+     *@exception IOException  if the report can not be written
+     */
+    public void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    /**
+     * The writeByte method writes one byte, such as a mode flag
+     *
+     *@param value  the byte
+     *@exception IOException  if the report can not be written
+     */
+    public void writeByte(int value) throws IOException {
+        output.writeByte(value);
+    }
+
+    /**
+     * The writeBytes method writes a length and an array of bytes
+     *
+     *@param bytes  the bytes
+     *@exception IOException  if the report can not be written
+     */
+    public void writeBytes(byte[] bytes) throws IOException {
+        writeVarLong(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * The writeString method writes a length and a UTF-8 string
+     *
+     *@param value  the string
+     *@exception IOException  if the report can not be written
+     */
+    public void writeString(String value) throws IOException {
+        writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The writeToken method adds a token to the dictionary. Tokens must be
+     * written in alphabetical order.
+     *
+     *@param token  the token
+     *@exception IOException  if the report can not be written
+     */
+    public void writeToken(String token) throws IOException {
+        int length = token.length();
+        int shared = 0;
+        while (shared < length && shared < previousLength
+                && previous[shared] == (byte) token.charAt(shared)) {
+            shared++;
+        }
+        writeVarLong(length - shared + 1);
+        writeVarLong(shared);
+        if (length > previous.length) {
+            byte[] grown = new byte[Math.max(length, previous.length * 2)];
+            System.arraycopy(previous, 0, grown, 0, shared);
+            previous = grown;
+        }
+        for (int index = shared; index < length; index++) {
+            previous[index] = (byte) token.charAt(index);
+        }
+        output.write(previous, shared, length - shared);
+        previousLength = length;
+    }
+
+    /**
+     * The endDictionary method ends the dictionary, so another can follow
+     *
+     *@exception IOException  if the report can not be written
+     */
+    public void endDictionary() throws IOException {
+        writeVarLong(0);
+        previousLength = 0;
+    }
+
+    /**
+     * The close method writes the buffered bytes and closes the report
+     *
+     *@exception IOException  if the report can not be written
+     */
+    public void close() throws IOException {
+        output.close();
+    }
+
+}
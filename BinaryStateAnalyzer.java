@@ -0,0 +1,35 @@
+package java112.analyzer;
+
+import java.io.IOException;
+
+/**
+ * The BinaryStateAnalyzer interface is implemented by analyzers that can
+ * write their results in the binary report format as well as text. With
+ * output.binary=true each such analyzer writes its report file name plus
+ * ".bin" next to its text report. An analyzer created with the same
+ * properties can read the binary report back, merge it with others and
+ * write the text report again, without the input.
+ *
+ *@author   April Albaugh
+ */
+
+public interface BinaryStateAnalyzer extends Analyzer {
+
+    /**
+     * The getReportProperty method returns the property naming the
+     * analyzer's text report, whose value plus ".bin" names its binary report.
+     *
+     *@return   the report file property
+     */
+    String getReportProperty();
+
+    /**
+     * The readState method reads the results of a binary report into an
+     * analyzer that has not processed any tokens.
+     *
+     *@param input  the binary report, positioned after its header
+     *@exception IOException  if the report can not be read
+     */
+    void readState(BinaryReportInput input) throws IOException;
+
+}
@@ -0,0 +1,333 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * The ExternalSorter class lets an analyzer keep more distinct tokens than
+ * fit in memory. The analyzer counts tokens in a TokenTable until it reaches
+ * its threshold, then writes the table to a temporary file as a run of
+ * tokens and counts in alphabetical order and starts over with an empty
+ * table. When the report is written the runs are merged with a priority
+ * queue, adding the counts of a token found in more than one run, and the
+ * entries are passed on in the same order as TokenTable.sortedIds. At most
+ * MERGE_WIDTH runs are read at once; when there are more, groups of runs
+ * are first merged into longer runs. The runs are kept after a report, so
+ * they can still be merged into another analyzer, as for the corpus of a
+ * batch, and are only deleted by the close method.
+ *
+ *@author   April Albaugh
+ */
+
+public class ExternalSorter {
+
+    public static final int MERGE_WIDTH = 64;
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    private static final int END_OF_RUN = -1;
+
+    private Path directory;
+    private List<Path> runs;
+
+    /**
+     * Constructor for the ExternalSorter object
+     *
+     *@param directory  the directory for the run files
+     */
+    public ExternalSorter(Path directory) {
+        this.directory = directory;
+        runs = new ArrayList<Path>();
+    }
+
+    /**
+     * The forProperties method creates a sorter when spill.threshold.tokens
+     * is set, with the run files in spill.dir or the system temp directory.
+     *
+     *@param properties the run properties
+     *@return   the sorter, or null when spilling is off
+     */
+    public static ExternalSorter forProperties(Properties properties) {
+        if (getThreshold(properties) <= 0) {
+            return null;
+        }
+        return new ExternalSorter(Paths.get(properties.getProperty("spill.dir",
+                System.getProperty("java.io.tmpdir"))));
+    }
+
+    /**
+     * The getThreshold method returns the number of distinct tokens an
+     * analyzer keeps in memory before it writes a run, or 0 when spilling
+     * is off.
+     *
+     *@param properties the run properties
+     *@return   the threshold
+     */
+    public static int getThreshold(Properties properties) {
+        return Integer.parseInt(properties.getProperty("spill.threshold.tokens", "0"));
+    }
+
+    /**
+     * Gets the runCount attribute
+     *
+     *@return   The number of runs written and not yet merged
+     */
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * The writeRun method writes the tokens of a table to a new run in
+     * alphabetical order. Tokens with a count of 0 are left out.
+     *
+     *@param tokenTable the tokens
+     *@param counts     the count of each token id, or null for a count of 1
+     *@exception IOException  if the run can not be written
+     */
+    public void writeRun(TokenTable tokenTable, long[] counts) throws IOException {
+        if (tokenTable.size() == 0) {
+            return;
+        }
+        Path run = createRun();
+        try (DataOutputStream output = openRun(run)) {
+            for (int id : tokenTable.sortedIds()) {
+                long count = counts == null ? 1 : id < counts.length ? counts[id] : 0;
+                if (count > 0) {
+                    writeEntry(output, tokenTable.getToken(id), count);
+                }
+            }
+            output.writeInt(END_OF_RUN);
+        }
+        runs.add(run);
+    }
+
+    /**
+     * The addRuns method takes over the runs of another sorter
+     *
+     *@param other  the sorter whose runs are added
+     */
+    public void addRuns(ExternalSorter other) {
+        runs.addAll(other.runs);
+        other.runs.clear();
+    }
+
+    /**
+     * The merge method passes every token of the runs with its total count
+     * to the consumer in alphabetical order. Groups of runs merged into a
+     * longer run are deleted, the rest are kept until the sorter is closed.
+     *
+     *@param consumer   receives the merged entries
+     *@exception IOException  if a run can not be read
+     */
+    public void merge(EntryConsumer consumer) throws IOException {
+        while (runs.size() > MERGE_WIDTH) {
+            List<Path> group = new ArrayList<Path>(runs.subList(0, MERGE_WIDTH));
+            Path run = createRun();
+            try (DataOutputStream output = openRun(run)) {
+                mergeRuns(group, (token, count) -> writeEntry(output, token, count));
+                output.writeInt(END_OF_RUN);
+            } catch (IOException ioEx) {
+                Files.deleteIfExists(run);
+                throw ioEx;
+            }
+            runs.subList(0, MERGE_WIDTH).clear();
+            runs.add(run);
+            deleteRuns(group);
+        }
+        mergeRuns(runs, consumer);
+    }
+
+    /**
+     * The close method deletes the runs that have not been merged, as when
+     * the analysis failed before the report was written
+     */
+    public void close() {
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException ioEx) {
+                System.out.println("Could not delete the spill file " + run);
+                ioEx.printStackTrace();
+            }
+        }
+        runs.clear();
+    }
+
+    /**
+     * The mergeRuns method merges a group of runs with a priority queue
+     * ordered by each run's current token. Every reader is either in the
+     * queue or closed, so no run is left open when a read fails.
+     *
+     *@param group      the runs to merge
+     *@param consumer   receives the merged entries
+     *@exception IOException  if a run can not be read
+     */
+    private void mergeRuns(List<Path> group, EntryConsumer consumer) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(Math.max(1, group.size()),
+                Comparator.comparing((RunReader reader) -> reader.token));
+        try {
+            for (Path run : group) {
+                advance(queue, new RunReader(run));
+            }
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                String token = reader.token;
+                long count = reader.count;
+                advance(queue, reader);
+                while (!queue.isEmpty() && queue.peek().token.equals(token)) {
+                    reader = queue.poll();
+                    count += reader.count;
+                    advance(queue, reader);
+                }
+                consumer.accept(token, count);
+            }
+        } finally {
+            for (RunReader reader : queue) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * The advance method moves a reader to its next entry and puts it back
+     * in the queue, or closes it at the end of its run or when the run can
+     * not be read.
+     *
+     *@param queue  the merge queue
+     *@param reader a new reader, or the reader taken from the queue
+     *@exception IOException  if the run can not be read
+     */
+    private void advance(PriorityQueue<RunReader> queue, RunReader reader) throws IOException {
+        boolean more = false;
+        try {
+            more = reader.next();
+        } finally {
+            if (more) {
+                queue.add(reader);
+            } else {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * The createRun method creates an empty run file
+     *
+     *@return   the run file
+     *@exception IOException  if the file can not be created
+     */
+    private Path createRun() throws IOException {
+        Files.createDirectories(directory);
+        Path run = Files.createTempFile(directory, "tokens", ".run");
+        return run;
+    }
+
+    /**
+     * The openRun method opens a run file for writing
+     *
+     *@param run    the run file
+     *@return   the output stream
+     *@exception IOException  if the file can not be opened
+     */
+    private DataOutputStream openRun(Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run),
+                BUFFER_SIZE));
+    }
+
+    /**
+     * The writeEntry method writes one token and its count
+     *
+     *@param output the run output
+     *@param token  the token
+     *@param count  the count
+     *@exception IOException  if the run can not be written
+     */
+    private static void writeEntry(DataOutputStream output, String token, long count)
+            throws IOException {
+        output.writeInt(token.length());
+        output.writeBytes(token);
+        output.writeLong(count);
+    }
+
+    /**
+     * The deleteRuns method deletes run files and forgets them
+     *
+     *@param group  the runs to delete
+     *@exception IOException  if a run can not be deleted
+     */
+    private void deleteRuns(List<Path> group) throws IOException {
+        for (Path run : group) {
+            Files.deleteIfExists(run);
+        }
+        group.clear();
+    }
+
+    /**
+     * The EntryConsumer interface receives the merged tokens and counts
+     */
+    public interface EntryConsumer {
+
+        /**
+         * The accept method receives one token and its total count
+         *
+         *@param token  the token
+         *@param count  the total count
+         *@exception IOException  if the entry can not be written
+         */
+        void accept(String token, long count) throws IOException;
+    }
+
+    /**
+     * The RunReader class reads the entries of one run
+     */
+    private static class RunReader implements Closeable {
+
+        private DataInputStream input;
+        private byte[] bytes;
+        private String token;
+        private long count;
+
+        /**
+         * Constructor for the RunReader object
+         *
+         *@param run    the run file
+         *@exception IOException  if the file can not be opened
+         */
+        RunReader(Path run) throws IOException {
+            input = new DataInputStream(new BufferedInputStream(Files.newInputStream(run),
+                    BUFFER_SIZE));
+            bytes = new byte[64];
+        }
+
+        /**
+         * The next method reads the next entry
+         *
+         *@return   false at the end of the run
+         *@exception IOException  if the run can not be read
+         */
+        boolean next() throws IOException {
+            int length = input.readInt();
+            if (length == END_OF_RUN) {
+                return false;
+            }
+            if (length > bytes.length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            input.readFully(bytes, 0, length);
+            token = new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+            count = input.readLong();
+            return true;
+        }
+
+        /**
+         * The close method closes the run file
+         *
+         *@exception IOException  if the file can not be closed
+         */
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+package java112.analyzer;
+
+import java.util.*;
+
+/**
+ * The FusedKernel class processes a batch for several analyzers in one loop
+ * over the tokens. The SummaryReport, TokenSizeAnalyzer and BigWordAnalyzer
+ * all use the count and length of each token, and the UniqueTokenAnalyzer,
+ * TokenCountAnalyzer and BigWordAnalyzer all use the token ids the
+ * dispatcher looked up once in the shared TokenTable. The kernel reads each
+ * token's length and id once and updates the state of every analyzer it
+ * covers directly, so the reports are the same as when each analyzer loops
+ * over the batch itself. Analyzers in a mode the kernel does not handle,
+ * such as estimates, sketches or spilling, are left out of it.
+ *
+ *@author   April Albaugh
+ */
+
+public class FusedKernel {
+
+    private TokenTable tokenTable;
+    private List<Analyzer> analyzers;
+    private SummaryReport summary;
+    private TokenSizeAnalyzer tokenSizes;
+    private BigWordAnalyzer bigWords;
+    private UniqueTokenAnalyzer uniqueTokens;
+    private TokenCountAnalyzer tokenCounts;
+
+    /**
+     * Constructor for the FusedKernel object
+     *
+     *@param tokenTable the table the dispatcher assigns the ids from
+     */
+    private FusedKernel(TokenTable tokenTable) {
+        this.tokenTable = tokenTable;
+        analyzers = new ArrayList<Analyzer>();
+    }
+
+    /**
+     * The plan method finds the analyzers of a run that can share one loop
+     *
+     *@param analyzers  the analyzers of the run
+     *@param tokenTable the table the dispatcher assigns the ids from
+     *@return   the kernel, or null if fewer than two analyzers can share it
+     */
+    public static FusedKernel plan(List<Analyzer> analyzers, TokenTable tokenTable) {
+        FusedKernel kernel = new FusedKernel(tokenTable);
+        for (Analyzer analyzer : analyzers) {
+            kernel.add(analyzer);
+        }
+        return kernel.analyzers.size() < 2 ? null : kernel;
+    }
+
+    /**
+     * The add method adds an analyzer to the kernel if it is the first of
+     * its class and in a mode the kernel handles
+     *
+     *@param analyzer   the analyzer
+     */
+    private void add(Analyzer analyzer) {
+        if (analyzer.getClass() == SummaryReport.class && summary == null
+                && ((SummaryReport) analyzer).isFusible()) {
+            summary = (SummaryReport) analyzer;
+        } else if (analyzer.getClass() == TokenSizeAnalyzer.class && tokenSizes == null) {
+            tokenSizes = (TokenSizeAnalyzer) analyzer;
+        } else if (analyzer.getClass() == BigWordAnalyzer.class && bigWords == null) {
+            bigWords = (BigWordAnalyzer) analyzer;
+        } else if (analyzer.getClass() == UniqueTokenAnalyzer.class && uniqueTokens == null
+                && ((UniqueTokenAnalyzer) analyzer).isFusible()) {
+            uniqueTokens = (UniqueTokenAnalyzer) analyzer;
+        } else if (analyzer.getClass() == TokenCountAnalyzer.class && tokenCounts == null
+                && ((TokenCountAnalyzer) analyzer).isFusible()) {
+            tokenCounts = (TokenCountAnalyzer) analyzer;
+        } else {
+            return;
+        }
+        analyzers.add(analyzer);
+    }
+
+    /**
+     * The covers method tests if the kernel processes the batches for an
+     * analyzer
+     *
+     *@param analyzer   the analyzer
+     *@return   true if the dispatcher should not pass it the batches
+     */
+    public boolean covers(Analyzer analyzer) {
+        for (Analyzer covered : analyzers) {
+            if (covered == analyzer) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the analyzers attribute
+     *
+     *@return   the analyzers the kernel processes the batches for
+     */
+    public List<Analyzer> getAnalyzers() {
+        return Collections.unmodifiableList(analyzers);
+    }
+
+    /**
+     * The processTokens method updates every covered analyzer for a batch.
+     * A batch with ids from another table is passed to each analyzer.
+     *
+     *@param batch  tokens from the input file
+     */
+    public void processTokens(TokenBatch batch) {
+        boolean usesIds = bigWords != null || uniqueTokens != null || tokenCounts != null;
+        if (usesIds && batch.getTokenTable() != tokenTable) {
+            for (Analyzer analyzer : analyzers) {
+                analyzer.processTokens(batch);
+            }
+            return;
+        }
+        if (summary != null) {
+            summary.addTokens(batch.size());
+        }
+        if (usesIds) {
+            processTokensAndIds(batch);
+        } else if (tokenSizes != null) {
+            processSizes(batch);
+        }
+    }
+
+    /**
+     * The processSizes method counts the token lengths of a batch
+     *
+     *@param batch  tokens from the input file
+     */
+    private void processSizes(TokenBatch batch) {
+        long[] sizeCounts = tokenSizes.getSizeCounts();
+        for (int index = 0; index < batch.size(); index++) {
+            int length = batch.getLength(index);
+            if (length < sizeCounts.length) {
+                sizeCounts[length]++;
+            } else {
+                tokenSizes.addSize(length, 1);
+                sizeCounts = tokenSizes.getSizeCounts();
+            }
+        }
+    }
+
+    /**
+     * The processTokensAndIds method reads the length and id of each token
+     * of a batch once and updates the covered analyzers
+     *
+     *@param batch  tokens from the input file
+     */
+    private void processTokensAndIds(TokenBatch batch) {
+        long[] sizeCounts = tokenSizes == null ? null : tokenSizes.getSizeCounts();
+        BitSet bigWordIds = bigWords == null ? null : bigWords.getBigWordIds();
+        int minimumWordLength = bigWords == null ? 0 : bigWords.getMinimumWordLength();
+        BitSet uniqueTokenIds = uniqueTokens == null ? null : uniqueTokens.getUniqueTokenIds();
+        long[] counts = tokenCounts == null ? null : tokenCounts.countsFor(tokenTable.size());
+        for (int index = 0; index < batch.size(); index++) {
+            int length = batch.getLength(index);
+            int id = batch.getId(index);
+            if (sizeCounts != null) {
+                if (length < sizeCounts.length) {
+                    sizeCounts[length]++;
+                } else {
+                    tokenSizes.addSize(length, 1);
+                    sizeCounts = tokenSizes.getSizeCounts();
+                }
+            }
+            if (bigWordIds != null && length >= minimumWordLength) {
+                bigWordIds.set(id);
+            }
+            if (uniqueTokenIds != null) {
+                uniqueTokenIds.set(id);
+            }
+            if (counts != null) {
+                counts[id]++;
+            }
+        }
+    }
+
+}
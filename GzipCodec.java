@@ -0,0 +1,69 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The GzipCodec class decodes gzip input files, which start with the bytes
+ * 1f 8b. A file that can be mapped is decoded by a ParallelGzipInputStream,
+ * which decodes the members of a multi-member file, such as concatenated
+ * files or block gzip, on input.decode.threads threads. Larger files, and
+ * runs with one decode thread, are read by a GZIPInputStream.
+ *
+ *@author   April Albaugh
+ */
+
+public class GzipCodec implements InputCodec {
+
+    public static final int DEFAULT_MEMBER_LIMIT = 4 << 20;
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Constructor for the GzipCodec object
+     */
+    public GzipCodec() {
+
+    }
+
+    /**
+     * The matches method tests for the gzip magic bytes
+     *
+     *@param header the first bytes of the file
+     *@param length the number of bytes in the header
+     *@return   true for a gzip file
+     */
+    public boolean matches(byte[] header, int length) {
+        return length >= 2 && (header[0] & 0xFF) == 0x1F && (header[1] & 0xFF) == 0x8B;
+    }
+
+    /**
+     * The open method opens a stream of the decoded bytes. The
+     * input.decode.member.limit property sets the largest member decoded
+     * ahead of the reader, in bytes.
+     *
+     *@param path       the gzip file
+     *@param properties the run properties
+     *@return   the decoded stream
+     *@exception IOException  if the file can not be read
+     */
+    public InputStream open(Path path, Properties properties) throws IOException {
+        int threads = Integer.parseInt(properties.getProperty("input.decode.threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int memberLimit = Integer.parseInt(properties.getProperty("input.decode.member.limit",
+                String.valueOf(DEFAULT_MEMBER_LIMIT)));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (threads > 1 && size <= Integer.MAX_VALUE) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                return new ParallelGzipInputStream(buffer, threads, memberLimit);
+            }
+        }
+        return new GZIPInputStream(new BufferedInputStream(Files.newInputStream(path),
+                BUFFER_SIZE), BUFFER_SIZE);
+    }
+
+}
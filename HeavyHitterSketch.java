@@ -0,0 +1,624 @@
+package java112.analyzer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The HeavyHitterSketch class finds the most frequent tokens of a stream in
+ * a fixed amount of memory. A Count-Min sketch of depth rows by width
+ * counters gives an over estimate of every token's count. A Space-Saving
+ * summary monitors a fixed number of tokens in a min heap: a token that is
+ * not monitored replaces the token with the smallest count and starts from
+ * its Count-Min estimate, with everything but the new occurrences counted as
+ * error. For a monitored token the true count is always between its count
+ * minus its error and its count. The monitored tokens are found by hash in
+ * a small open addressing index, so a token held as bytes is only turned
+ * into a String when it starts being monitored.
+ *
+ *@author   April Albaugh
+ */
+
+public class HeavyHitterSketch {
+
+    private int capacity;
+    private String[] heapTokens;
+    private long[] heapCounts;
+    private long[] heapErrors;
+    private long[] heapHashes;
+    private int[] slots;
+    private int slotMask;
+    private int heapSize;
+
+    private long[][] sketch;
+    private int widthMask;
+    private long totalCount;
+
+    /**
+     * Constructor for the HeavyHitterSketch object
+     *
+     *@param capacity   number of tokens the Space-Saving summary monitors
+     *@param width      Count-Min counters per row, rounded up to a power of two
+     *@param depth      Count-Min rows
+     */
+    public HeavyHitterSketch(int capacity, int width, int depth) {
+        this.capacity = capacity;
+        heapTokens = new String[capacity];
+        heapCounts = new long[capacity];
+        heapErrors = new long[capacity];
+        heapHashes = new long[capacity];
+        int slotCount = Integer.highestOneBit(Math.max(1, capacity * 2 - 1)) << 1;
+        slots = new int[slotCount];
+        slotMask = slotCount - 1;
+
+        int roundedWidth = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        sketch = new long[depth][roundedWidth];
+        widthMask = roundedWidth - 1;
+    }
+
+    /**
+     * Gets the totalCount attribute, the number of tokens added
+     *
+     *@return   The totalCount value
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * The getCapacity method returns the number of monitored tokens
+     *
+     *@return   the Space-Saving capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * The hasSameShape method tests if another sketch has the same capacity
+     * and the same Count-Min width and depth, so its counters belong to the
+     * same hash buckets
+     *
+     *@param other  the other sketch
+     *@return   true if the sketches can be merged
+     */
+    public boolean hasSameShape(HeavyHitterSketch other) {
+        return other.capacity == capacity && other.widthMask == widthMask
+                && other.sketch.length == sketch.length;
+    }
+
+    /**
+     * The describeShape method describes the capacity, width and depth of
+     * the sketch for a message
+     *
+     *@return   the shape
+     */
+    public String describeShape() {
+        return "capacity " + capacity + ", width " + (widthMask + 1)
+                + " and depth " + sketch.length;
+    }
+
+    /**
+     * The getErrorBound method returns the Count-Min error bound. A count
+     * is over estimated by at most e / width times the total count with a
+     * probability of at least 1 - e to the power of minus depth.
+     *
+     *@return   the error bound
+     */
+    public long getErrorBound() {
+        return (long) Math.ceil(Math.E / (widthMask + 1) * totalCount);
+    }
+
+    /**
+     * The add method counts one occurrence of a token
+     *
+     *@param token  the token to count
+     */
+    public void add(String token) {
+        add(token, 1);
+    }
+
+    /**
+     * The add method counts occurrences of a token
+     *
+     *@param token  the token to count
+     *@param count  the number of occurrences
+     */
+    public void add(String token, long count) {
+        long hash = TokenHash.hash(token);
+        totalCount += count;
+        long estimate = addToSketch(hash, count);
+        int index = indexOf(hash, token);
+        if (index >= 0) {
+            addToMonitored(index, count);
+        } else {
+            monitor(token, hash, count, estimate);
+        }
+    }
+
+    /**
+     * The add method counts occurrences of a token held as ASCII bytes. A
+     * String is only created when the token starts being monitored.
+     *
+     *@param data   the array holding the token
+     *@param start  the offset of the token
+     *@param length the number of bytes in the token
+     *@param count  the number of occurrences
+     */
+    public void add(byte[] data, int start, int length, long count) {
+        long hash = TokenHash.hash(data, start, length);
+        totalCount += count;
+        long estimate = addToSketch(hash, count);
+        int index = indexOf(hash, data, start, length);
+        if (index >= 0) {
+            addToMonitored(index, count);
+        } else {
+            monitor(new String(data, start, length, StandardCharsets.ISO_8859_1), hash,
+                    count, estimate);
+        }
+    }
+
+    /**
+     * The addToMonitored method adds to the count of a monitored token
+     *
+     *@param index  the heap index of the token
+     *@param count  the number of occurrences
+     */
+    private void addToMonitored(int index, long count) {
+        heapCounts[index] += count;
+        siftDown(index);
+    }
+
+    /**
+     * The monitor method starts monitoring a token, in a free heap entry or
+     * in place of the token with the smallest count
+     *
+     *@param token      the token
+     *@param hash       the token hash
+     *@param count      the number of occurrences
+     *@param estimate   the Count-Min estimate of the token
+     */
+    private void monitor(String token, long hash, long count, long estimate) {
+        if (heapSize < capacity) {
+            heapTokens[heapSize] = token;
+            heapHashes[heapSize] = hash;
+            heapCounts[heapSize] = count;
+            heapErrors[heapSize] = 0;
+            putSlot(heapSize);
+            siftUp(heapSize++);
+        } else {
+            removeSlot(0);
+            heapErrors[0] = estimate - count;
+            heapCounts[0] = estimate;
+            heapTokens[0] = token;
+            heapHashes[0] = hash;
+            putSlot(0);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * The estimate method returns the Count-Min estimate of a token count,
+     * which is never below the true count.
+     *
+     *@param token  the token
+     *@return   the estimated count
+     */
+    public long estimate(String token) {
+        return estimate(TokenHash.hash(token));
+    }
+
+    /**
+     * The estimate method returns the Count-Min estimate of a token count
+     * from the token hash
+     *
+     *@param hash   the token hash
+     *@return   the estimated count
+     */
+    private long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < sketch.length; row++) {
+            estimate = Math.min(estimate, sketch[row][column(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * The topTokens method returns the monitored tokens with the highest
+     * counts, most frequent first and alphabetical for equal counts.
+     *
+     *@param limit  the number of tokens to return
+     *@return   the heavy hitters
+     */
+    public List<HeavyHitter> topTokens(int limit) {
+        List<HeavyHitter> hitters = new ArrayList<HeavyHitter>(heapSize);
+        for (int index = 0; index < heapSize; index++) {
+            long upper = Math.min(heapCounts[index], estimate(heapHashes[index]));
+            hitters.add(new HeavyHitter(heapTokens[index], upper,
+                    heapCounts[index] - heapErrors[index]));
+        }
+        hitters.sort(Comparator.comparingLong(HeavyHitter::getCount).reversed()
+                .thenComparing(HeavyHitter::getToken));
+        return hitters.subList(0, Math.min(limit, hitters.size()));
+    }
+
+    /**
+     * The merge method combines a sketch of the same shape. A token
+     * monitored by only one summary adds the other sketch's Count-Min
+     * estimate, as count and as error. The Count-Min rows are then added and
+     * the tokens with the highest combined counts are kept.
+     *
+     *@param other  the sketch to merge
+     *@exception IllegalArgumentException  if the other sketch has a
+     *      different shape
+     */
+    public void merge(HeavyHitterSketch other) {
+        if (!hasSameShape(other)) {
+            throw new IllegalArgumentException("Cannot merge a sketch of "
+                    + other.describeShape() + " into a sketch of " + describeShape());
+        }
+        Map<String, long[]> combined = new HashMap<String, long[]>();
+        for (int index = 0; index < heapSize; index++) {
+            long otherCount = other.estimate(heapTokens[index]);
+            combined.put(heapTokens[index], new long[] {heapCounts[index] + otherCount,
+                    heapErrors[index] + otherCount});
+        }
+        for (int index = 0; index < other.heapSize; index++) {
+            String token = other.heapTokens[index];
+            long[] entry = combined.get(token);
+            if (entry == null) {
+                long count = estimate(token);
+                combined.put(token, new long[] {other.heapCounts[index] + count,
+                        other.heapErrors[index] + count});
+            } else {
+                long otherCount = other.estimate(token);
+                entry[0] += other.heapCounts[index] - otherCount;
+                entry[1] += other.heapErrors[index] - otherCount;
+            }
+        }
+
+        for (int row = 0; row < sketch.length; row++) {
+            for (int column = 0; column < sketch[row].length; column++) {
+                sketch[row][column] += other.sketch[row][column];
+            }
+        }
+
+        List<Map.Entry<String, long[]>> entries =
+                new ArrayList<Map.Entry<String, long[]>>(combined.entrySet());
+        entries.sort((first, second) -> Long.compare(second.getValue()[0], first.getValue()[0]));
+        Arrays.fill(slots, 0);
+        heapSize = 0;
+        int kept = Math.min(capacity, entries.size());
+        for (Map.Entry<String, long[]> entry : entries.subList(0, kept)) {
+            heapTokens[heapSize] = entry.getKey();
+            heapHashes[heapSize] = TokenHash.hash(entry.getKey());
+            heapCounts[heapSize] = entry.getValue()[0];
+            heapErrors[heapSize] = entry.getValue()[1];
+            putSlot(heapSize);
+            siftUp(heapSize++);
+        }
+        totalCount += other.totalCount;
+    }
+
+    /**
+     * The writeState method writes the monitored tokens and the Count-Min
+     * rows to a binary report
+     *
+     *@param output the binary report
+     *@exception IOException  if the report can not be written
+     */
+    public void writeState(BinaryReportOutput output) throws IOException {
+        output.writeVarLong(capacity);
+        output.writeVarLong(widthMask + 1);
+        output.writeVarLong(sketch.length);
+        output.writeVarLong(totalCount);
+        output.writeVarLong(heapSize);
+        for (int index = 0; index < heapSize; index++) {
+            output.writeString(heapTokens[index]);
+            output.writeVarLong(heapCounts[index]);
+            output.writeVarLong(heapErrors[index]);
+        }
+        for (long[] row : sketch) {
+            for (long cell : row) {
+                output.writeVarLong(cell);
+            }
+        }
+    }
+
+    /**
+     * The readState method reads a sketch written by writeState
+     *
+     *@param input  the binary report
+     *@return   the sketch
+     *@exception IOException  if the report can not be read
+     */
+    public static HeavyHitterSketch readState(BinaryReportInput input) throws IOException {
+        int capacity = input.readVarInt();
+        int width = input.readVarInt();
+        int depth = input.readVarInt();
+        HeavyHitterSketch sketch = new HeavyHitterSketch(capacity, width, depth);
+        sketch.totalCount = input.readVarLong();
+        int size = input.readVarInt();
+        if (size > capacity) {
+            throw new IOException("Binary report monitors " + size
+                    + " tokens, more than its capacity of " + capacity);
+        }
+        for (int index = 0; index < size; index++) {
+            sketch.heapTokens[index] = input.readString();
+            sketch.heapCounts[index] = input.readVarLong();
+            sketch.heapErrors[index] = input.readVarLong();
+            sketch.heapHashes[index] = TokenHash.hash(sketch.heapTokens[index]);
+            sketch.putSlot(index);
+        }
+        sketch.heapSize = size;
+        for (long[] row : sketch.sketch) {
+            for (int column = 0; column < row.length; column++) {
+                row[column] = input.readVarLong();
+            }
+        }
+        return sketch;
+    }
+
+    /**
+     * The addToSketch method adds a count to the token's counter in every
+     * Count-Min row.
+     *
+     *@param hash   the token hash
+     *@param count  the number to add
+     *@return   the Count-Min estimate of the token after the update
+     */
+    private long addToSketch(long hash, long count) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < sketch.length; row++) {
+            int column = column(hash, row);
+            sketch[row][column] += count;
+            estimate = Math.min(estimate, sketch[row][column]);
+        }
+        return estimate;
+    }
+
+    /**
+     * The column method picks a row's counter from two halves of one hash
+     *
+     *@param hash   the 64 bit token hash
+     *@param row    the Count-Min row
+     *@return   the counter index
+     */
+    private int column(long hash, int row) {
+        int first = (int) hash;
+        int second = (int) (hash >>> 32) | 1;
+        return (first + row * second) & widthMask;
+    }
+
+    /**
+     * The homeSlot method picks the first index slot to probe for a hash
+     *
+     *@param hash   the 64 bit token hash
+     *@return   the slot
+     */
+    private int homeSlot(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & slotMask;
+    }
+
+    /**
+     * The indexOf method finds a monitored token
+     *
+     *@param hash   the token hash
+     *@param token  the token
+     *@return   the heap index of the token, or -1 if it is not monitored
+     */
+    private int indexOf(long hash, String token) {
+        for (int slot = homeSlot(hash); slots[slot] != 0; slot = (slot + 1) & slotMask) {
+            int index = slots[slot] - 1;
+            if (heapHashes[index] == hash && heapTokens[index].equals(token)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The indexOf method finds a monitored token held as ASCII bytes
+     *
+     *@param hash   the token hash
+     *@param data   the array holding the token
+     *@param start  the offset of the token
+     *@param length the number of bytes in the token
+     *@return   the heap index of the token, or -1 if it is not monitored
+     */
+    private int indexOf(long hash, byte[] data, int start, int length) {
+        for (int slot = homeSlot(hash); slots[slot] != 0; slot = (slot + 1) & slotMask) {
+            int index = slots[slot] - 1;
+            if (heapHashes[index] == hash && matches(heapTokens[index], data, start, length)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The matches method compares a token with ASCII bytes
+     *
+     *@param token  the token
+     *@param data   the array holding the bytes
+     *@param start  the offset of the bytes
+     *@param length the number of bytes
+     *@return   true if the token has the same characters
+     */
+    private static boolean matches(String token, byte[] data, int start, int length) {
+        if (token.length() != length) {
+            return false;
+        }
+        for (int index = 0; index < length; index++) {
+            if (token.charAt(index) != (data[start + index] & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The slotOf method finds the index slot that points to a heap entry
+     *
+     *@param index  the heap index
+     *@return   the slot
+     */
+    private int slotOf(int index) {
+        int slot = homeSlot(heapHashes[index]);
+        while (slots[slot] != index + 1) {
+            slot = (slot + 1) & slotMask;
+        }
+        return slot;
+    }
+
+    /**
+     * The putSlot method adds a heap entry to the index
+     *
+     *@param index  the heap index
+     */
+    private void putSlot(int index) {
+        int slot = homeSlot(heapHashes[index]);
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & slotMask;
+        }
+        slots[slot] = index + 1;
+    }
+
+    /**
+     * The removeSlot method removes a heap entry from the index, moving
+     * back the entries after it so every probe still finds its entry
+     *
+     *@param index  the heap index
+     */
+    private void removeSlot(int index) {
+        int hole = slotOf(index);
+        slots[hole] = 0;
+        for (int slot = (hole + 1) & slotMask; slots[slot] != 0; slot = (slot + 1) & slotMask) {
+            int home = homeSlot(heapHashes[slots[slot] - 1]);
+            if (((slot - home) & slotMask) >= ((slot - hole) & slotMask)) {
+                slots[hole] = slots[slot];
+                slots[slot] = 0;
+                hole = slot;
+            }
+        }
+    }
+
+    /**
+     * The siftUp method moves a heap entry up while its count is smaller
+     * than its parent's.
+     *
+     *@param index  the heap index
+     */
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heapCounts[parent] <= heapCounts[index]) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    /**
+     * The siftDown method moves a heap entry down while a child has a
+     * smaller count.
+     *
+     *@param index  the heap index
+     */
+    private void siftDown(int index) {
+        while (true) {
+            int smallest = index;
+            int left = index * 2 + 1;
+            int right = left + 1;
+            if (left < heapSize && heapCounts[left] < heapCounts[smallest]) {
+                smallest = left;
+            }
+            if (right < heapSize && heapCounts[right] < heapCounts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    /**
+     * The swap method exchanges two heap entries and updates their indexes
+     *
+     *@param first  the first heap index
+     *@param second the second heap index
+     */
+    private void swap(int first, int second) {
+        int firstSlot = slotOf(first);
+        int secondSlot = slotOf(second);
+        slots[firstSlot] = second + 1;
+        slots[secondSlot] = first + 1;
+        String token = heapTokens[first];
+        long hash = heapHashes[first];
+        long count = heapCounts[first];
+        long error = heapErrors[first];
+        heapTokens[first] = heapTokens[second];
+        heapHashes[first] = heapHashes[second];
+        heapCounts[first] = heapCounts[second];
+        heapErrors[first] = heapErrors[second];
+        heapTokens[second] = token;
+        heapHashes[second] = hash;
+        heapCounts[second] = count;
+        heapErrors[second] = error;
+    }
+
+    /**
+     * The HeavyHitter class is one reported token with the bounds of its
+     * true count.
+     */
+    public static class HeavyHitter {
+
+        private String token;
+        private long count;
+        private long minimumCount;
+
+        /**
+         * Constructor for the HeavyHitter object
+         *
+         *@param token          the token
+         *@param count          upper bound of the true count
+         *@param minimumCount   lower bound of the true count
+         */
+        HeavyHitter(String token, long count, long minimumCount) {
+            this.token = token;
+            this.count = count;
+            this.minimumCount = minimumCount;
+        }
+
+        /**
+         * Gets the token attribute
+         *
+         *@return   The token value
+         */
+        public String getToken() {
+            return token;
+        }
+
+        /**
+         * Gets the count attribute, never below the true count
+         *
+         *@return   The count value
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the minimumCount attribute, never above the true count
+         *
+         *@return   The minimumCount value
+         */
+        public long getMinimumCount() {
+            return minimumCount;
+        }
+    }
+
+}
@@ -0,0 +1,388 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.file.*;
+
+/**
+ * The HyperLogLog class estimates the number of distinct tokens without
+ * storing them, following HyperLogLog++. Tokens are hashed to 64 bits. While
+ * few tokens have been seen the sketch is sparse: it keeps the largest rank
+ * for each 25 bit hash prefix and estimates by linear counting over 2^25
+ * buckets, which is close to exact. Past a quarter of the dense register
+ * count it converts to 2^precision one byte registers. The dense estimate
+ * uses linear counting below the HyperLogLog++ thresholds and the raw
+ * HyperLogLog estimate above them; the empirical bias correction tables are
+ * left out, so mid range estimates are slightly less accurate.
+ *
+ * Sketches of the same precision can be merged and written to and read from
+ * bytes, so counts from separate runs can be combined without rescanning.
+ * The main method merges sketch files and prints the combined estimate.
+ *
+ *@author   April Albaugh
+ */
+
+public class HyperLogLog {
+
+    public static final int MINIMUM_PRECISION = 4;
+    public static final int MAXIMUM_PRECISION = 18;
+    public static final int DEFAULT_PRECISION = 14;
+    public static final int SPARSE_PRECISION = 25;
+
+    private static final int MAGIC = 0x484C4C31;
+    private static final int SPARSE = 0;
+    private static final int DENSE = 1;
+    private static final int[] THRESHOLDS = {10, 20, 40, 80, 220, 400, 900, 1800, 3100,
+            6500, 11500, 20000, 50000, 120000, 350000};
+
+    private int precision;
+    private byte[] registers;
+    private int[] sparseKeys;
+    private byte[] sparseRanks;
+    private int sparseSize;
+
+    /**
+     * Constructor for the HyperLogLog object
+     *
+     *@param precision  log2 of the number of dense registers, 4 to 18
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MINIMUM_PRECISION || precision > MAXIMUM_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between "
+                    + MINIMUM_PRECISION + " and " + MAXIMUM_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        sparseKeys = new int[16];
+        sparseRanks = new byte[16];
+    }
+
+    /**
+     * Gets the precision attribute
+     *
+     *@return   The precision value
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * The add method adds a token String
+     *
+     *@param token  the token
+     */
+    public void add(String token) {
+        addHash(TokenHash.hash(token));
+    }
+
+    /**
+     * The add method adds a token held as ASCII bytes
+     *
+     *@param data   the array holding the token
+     *@param start  the offset of the token
+     *@param length the number of bytes in the token
+     */
+    public void add(byte[] data, int start, int length) {
+        addHash(TokenHash.hash(data, start, length));
+    }
+
+    /**
+     * The addHash method adds a 64 bit token hash
+     *
+     *@param hash   the token hash
+     */
+    public void addHash(long hash) {
+        if (registers != null) {
+            int index = (int) (hash >>> (64 - precision));
+            int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+            if (rank > registers[index]) {
+                registers[index] = (byte) rank;
+            }
+        } else {
+            int key = (int) (hash >>> (64 - SPARSE_PRECISION));
+            int rank = Long.numberOfLeadingZeros((hash << SPARSE_PRECISION)
+                    | (1L << (SPARSE_PRECISION - 1))) + 1;
+            addSparse(key, rank);
+        }
+    }
+
+    /**
+     * The addSparse method keeps the largest rank for a 25 bit hash prefix,
+     * converting to dense registers once the sparse set is too large.
+     *
+     *@param key    the hash prefix
+     *@param rank   the rank of the rest of the hash
+     */
+    private void addSparse(int key, int rank) {
+        int mask = sparseKeys.length - 1;
+        int slot = TokenTable.mix(key) & mask;
+        while (sparseKeys[slot] != 0 && sparseKeys[slot] != key + 1) {
+            slot = (slot + 1) & mask;
+        }
+        if (sparseKeys[slot] == 0) {
+            sparseKeys[slot] = key + 1;
+            sparseRanks[slot] = (byte) rank;
+            sparseSize++;
+            if (sparseSize > (1 << precision) / 4) {
+                convertToDense();
+            } else if (sparseSize * 2 > sparseKeys.length) {
+                growSparse();
+            }
+        } else if (rank > sparseRanks[slot]) {
+            sparseRanks[slot] = (byte) rank;
+        }
+    }
+
+    /**
+     * The growSparse method doubles the sparse hash set
+     */
+    private void growSparse() {
+        int[] keys = sparseKeys;
+        byte[] ranks = sparseRanks;
+        sparseKeys = new int[keys.length * 2];
+        sparseRanks = new byte[keys.length * 2];
+        sparseSize = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                addSparse(keys[slot] - 1, ranks[slot]);
+            }
+        }
+    }
+
+    /**
+     * The convertToDense method moves the sparse entries into the dense
+     * registers. The bits of the 25 bit prefix after the register index are
+     * the start of the dense rank.
+     */
+    private void convertToDense() {
+        registers = new byte[1 << precision];
+        int extraBits = SPARSE_PRECISION - precision;
+        for (int slot = 0; slot < sparseKeys.length; slot++) {
+            if (sparseKeys[slot] == 0) {
+                continue;
+            }
+            int key = sparseKeys[slot] - 1;
+            int index = key >>> extraBits;
+            int extra = key & ((1 << extraBits) - 1);
+            int rank = extra != 0
+                    ? Integer.numberOfLeadingZeros(extra) - (32 - extraBits) + 1
+                    : extraBits + sparseRanks[slot];
+            if (rank > registers[index]) {
+                registers[index] = (byte) rank;
+            }
+        }
+        sparseKeys = null;
+        sparseRanks = null;
+        sparseSize = 0;
+    }
+
+    /**
+     * The estimate method returns the estimated number of distinct tokens
+     *
+     *@return   the estimated cardinality
+     */
+    public long estimate() {
+        if (registers == null) {
+            double buckets = 1L << SPARSE_PRECISION;
+            return Math.round(buckets * Math.log(buckets / (buckets - sparseSize)));
+        }
+
+        int count = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        if (zeros > 0) {
+            double linearCount = count * Math.log((double) count / zeros);
+            if (linearCount <= THRESHOLDS[precision - MINIMUM_PRECISION]) {
+                return Math.round(linearCount);
+            }
+        }
+        return Math.round(alpha(count) * count * count / sum);
+    }
+
+    /**
+     * The alpha method returns the HyperLogLog bias constant
+     *
+     *@param count  the number of registers
+     *@return   the constant
+     */
+    private static double alpha(int count) {
+        switch (count) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / count);
+        }
+    }
+
+    /**
+     * The merge method adds the tokens counted by another sketch of the
+     * same precision.
+     *
+     *@param other  the sketch to merge
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge precision " + other.precision
+                    + " into precision " + precision);
+        }
+        if (other.registers == null) {
+            for (int slot = 0; slot < other.sparseKeys.length; slot++) {
+                if (other.sparseKeys[slot] != 0) {
+                    addSparseEntry(other.sparseKeys[slot] - 1, other.sparseRanks[slot]);
+                }
+            }
+            return;
+        }
+        if (registers == null) {
+            convertToDense();
+        }
+        for (int index = 0; index < registers.length; index++) {
+            registers[index] = (byte) Math.max(registers[index], other.registers[index]);
+        }
+    }
+
+    /**
+     * The addSparseEntry method adds a sparse entry of another sketch, to
+     * this sketch's sparse set or its dense registers.
+     *
+     *@param key    the 25 bit hash prefix
+     *@param rank   the rank of the rest of the hash
+     */
+    private void addSparseEntry(int key, int rank) {
+        if (registers == null) {
+            addSparse(key, rank);
+            return;
+        }
+        int extraBits = SPARSE_PRECISION - precision;
+        int index = key >>> extraBits;
+        int extra = key & ((1 << extraBits) - 1);
+        int denseRank = extra != 0
+                ? Integer.numberOfLeadingZeros(extra) - (32 - extraBits) + 1
+                : extraBits + rank;
+        if (denseRank > registers[index]) {
+            registers[index] = (byte) denseRank;
+        }
+    }
+
+    /**
+     * The toBytes method serializes the sketch
+     *
+     *@return   the sketch bytes
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(MAGIC);
+            output.writeByte(precision);
+            if (registers == null) {
+                output.writeByte(SPARSE);
+                output.writeInt(sparseSize);
+                for (int slot = 0; slot < sparseKeys.length; slot++) {
+                    if (sparseKeys[slot] != 0) {
+                        output.writeInt(sparseKeys[slot] - 1);
+                        output.writeByte(sparseRanks[slot]);
+                    }
+                }
+            } else {
+                output.writeByte(DENSE);
+                output.write(registers);
+            }
+        } catch (IOException ioEx) {
+            throw new UncheckedIOException(ioEx);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * The fromBytes method reads a serialized sketch
+     *
+     *@param bytes  the sketch bytes
+     *@return   the sketch
+     *@exception IOException  if the bytes are not a sketch
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a HyperLogLog sketch");
+        }
+        HyperLogLog sketch = new HyperLogLog(input.readByte());
+        if (input.readByte() == SPARSE) {
+            int size = input.readInt();
+            for (int entry = 0; entry < size; entry++) {
+                sketch.addSparseEntry(input.readInt(), input.readByte());
+            }
+        } else {
+            sketch.registers = new byte[1 << sketch.precision];
+            input.readFully(sketch.registers);
+            sketch.sparseKeys = null;
+            sketch.sparseRanks = null;
+        }
+        return sketch;
+    }
+
+    /**
+     * The write method writes the sketch to a file
+     *
+     *@param path   the file to write
+     *@exception IOException  if the file can not be written
+     */
+    public void write(Path path) throws IOException {
+        Files.write(path, toBytes());
+    }
+
+    /**
+     * The read method reads a sketch from a file
+     *
+     *@param path   the file to read
+     *@return   the sketch
+     *@exception IOException  if the file can not be read
+     */
+    public static HyperLogLog read(Path path) throws IOException {
+        return fromBytes(Files.readAllBytes(path));
+    }
+
+    /**
+     * The main method merges sketch files and prints the estimate of the
+     * combined distinct count. With -o file the merged sketch is written.
+     *
+     *@param args   [-o merged.hll] sketch.hll...
+     */
+    public static void main(String[] args) {
+        String outputPath = null;
+        HyperLogLog merged = null;
+        try {
+            for (int index = 0; index < args.length; index++) {
+                if ("-o".equals(args[index]) && index + 1 < args.length) {
+                    outputPath = args[++index];
+                    continue;
+                }
+                HyperLogLog sketch = read(Paths.get(args[index]));
+                if (merged == null) {
+                    merged = sketch;
+                } else {
+                    merged.merge(sketch);
+                }
+            }
+            if (merged == null) {
+                System.out.println("Please enter one or more sketch files");
+                return;
+            }
+            if (outputPath != null) {
+                merged.write(Paths.get(outputPath));
+            }
+            System.out.println(merged.estimate());
+        } catch (IOException ioEx) {
+            System.out.println("Could not read the sketch files");
+            ioEx.printStackTrace();
+        }
+    }
+
+}
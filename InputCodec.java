@@ -0,0 +1,75 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * The InputCodec interface decodes a compressed input file into the stream
+ * of bytes the tokenizer reads. A codec is chosen by the first bytes of the
+ * file, so compressed inputs need no special name or property. Gzip is
+ * built in; other codecs are found with a ServiceLoader, listed in
+ * META-INF/services/java112.analyzer.InputCodec.
+ *
+ *@author   April Albaugh
+ */
+
+public interface InputCodec {
+
+    /**
+     * The number of bytes read from the start of a file to detect a codec
+     */
+    int HEADER_SIZE = 16;
+
+    /**
+     * The matches method tests if a file starts with the codec's magic bytes
+     *
+     *@param header the first bytes of the file
+     *@param length the number of bytes in the header, which is less than
+     *      HEADER_SIZE for a short file
+     *@return   true if the codec decodes the file
+     */
+    boolean matches(byte[] header, int length);
+
+    /**
+     * The open method opens a stream of the decoded bytes of a file
+     *
+     *@param path       the compressed file
+     *@param properties the run properties
+     *@return   the decoded stream
+     *@exception IOException  if the file can not be read
+     */
+    InputStream open(Path path, Properties properties) throws IOException;
+
+    /**
+     * The detect method reads the start of a file and returns the first
+     * codec that matches it
+     *
+     *@param path   the input file
+     *@return   the codec, or null for a file that is not compressed
+     *@exception IOException  if the file can not be read
+     */
+    static InputCodec detect(Path path) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        int length = 0;
+        try (InputStream input = Files.newInputStream(path)) {
+            int count;
+            while (length < HEADER_SIZE
+                    && (count = input.read(header, length, HEADER_SIZE - length)) > 0) {
+                length += count;
+            }
+        }
+        List<InputCodec> codecs = new ArrayList<InputCodec>();
+        codecs.add(new GzipCodec());
+        for (InputCodec codec : ServiceLoader.load(InputCodec.class)) {
+            codecs.add(codec);
+        }
+        for (InputCodec codec : codecs) {
+            if (codec.matches(header, length)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+}
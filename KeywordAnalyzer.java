@@ -1,27 +1,51 @@
 package java112.analyzer;
 
 import java.io.*;
+import java.nio.file.NoSuchFileException;
 import java.util.*;
 
 /**
  * The KeywordAnalyzer class implements the Analyzer interface and
  * determines where keywords are in the input file.
- * Outputs file with list of keywords and locations.
+ * Outputs file with list of keywords and locations. Tokens are matched with
+ * a compiled KeywordMatcher and the positions of each keyword are kept in a
+ * PostingList of long differences indexed by keyword id, so a position can
+ * pass two billion tokens. Keyword entries can also be patterns, such as
+ * ERR*, timeout? or ^user_[0-9]+$, and a token is added to every entry it
+ * matches. The tokens of a batch are matched from their bytes, and only
+ * when their length is one a keyword can have, so the analyzer adds
+ * nothing to the TokenTable shared by the run. The positions can also be
+ * written as a binary report, each position as the difference from the
+ * one before.
  *
  *@author   April Albaugh
  */
 
-public class KeywordAnalyzer implements Analyzer {
+public class KeywordAnalyzer implements MergeableAnalyzer<KeywordAnalyzer>,
+        BinaryStateAnalyzer {
 
-    private Map<String, List<Integer>> keywordMap;
+    private KeywordMatcher keywordMatcher;
+    private TokenPredicate keywordPredicate;
+    private PostingList[] keywordPositions;
     private Properties properties;
-    private int tokenOccurence;
+    private long tokenOccurence;
 
     /**
-     * Constructor for the KeywordAnalyzer object. Instantiates a TreeMap.
+     * Constructor for the KeywordAnalyzer object with no keywords.
      */
     public KeywordAnalyzer()  {
-        keywordMap = new TreeMap<String, List<Integer>>();
+        this(new KeywordMatcher(Collections.<String>emptySet()));
+    }
+
+    /**
+     * Constructor for KeywordAnalyzer with a compiled keyword list
+     *
+     *@param keywordMatcher The keywords to find
+     */
+    private KeywordAnalyzer(KeywordMatcher keywordMatcher)  {
+        this.keywordMatcher = keywordMatcher;
+        keywordPredicate = TokenPredicate.keywords(keywordMatcher);
+        keywordPositions = new PostingList[keywordMatcher.size()];
         tokenOccurence = 0;
     }
 
@@ -31,31 +55,74 @@ public class KeywordAnalyzer implements Analyzer {
      *@param properties Receives the properties from AnalyzeFile
      */
     public KeywordAnalyzer(Properties properties) {
-        this();
+        this(properties, new KeywordMatcher(readKeywords(properties)));
+    }
+
+    /**
+     * Constructor for KeywordAnalyzer with a keyword list that has already
+     * been read and compiled, so the keyword file is only parsed once per run.
+     *
+     *@param properties Receives the properties from AnalyzeFile
+     *@param keywordMatcher The keywords to find
+     */
+    public KeywordAnalyzer(Properties properties, KeywordMatcher keywordMatcher) {
+        this(keywordMatcher);
         this.properties = properties;
-        readKeywordFile();
     }
 
     /**
-     * Gets the keywordMap attribute
+     * The readKeywords method reads the keyword file named in the properties
+     *
+     *@param properties the properties with the file.path.keywords entry
+     *@return   a read only sorted set of the keywords
+     */
+    public static Set<String> readKeywords(Properties properties) {
+        SortedSet<String> keywords = new TreeSet<String>();
+        readKeywordFile(properties, keywords);
+        return Collections.unmodifiableSortedSet(keywords);
+    }
+
+    /**
+     * Gets the keywordMap attribute, a read only view of each keyword and
+     * its positions in alphabetical order.
      *
      *@return   The keywordMap value
-     */ 
-    public Map<String, List<Integer>> getKeywordMap() {
-        return keywordMap;
+     */
+    public Map<String, List<Long>> getKeywordMap() {
+        SortedMap<String, List<Long>> keywordMap = new TreeMap<String, List<Long>>();
+        for (int id = 0; id < keywordMatcher.size(); id++) {
+            keywordMap.put(keywordMatcher.getKeyword(id), getPositions(id).toList());
+        }
+        return Collections.unmodifiableSortedMap(keywordMap);
+    }
+
+    /**
+     * The getPositions method returns the position list of a keyword,
+     * creating it on the first hit.
+     *
+     *@param id the keyword id
+     *@return   the positions of the keyword
+     */
+    private PostingList getPositions(int id) {
+        PostingList positions = keywordPositions[id];
+        if (positions == null) {
+            positions = new PostingList();
+            keywordPositions[id] = positions;
+        }
+        return positions;
     }
 
     /**
      * The formatContents method receives the line from the input file, and
-     * parses the comma delimited string. 
+     * parses the comma delimited string.
      *
      *@param line   The line from the input file.
+     *@param keywords   The set to add the keywords to.
      */
-    private void formatContents(String line) {
+    private static void formatContents(String line, Set<String> keywords) {
         String[] lineArray = line.split(", ");
         for(int i = 0; i<lineArray.length; i++) {
-            List<Integer> locationList = new ArrayList<Integer>();
-            keywordMap.put(lineArray[i], locationList);
+            keywords.add(lineArray[i]);
         }
     }
 
@@ -63,8 +130,11 @@ public class KeywordAnalyzer implements Analyzer {
     /**
      *  The readKeywordFile method reads the input file from the properties file.
      *  It calls the formatContents method to parse the input.
+     *
+     *@param properties The properties with the keyword file path.
+     *@param keywords   The set to add the keywords to.
      */
-    private void readKeywordFile() {
+    private static void readKeywordFile(Properties properties, Set<String> keywords) {
         BufferedReader input = null;
 
         try {
@@ -72,7 +142,7 @@ public class KeywordAnalyzer implements Analyzer {
             while (input.ready()) {
                 String line = null;
                 line = input.readLine();
-                formatContents(line);
+                formatContents(line, keywords);
             }
         } catch (FileNotFoundException fileNotFoundEx) {
             System.out.println("Could not find file");
@@ -92,7 +162,7 @@ public class KeywordAnalyzer implements Analyzer {
                 System.out.println("Failed to close input file");
                 exception.printStackTrace();
             }
-        }  
+        }
     }
 
     /**
@@ -102,9 +172,134 @@ public class KeywordAnalyzer implements Analyzer {
      */
     public void processToken(String token) {
         tokenOccurence++;
-        if (keywordMap.containsKey(token)) {
-          List<Integer> l = keywordMap.get(token);
-          l.add(tokenOccurence);
+        int match = keywordMatcher.match(token);
+        if (match >= 0) {
+            addPosition(match);
+        }
+    }
+
+    /**
+     * The addPosition method adds the current position to every keyword of
+     * a match
+     *
+     *@param match  the match from the KeywordMatcher
+     */
+    private void addPosition(int match) {
+        for (int id : keywordMatcher.getKeywordIds(match)) {
+            getPositions(id).add(tokenOccurence);
+        }
+    }
+
+    /**
+     *  The processTokens method counts each token of a batch and matches the
+     *  bytes of the tokens with a length a keyword can have. A token kept as
+     *  its length only is never a keyword.
+     *
+     *@param batch  tokens from the input file
+     */
+    public void processTokens(TokenBatch batch) {
+        byte[] data = batch.getData();
+        for (int index = 0; index < batch.size(); index++) {
+            tokenOccurence++;
+            int length = batch.getLength(index);
+            if (keywordPredicate.mightAccept(length) && batch.hasContent(index)) {
+                int match = keywordMatcher.match(data, batch.getStart(index), length);
+                if (match >= 0) {
+                    addPosition(match);
+                }
+            }
+        }
+    }
+
+    /**
+     *  The getTokenPredicate method tells the tokenizer that only the
+     *  keywords are read; the other tokens are only counted
+     *
+     *@return   the predicate for the keyword list
+     */
+    public TokenPredicate getTokenPredicate() {
+        return keywordPredicate;
+    }
+
+    /**
+     *  The merge method adds the keyword positions of another KeywordAnalyzer.
+     *  Its positions count from the start of its own part of the input, so
+     *  they are rebased by the number of tokens this analyzer has seen.
+     *  Keywords the other analyzer has that this one does not are skipped.
+     *
+     *@param other  KeywordAnalyzer for the next part of the input
+     */
+    public void merge(KeywordAnalyzer other) {
+        for (int otherId = 0; otherId < other.keywordPositions.length; otherId++) {
+            PostingList otherPositions = other.keywordPositions[otherId];
+            if (otherPositions == null) {
+                continue;
+            }
+            int id = other.keywordMatcher == keywordMatcher ? otherId
+                    : keywordMatcher.indexOf(other.keywordMatcher.getKeyword(otherId));
+            if (id >= 0) {
+                getPositions(id).addAll(otherPositions, tokenOccurence);
+            }
+        }
+        tokenOccurence += other.tokenOccurence;
+    }
+
+    /**
+     * Gets the reportProperty attribute
+     *
+     *@return   The property naming the keyword report
+     */
+    public String getReportProperty() {
+        return "output.file.keyword";
+    }
+
+    /**
+     *  The writeState method writes the number of tokens seen and, for each
+     *  keyword, the keyword, the number of positions and the positions as
+     *  differences.
+     *
+     *@param output the binary report
+     *@exception IOException  if the report can not be written
+     */
+    private void writeState(BinaryReportOutput output) throws IOException {
+        output.writeVarLong(tokenOccurence);
+        output.writeVarLong(keywordMatcher.size());
+        for (int id = 0; id < keywordMatcher.size(); id++) {
+            output.writeString(keywordMatcher.getKeyword(id));
+            PostingList positions = keywordPositions[id];
+            output.writeVarLong(positions == null ? 0 : positions.size());
+            if (positions == null) {
+                continue;
+            }
+            long previous = 0;
+            for (PrimitiveIterator.OfLong iterator = positions.iterator(); iterator.hasNext(); ) {
+                long position = iterator.nextLong();
+                output.writeVarLong(position - previous);
+                previous = position;
+            }
+        }
+    }
+
+    /**
+     *  The readState method reads the positions of a binary report. Keywords
+     *  this analyzer does not have are skipped.
+     *
+     *@param input  the binary report
+     *@exception IOException  if the report can not be read
+     */
+    public void readState(BinaryReportInput input) throws IOException {
+        tokenOccurence = input.readVarLong();
+        int keywords = input.readVarInt();
+        for (int keyword = 0; keyword < keywords; keyword++) {
+            int id = keywordMatcher.indexOf(input.readString());
+            long count = input.readVarLong();
+            long position = 0;
+            for (long index = 0; index < count; index++) {
+                position += input.readVarLong();
+                if (id >= 0) {
+                    getPositions(id).add(position);
+                }
+            }
         }
     }
 
@@ -116,12 +311,17 @@ public class KeywordAnalyzer implements Analyzer {
     public void writeOutputFile(String inputFilePath) {
         String outputFilePath = properties.getProperty("output.dir")
                 + properties.getProperty("output.file.keyword");
-        try (PrintWriter writer = 
-                new PrintWriter(new BufferedWriter(new FileWriter(outputFilePath)))) {
+        try (ReportWriter writer = ReportWriter.open(properties, outputFilePath)) {
             writeKeywords(writer);
-        } catch (FileNotFoundException fileNotFoundEx) {
+            try (BinaryReportOutput binary =
+                    BinaryReportOutput.open(properties, this, inputFilePath)) {
+                if (binary != null) {
+                    writeState(binary);
+                }
+            }
+        } catch (NoSuchFileException noSuchFileEx) {
             System.out.println("Could not find file");
-            fileNotFoundEx.printStackTrace();
+            noSuchFileEx.printStackTrace();
         } catch (IOException ioEx) {
             System.out.println("Could not read the file");
             ioEx.printStackTrace();
@@ -134,46 +334,47 @@ public class KeywordAnalyzer implements Analyzer {
     /**
      *  The writeKeywords method writes keywords and locations to the file.
      *
-     *@param writer Printwriter write to file.
+     *@param writer ReportWriter write to file.
      */
-    private void writeKeywords(PrintWriter writer) {       
-        for (Map.Entry<String, List<Integer>> entry : keywordMap.entrySet()) {
-            writer.print(entry.getKey());
-            writer.println(" =");            
-            generatePositions(writer, entry.getValue());
+    private void writeKeywords(ReportWriter writer) throws IOException {
+        for (int id = 0; id < keywordMatcher.size(); id++) {
+            writer.print(keywordMatcher.getKeyword(id));
+            writer.println(" =");
+            generatePositions(writer, keywordPositions[id]);
             writer.println();
         }
     }
 
     /**
-     *  The generatePositions method writes formatted keyword positions to the file.
+     *  The generatePositions method writes formatted keyword positions to the
+     *  file, MAX_LINES positions to a line, in one pass over the list.
      *
-     *@param writer Printwriter write to file.
-     *@param positionList   The List of keyword positions.
+     *@param writer ReportWriter write to file.
+     *@param positionList   The keyword positions, null if there are none.
      */
-    private void generatePositions(PrintWriter writer, List<Integer> positionList) {
+    private void generatePositions(ReportWriter writer, PostingList positionList)
+            throws IOException {
         final int MAX_LINES = 8;
         String commaString = ", ";
+        long last = positionList == null ? -1 : positionList.size() - 1;
+        PrimitiveIterator.OfLong positions = positionList == null ? null
+                : positionList.iterator();
 
         writer.print("[");
 
-        for (int position : positionList) {
-            int i = positionList.indexOf(position);
-            if (i == positionList.size() - 1) {
-                writer.print(position);
+        for (long i = 0; i <= last; i++) {
+            writer.print(positions.nextLong());
+            if (i == last) {
+                break;
             // % (Modulus) Divides left hand operand by right hand operand
-            } else if ((i + 1) % MAX_LINES != 0 && i != (positionList.size() - 1)) {
-                writer.print(position);
+            } else if ((i + 1) % MAX_LINES != 0) {
                 writer.print(commaString);
             } else {
-                writer.print(position);
                 writer.println(commaString);
             }
         }
 
         writer.println("]");
     }
- 
-}
-
 
+}
@@ -0,0 +1,126 @@
+package java112.analyzer;
+
+import java.util.*;
+
+/**
+ * The KeywordMatcher class compiles a keyword list once into a read only
+ * open addressing table. Keywords are added in alphabetical order, so the
+ * keyword ids are also the report order. A compiled matcher is never
+ * changed, so one instance can be shared by every analyzer in a run.
+ *
+ * When any entry is a pattern, such as ERR*, timeout? or ^user_[0-9]+$,
+ * the whole list is compiled into a PatternAutomaton instead, so a token
+ * is still classified in one pass however many patterns there are. A
+ * token can then match more than one keyword, so a match is a set of
+ * keyword ids.
+ *
+ *@author   April Albaugh
+ */
+
+public class KeywordMatcher {
+
+    private String[] keywords;
+    private TokenTable keywordTable;
+    private int[][] keywordIds;
+    private PatternAutomaton automaton;
+
+    /**
+     * Constructor for the KeywordMatcher object
+     *
+     *@param keywords   the keywords to match
+     *@exception IllegalArgumentException  if a pattern can not be parsed
+     */
+    public KeywordMatcher(Collection<String> keywords) {
+        this.keywords = new TreeSet<String>(keywords).toArray(new String[0]);
+        for (String keyword : this.keywords) {
+            if (PatternAutomaton.isPattern(keyword)) {
+                automaton = new PatternAutomaton(Arrays.asList(this.keywords));
+                return;
+            }
+        }
+        keywordTable = new TokenTable();
+        keywordIds = new int[this.keywords.length][];
+        for (String keyword : this.keywords) {
+            int id = keywordTable.add(keyword);
+            keywordIds[id] = new int[] {id};
+        }
+    }
+
+    /**
+     * Gets the size attribute, the number of keywords
+     *
+     *@return   The size value
+     */
+    public int size() {
+        return keywords.length;
+    }
+
+    /**
+     * Gets the patterns attribute
+     *
+     *@return   true if the keywords are matched by a PatternAutomaton
+     */
+    public boolean hasPatterns() {
+        return automaton != null;
+    }
+
+    /**
+     * The getKeyword method returns the keyword for an id
+     *
+     *@param id the keyword id
+     *@return   the keyword
+     */
+    public String getKeyword(int id) {
+        return keywords[id];
+    }
+
+    /**
+     * The indexOf method finds the id of a keyword entry, as when the
+     * results of a run with another keyword list are merged
+     *
+     *@param keyword    the keyword entry
+     *@return   the keyword id, or -1 if the list does not have it
+     */
+    public int indexOf(String keyword) {
+        int id = Arrays.binarySearch(keywords, keyword);
+        return id < 0 ? -1 : id;
+    }
+
+    /**
+     * The match method looks up a token in the keyword list
+     *
+     *@param token  the token to match
+     *@return   the match, whose keyword ids getKeywordIds returns, or -1 if
+     *      the token is not a keyword. Without patterns the match is the
+     *      keyword id.
+     */
+    public int match(String token) {
+        return automaton == null ? keywordTable.find(token) : automaton.match(token);
+    }
+
+    /**
+     * The match method looks up a token held as ASCII bytes in the keyword
+     * list, without creating a String
+     *
+     *@param data   the array holding the token
+     *@param start  the offset of the token
+     *@param length the number of bytes in the token
+     *@return   the match, as for a String token, or -1 if the token is not
+     *      a keyword
+     */
+    public int match(byte[] data, int start, int length) {
+        return automaton == null ? keywordTable.find(data, start, length)
+                : automaton.match(data, start, length);
+    }
+
+    /**
+     * The getKeywordIds method returns the keywords of a match
+     *
+     *@param match  a match returned by the match method
+     *@return   the keyword ids in order
+     */
+    public int[] getKeywordIds(int match) {
+        return automaton == null ? keywordIds[match] : automaton.getAcceptSet(match);
+    }
+
+}
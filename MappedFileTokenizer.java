@@ -0,0 +1,373 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * The MappedFileTokenizer class memory maps the input file and scans the bytes
+ * for the same boundaries as line.split("\\W"). Without the UNICODE flag \W is
+ * every character except [a-zA-Z_0-9], so for ASCII compatible encodings such
+ * as UTF-8 a token is simply a run of ASCII word bytes. Tokens are copied
+ * into a TokenBatch as they end and the batch is handed on when it is full,
+ * no line Strings, token arrays, token Strings or empty tokens are created.
+ * A stream, such as a decompressed input, is scanned the same way through a
+ * buffer that keeps the unfinished token at its end for the next read.
+ *
+ * The bytes are scanned eight at a time: one long is classified with a few
+ * additions and masks that set the high bit of every word byte, and only
+ * the bytes where a token starts or ends are visited. Bytes of 0x80 and
+ * above, which includes every byte of a multi byte UTF-8 character, are
+ * never word bytes, so no decoding is needed. The last few bytes of a
+ * range, and every byte when block scanning is turned off, go through the
+ * lookup table one at a time.
+ *
+ * A mapped buffer holds at most two gigabytes, so the file is mapped in
+ * segments of about a gigabyte. Each segment end is moved forward until it
+ * does not fall inside a token, so every token is scanned from a single
+ * segment and a file of any size gives the same tokens.
+ *
+ * With a TokenPredicate only the tokens it accepts are copied into the
+ * batch; the others are added as their length only, so a run that only
+ * counts tokens or token sizes copies no token bytes at all.
+ *
+ *@author   April Albaugh
+ */
+
+public class MappedFileTokenizer {
+
+    public static final int STREAM_BUFFER_SIZE = 1 << 20;
+    public static final long DEFAULT_SEGMENT_SIZE = 1L << 30;
+    public static final int PROBE_SIZE = 4096;
+
+    private static final boolean[] WORD_BYTES = new boolean[256];
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    static {
+        for (int value = '0'; value <= '9'; value++) {
+            WORD_BYTES[value] = true;
+        }
+        for (int value = 'A'; value <= 'Z'; value++) {
+            WORD_BYTES[value] = true;
+        }
+        for (int value = 'a'; value <= 'z'; value++) {
+            WORD_BYTES[value] = true;
+        }
+        WORD_BYTES['_'] = true;
+    }
+
+    private String inputFilePath;
+    private boolean blockScan;
+    private long segmentSize;
+    private TokenPredicate predicate;
+
+    /**
+     * Constructor for the MappedFileTokenizer object
+     *
+     *@param inputFilePath  the file to tokenize
+     */
+    public MappedFileTokenizer(String inputFilePath) {
+        this.inputFilePath = inputFilePath;
+        blockScan = true;
+        segmentSize = DEFAULT_SEGMENT_SIZE;
+    }
+
+    /**
+     * Sets the segmentSize attribute, the number of bytes mapped at a time
+     * before the end is moved to a token boundary. A segment can not be
+     * larger than Integer.MAX_VALUE bytes.
+     *
+     *@param segmentSize    the size of a segment
+     */
+    public void setSegmentSize(long segmentSize) {
+        if (segmentSize < 1 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size out of range: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * The segmentSize method reads the input.map.segment.size property
+     *
+     *@param properties the run properties
+     *@return   the segment size, DEFAULT_SEGMENT_SIZE if it is not set
+     */
+    public static long segmentSize(Properties properties) {
+        return Long.parseLong(properties.getProperty("input.map.segment.size",
+                String.valueOf(DEFAULT_SEGMENT_SIZE)));
+    }
+
+    /**
+     * Sets the predicate attribute, the tokens whose bytes are kept
+     *
+     *@param predicate  the tokens the analyzers read, such as the
+     *      predicate of a TokenDispatcher
+     */
+    public void setPredicate(TokenPredicate predicate) {
+        this.predicate = predicate.isAll() ? null : predicate;
+    }
+
+    /**
+     * Sets the blockScan attribute. With block scanning off every byte is
+     * looked up in the table, which gives the same tokens more slowly.
+     *
+     *@param blockScan  true to scan eight bytes at a time
+     */
+    public void setBlockScan(boolean blockScan) {
+        this.blockScan = blockScan;
+    }
+
+    /**
+     * The isWordByte method tests if a byte is part of a token
+     *
+     *@param value  byte from the input file
+     *@return   true for ASCII letters, digits and underscore
+     */
+    public static boolean isWordByte(byte value) {
+        return WORD_BYTES[value & 0xFF];
+    }
+
+    /**
+     * The tokenize method maps the whole input file, one segment after
+     * another, and passes every token to the consumer in batches.
+     *
+     *@param batch      the batch to fill, it is cleared after each hand off
+     *@param consumer   receives each full batch and the last partial one
+     *@exception IOException  if the file can not be mapped
+     */
+    public void tokenize(TokenBatch batch, Consumer<TokenBatch> consumer) throws IOException {
+        for (ByteBuffer segment : mapSegments()) {
+            scan(segment, 0, segment.limit(), batch, consumer);
+        }
+        if (batch.size() > 0) {
+            consumer.accept(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * The mapSegments method maps the whole input file read only, in
+     * segments that start and end on token boundaries. An empty file has
+     * one empty segment. The mappings stay valid after the channel is
+     * closed.
+     *
+     *@return   the mapped segments in file order
+     *@exception IOException  if the file can not be mapped
+     */
+    public List<ByteBuffer> mapSegments() throws IOException {
+        List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+        try (FileChannel channel = FileChannel.open(Paths.get(inputFilePath),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            do {
+                long end = segmentEnd(channel, start, size);
+                if (end - start > Integer.MAX_VALUE) {
+                    throw new IOException("Token before byte " + end + " is too long to map");
+                }
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+                start = end;
+            } while (start < size);
+        }
+        return segments;
+    }
+
+    /**
+     * The segmentEnd method finds the end of the segment that starts at a
+     * position, reading the bytes after the nominal end until the token
+     * that crosses it is finished.
+     *
+     *@param channel    the open input file
+     *@param start      the first byte of the segment
+     *@param size       the size of the file
+     *@return   one past the last byte of the segment, or a position past
+     *      the largest segment when the token is longer than that
+     *@exception IOException  if the file can not be read
+     */
+    private long segmentEnd(FileChannel channel, long start, long size) throws IOException {
+        long end = Math.min(size, start + segmentSize);
+        if (end == size) {
+            return end;
+        }
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        long position = end - 1;
+        boolean first = true;
+        while (position < size) {
+            probe.clear();
+            int count = channel.read(probe, position);
+            if (count <= 0) {
+                break;
+            }
+            for (int index = 0; index < count; index++) {
+                if (!WORD_BYTES[probe.get(index) & 0xFF]) {
+                    return first && index == 0 ? end : position + index;
+                }
+            }
+            first = false;
+            position += count;
+            if (position - start > Integer.MAX_VALUE) {
+                break;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The tokenize method scans part of a buffer and passes every token that
+     * starts at or after start and ends at or before end to the consumer.
+     *
+     *@param buffer     the bytes to scan
+     *@param start      first byte to scan
+     *@param end        one past the last byte to scan
+     *@param batch      the batch to fill, it is cleared after each hand off
+     *@param consumer   receives each full batch and the last partial one
+     */
+    public void tokenize(ByteBuffer buffer, int start, int end, TokenBatch batch,
+            Consumer<TokenBatch> consumer) {
+        scan(buffer, start, end, batch, consumer);
+        if (batch.size() > 0) {
+            consumer.accept(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * The tokenize method reads a stream through a buffer and passes every
+     * token to the consumer in batches. Only the bytes up to the last
+     * non word byte are scanned after each read; the rest is moved to the
+     * front of the buffer, which grows if one token fills it.
+     *
+     *@param input      the stream to read
+     *@param batch      the batch to fill, it is cleared after each hand off
+     *@param consumer   receives each full batch and the last partial one
+     *@exception IOException  if the stream can not be read
+     */
+    public void tokenize(InputStream input, TokenBatch batch, Consumer<TokenBatch> consumer)
+            throws IOException {
+        byte[] data = new byte[STREAM_BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int length = 0;
+        int count;
+        while ((count = input.read(data, length, data.length - length)) >= 0) {
+            length += count;
+            int end = length;
+            while (end > 0 && WORD_BYTES[data[end - 1] & 0xFF]) {
+                end--;
+            }
+            if (end == 0 && length == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+                buffer = ByteBuffer.wrap(data);
+                continue;
+            }
+            scan(buffer, 0, end, batch, consumer);
+            System.arraycopy(data, end, data, 0, length - end);
+            length -= end;
+        }
+        tokenize(buffer, 0, length, batch, consumer);
+    }
+
+    /**
+     * The scan method adds the tokens between start and end to the batch,
+     * handing on each full batch. Whole longs are scanned as blocks and the
+     * rest byte by byte.
+     *
+     *@param buffer     the bytes to scan
+     *@param start      first byte to scan
+     *@param end        one past the last byte to scan
+     *@param batch      the batch to fill
+     *@param consumer   receives each full batch
+     */
+    void scan(ByteBuffer buffer, int start, int end, TokenBatch batch,
+            Consumer<TokenBatch> consumer) {
+        int tokenStart = -1;
+        int index = start;
+        if (blockScan) {
+            boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+            long previous = 0;
+            for (; index + Long.BYTES <= end; index += Long.BYTES) {
+                long bytes = buffer.getLong(index);
+                long words = wordBytes(bigEndian ? bytes : Long.reverseBytes(bytes));
+                long changes = words ^ (words >>> 8 | previous);
+                previous = words << 56;
+                while (changes != 0) {
+                    int offset = index + (Long.numberOfLeadingZeros(changes) >>> 3);
+                    changes ^= Long.highestOneBit(changes);
+                    if (tokenStart < 0) {
+                        tokenStart = offset;
+                    } else {
+                        addToken(buffer, tokenStart, offset - tokenStart, batch, consumer);
+                        tokenStart = -1;
+                    }
+                }
+            }
+        }
+        for (; index < end; index++) {
+            if (WORD_BYTES[buffer.get(index) & 0xFF]) {
+                if (tokenStart < 0) {
+                    tokenStart = index;
+                }
+            } else if (tokenStart >= 0) {
+                addToken(buffer, tokenStart, index - tokenStart, batch, consumer);
+                tokenStart = -1;
+            }
+        }
+        if (tokenStart >= 0) {
+            addToken(buffer, tokenStart, end - tokenStart, batch, consumer);
+        }
+    }
+
+    /**
+     * The wordBytes method classifies eight bytes at once. Each byte below
+     * 0x80 has its high bit cleared and a constant added per range bound,
+     * so the sum's high bit tells if the byte is at or above the bound; no
+     * sum carries into the next byte.
+     *
+     *@param bytes  eight bytes, the first byte in the high bits
+     *@return   the high bit of each byte set for a word byte
+     */
+    private static long wordBytes(long bytes) {
+        long ascii = ~bytes & HIGH_BITS;
+        long low = bytes & ~HIGH_BITS;
+        long digits = (low + ONES * (0x80 - '0')) & ~(low + ONES * (0x7F - '9'));
+        long upper = (low + ONES * (0x80 - 'A')) & ~(low + ONES * (0x7F - 'Z'));
+        long lower = (low + ONES * (0x80 - 'a')) & ~(low + ONES * (0x7F - 'z'));
+        long underscore = (low + ONES * (0x80 - '_')) & ~(low + ONES * (0x7F - '_'));
+        return (digits | upper | lower | underscore) & ascii;
+    }
+
+    /**
+     * The addToken method copies a token into the batch, handing the batch
+     * to the consumer first if it is full. A token the predicate turns down
+     * is added as its length only; one that needs a keyword lookup is
+     * copied first and tested in the batch.
+     *
+     *@param buffer     the mapped bytes
+     *@param start      first byte of the token
+     *@param length     number of bytes in the token
+     *@param batch      the batch to fill
+     *@param consumer   receives the full batch
+     */
+    private void addToken(ByteBuffer buffer, int start, int length, TokenBatch batch,
+            Consumer<TokenBatch> consumer) {
+        if (batch.isFull()) {
+            consumer.accept(batch);
+            batch.clear();
+        }
+        if (predicate == null) {
+            batch.add(buffer, start, length);
+        } else if (!predicate.mightAccept(length)) {
+            batch.addLength(length);
+        } else {
+            batch.add(buffer, start, length);
+            if (predicate.needsBytes() && !predicate.test(batch.getData(),
+                    batch.getStart(batch.size() - 1), length)) {
+                batch.removeContent();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package java112.analyzer;
+
+/**
+ * The MergeableAnalyzer interface is implemented by analyzers whose partial
+ * results can be combined. An analyzer that has seen one part of the input
+ * merges the analyzer that saw the part directly after it, so merging the
+ * parts in file order gives the same result as a single pass.
+ *
+ *@author   April Albaugh
+ *@param <T>  the analyzer type that can be merged
+ */
+
+public interface MergeableAnalyzer<T extends MergeableAnalyzer<T>> extends Analyzer {
+
+    /**
+     * The merge method adds the results of an analyzer that processed the
+     * tokens following the ones this analyzer processed.
+     *
+     *@param other  analyzer for the next part of the input
+     */
+    void merge(T other);
+
+}
@@ -0,0 +1,299 @@
+package java112.analyzer;
+
+import java.lang.invoke.*;
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The OffHeapTokenTable class is a TokenTable that keeps its tokens in
+ * direct buffers from a TokenArena. The token bytes are copied one after
+ * another into chunks, each id has an entry of its hash, length, chunk and
+ * offset, and the open addressing index holds id + 1 as the heap table
+ * does. The ids, hashes and sort order are the same as a heap table's, so
+ * the analyzers and their reports do not change. A String is only created
+ * when a token is read back, as for a report.
+ *
+ *@author   April Albaugh
+ */
+
+public class OffHeapTokenTable extends TokenTable {
+
+    private static final int ENTRY_SIZE = 16;
+    private static final int HASH = 0;
+    private static final int LENGTH = 4;
+    private static final int CHUNK = 8;
+    private static final int OFFSET = 12;
+    private static final VarHandle LONGS =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private TokenArena arena;
+    private ByteBuffer slots;
+    private int mask;
+    private ByteBuffer entries;
+    private int capacity;
+    private List<ByteBuffer> chunks;
+    private ByteBuffer chunk;
+    private int chunkPosition;
+    private int size;
+
+    /**
+     * Constructor for the OffHeapTokenTable object. The heap arrays of the
+     * TokenTable are not used.
+     *
+     *@param arena  the run's off-heap memory
+     */
+    public OffHeapTokenTable(TokenArena arena) {
+        super(0);
+        this.arena = arena;
+        capacity = INITIAL_CAPACITY;
+        slots = arena.allocate(capacity * 2 * Integer.BYTES);
+        mask = capacity * 2 - 1;
+        entries = arena.allocate(capacity * ENTRY_SIZE);
+        chunks = new ArrayList<ByteBuffer>();
+    }
+
+    /**
+     * Gets the size attribute, the number of distinct tokens
+     *
+     *@return   The size value
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The getToken method copies the token for an id into a String
+     *
+     *@param id the token id
+     *@return   the token
+     */
+    public String getToken(int id) {
+        checkOpen();
+        byte[] bytes = new byte[entries.getInt(id * ENTRY_SIZE + LENGTH)];
+        chunks.get(entries.getInt(id * ENTRY_SIZE + CHUNK))
+                .get(entries.getInt(id * ENTRY_SIZE + OFFSET), bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * The find method looks up the id of a token
+     *
+     *@param token  the token to find
+     *@return   the token id, or -1 if the token has not been added
+     */
+    public int find(String token) {
+        checkOpen();
+        byte[] bytes = token.getBytes(StandardCharsets.ISO_8859_1);
+        int hash = mix(token.hashCode());
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots.getInt(slot * Integer.BYTES);
+            if (entry == 0) {
+                return -1;
+            }
+            if (matches(entry - 1, hash, bytes, 0, bytes.length)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * The find method looks up the id of a token held as ASCII bytes
+     * without adding it
+     *
+     *@param data   the array holding the token
+     *@param start  the offset of the token
+     *@param length the number of bytes in the token
+     *@return   the token id, or -1 if the token has not been added
+     */
+    public int find(byte[] data, int start, int length) {
+        checkOpen();
+        int hashCode = 0;
+        for (int index = start; index < start + length; index++) {
+            hashCode = 31 * hashCode + (data[index] & 0xFF);
+        }
+        int hash = mix(hashCode);
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots.getInt(slot * Integer.BYTES);
+            if (entry == 0) {
+                return -1;
+            }
+            if (matches(entry - 1, hash, data, start, length)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * The add method returns the id of a token, adding it with the next id
+     * if it is new.
+     *
+     *@param token  the token to add
+     *@return   the token id
+     */
+    public int add(String token) {
+        byte[] bytes = token.getBytes(StandardCharsets.ISO_8859_1);
+        return add(bytes, 0, bytes.length);
+    }
+
+    /**
+     * The add method returns the id of a token held as ASCII bytes, adding
+     * it with the next id if it is new. The bytes are hashed the same way as
+     * String.hashCode and compared with the bytes in the arena.
+     *
+     *@param data   the array holding the token
+     *@param start  the offset of the token
+     *@param length the number of bytes in the token
+     *@return   the token id
+     */
+    public int add(byte[] data, int start, int length) {
+        checkOpen();
+        int hashCode = 0;
+        for (int index = start; index < start + length; index++) {
+            hashCode = 31 * hashCode + (data[index] & 0xFF);
+        }
+        int hash = mix(hashCode);
+        int slot = hash & mask;
+        for (int entry = slots.getInt(slot * Integer.BYTES); entry != 0;
+                entry = slots.getInt(slot * Integer.BYTES)) {
+            if (matches(entry - 1, hash, data, start, length)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return insert(data, start, length, hash, slot);
+    }
+
+    /**
+     * The matches method compares the token of an id with ASCII bytes,
+     * eight bytes at a time
+     *
+     *@param id     the token id
+     *@param hash   the mixed hash of the bytes
+     *@param data   the array holding the bytes
+     *@param start  the offset of the bytes
+     *@param length the number of bytes
+     *@return   true if the token has the same bytes
+     */
+    private boolean matches(int id, int hash, byte[] data, int start, int length) {
+        int entry = id * ENTRY_SIZE;
+        if (entries.getInt(entry + HASH) != hash || entries.getInt(entry + LENGTH) != length) {
+            return false;
+        }
+        ByteBuffer tokenChunk = chunks.get(entries.getInt(entry + CHUNK));
+        int offset = entries.getInt(entry + OFFSET);
+        int index = 0;
+        for (; index + Long.BYTES <= length; index += Long.BYTES) {
+            if (tokenChunk.getLong(offset + index) != (long) LONGS.get(data, start + index)) {
+                return false;
+            }
+        }
+        for (; index < length; index++) {
+            if (tokenChunk.get(offset + index) != data[start + index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The insert method copies a new token into the current chunk, gives it
+     * the next id and stores it in the empty slot found by the probe. A
+     * token longer than the chunk size gets a chunk of its own.
+     *
+     *@param data   the array holding the token
+     *@param start  the offset of the token
+     *@param length the number of bytes in the token
+     *@param hash   the mixed hash of the token
+     *@param slot   the empty slot
+     *@return   the token id
+     */
+    private int insert(byte[] data, int start, int length, int hash, int slot) {
+        if (chunk == null || chunkPosition + length > chunk.capacity()) {
+            chunk = arena.allocate(Math.max(arena.getChunkSize(), length));
+            chunks.add(chunk);
+            chunkPosition = 0;
+        }
+        chunk.put(chunkPosition, data, start, length);
+        if (size == capacity) {
+            ByteBuffer grown = arena.allocate(capacity * 2 * ENTRY_SIZE);
+            grown.put(0, entries, 0, size * ENTRY_SIZE);
+            arena.free(entries);
+            entries = grown;
+            capacity *= 2;
+        }
+        int id = size++;
+        int entry = id * ENTRY_SIZE;
+        entries.putInt(entry + HASH, hash);
+        entries.putInt(entry + LENGTH, length);
+        entries.putInt(entry + CHUNK, chunks.size() - 1);
+        entries.putInt(entry + OFFSET, chunkPosition);
+        chunkPosition += length;
+        slots.putInt(slot * Integer.BYTES, id + 1);
+        arena.addToken(length);
+        if (size * 2 > mask + 1) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * The compareIds method compares the bytes of the tokens of two ids,
+     * which is the same order as comparing them as Strings
+     *
+     *@param first  the first id
+     *@param second the second id
+     *@return   less than, equal to or greater than 0 as the first token
+     *      sorts before, with or after the second
+     */
+    int compareIds(int first, int second) {
+        int firstEntry = first * ENTRY_SIZE;
+        int secondEntry = second * ENTRY_SIZE;
+        ByteBuffer firstChunk = chunks.get(entries.getInt(firstEntry + CHUNK));
+        ByteBuffer secondChunk = chunks.get(entries.getInt(secondEntry + CHUNK));
+        int firstOffset = entries.getInt(firstEntry + OFFSET);
+        int secondOffset = entries.getInt(secondEntry + OFFSET);
+        int firstLength = entries.getInt(firstEntry + LENGTH);
+        int secondLength = entries.getInt(secondEntry + LENGTH);
+        int length = Math.min(firstLength, secondLength);
+        for (int index = 0; index < length; index++) {
+            int difference = (firstChunk.get(firstOffset + index) & 0xFF)
+                    - (secondChunk.get(secondOffset + index) & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return firstLength - secondLength;
+    }
+
+    /**
+     * The rehash method doubles the index and reinserts every id
+     */
+    private void rehash() {
+        int slotCount = (mask + 1) * 2;
+        ByteBuffer grown = arena.allocate(slotCount * Integer.BYTES);
+        int grownMask = slotCount - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = entries.getInt(id * ENTRY_SIZE + HASH) & grownMask;
+            while (grown.getInt(slot * Integer.BYTES) != 0) {
+                slot = (slot + 1) & grownMask;
+            }
+            grown.putInt(slot * Integer.BYTES, id + 1);
+        }
+        arena.free(slots);
+        slots = grown;
+        mask = grownMask;
+    }
+
+    /**
+     * The checkOpen method stops a table from reading memory its arena has
+     * already freed
+     */
+    private void checkOpen() {
+        if (arena.isClosed()) {
+            throw new IllegalStateException("The token arena is closed");
+        }
+    }
+
+}
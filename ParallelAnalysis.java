@@ -0,0 +1,247 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * The ParallelAnalysis class splits the mapped input file into byte ranges
+ * that start and end on token boundaries, and analyzes each range on a
+ * fork-join pool with its own set of analyzers. The partial analyzers are
+ * merged in file order, so the reports match a single threaded run. A file
+ * larger than one mapped segment is analyzed a segment at a time and the
+ * results of each segment are merged the same way.
+ *
+ *@author   April Albaugh
+ */
+
+public class ParallelAnalysis {
+
+    public static final int CHUNKS_PER_THREAD = 4;
+    public static final int MINIMUM_CHUNK_SIZE = 1 << 20;
+
+    private String inputFilePath;
+    private Supplier<List<Analyzer>> analyzerFactory;
+    private int threads;
+    private AnalysisMetrics metrics;
+    private boolean fusion;
+    private TokenArena arena;
+    private long segmentSize;
+
+    /**
+     * Constructor for the ParallelAnalysis object
+     *
+     *@param inputFilePath      the file to analyze
+     *@param analyzerFactory    creates a new set of analyzers for each range
+     *@param threads            number of worker threads
+     */
+    public ParallelAnalysis(String inputFilePath,
+            Supplier<List<Analyzer>> analyzerFactory, int threads) {
+        this.inputFilePath = inputFilePath;
+        this.analyzerFactory = analyzerFactory;
+        this.threads = threads;
+        segmentSize = MappedFileTokenizer.DEFAULT_SEGMENT_SIZE;
+    }
+
+    /**
+     * Sets the metrics attribute, so the ranges and merges are measured
+     *
+     *@param metrics    the run metrics
+     */
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the fusion attribute, so each range's analyzers that can share a
+     * FusedKernel are run by one
+     *
+     *@param fusion     true to fuse the analyzers
+     */
+    public void setFusion(boolean fusion) {
+        this.fusion = fusion;
+    }
+
+    /**
+     * Sets the arena attribute, so each range's tokens are kept in the
+     * run's off-heap memory
+     *
+     *@param arena      the run's arena
+     */
+    public void setArena(TokenArena arena) {
+        this.arena = arena;
+    }
+
+    /**
+     * Sets the segmentSize attribute, the number of bytes of the input file
+     * mapped at a time
+     *
+     *@param segmentSize    the size of a segment
+     */
+    public void setSegmentSize(long segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * The run method analyzes the input file and returns the merged analyzers
+     *
+     *@return   analyzers holding the results for the whole file
+     *@exception IOException  if the file can not be mapped
+     */
+    public List<Analyzer> run() throws IOException {
+        MappedFileTokenizer tokenizer = new MappedFileTokenizer(inputFilePath);
+        tokenizer.setSegmentSize(segmentSize);
+        List<Analyzer> analyzers = null;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (ByteBuffer segment : tokenizer.mapSegments()) {
+                int[] boundaries = findBoundaries(segment);
+                List<Analyzer> segmentAnalyzers = pool.invoke(new RangeTask(segment,
+                        boundaries, 0, boundaries.length - 1));
+                if (analyzers == null) {
+                    analyzers = segmentAnalyzers;
+                } else {
+                    merge(analyzers, segmentAnalyzers);
+                }
+            }
+            return analyzers;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * The findBoundaries method divides the buffer into ranges of about the
+     * same size, then moves each boundary forward until it does not fall
+     * inside a token.
+     *
+     *@param buffer the mapped input file
+     *@return   the range boundaries, first is 0 and last is the buffer size
+     */
+    private int[] findBoundaries(ByteBuffer buffer) {
+        int size = buffer.limit();
+        int chunks = Math.max(1, Math.min(threads * CHUNKS_PER_THREAD,
+                size / MINIMUM_CHUNK_SIZE));
+        List<Integer> boundaries = new ArrayList<Integer>();
+        boundaries.add(0);
+        for (int chunk = 1; chunk < chunks; chunk++) {
+            int boundary = (int) ((long) size * chunk / chunks);
+            while (boundary < size && MappedFileTokenizer.isWordByte(buffer.get(boundary - 1))
+                    && MappedFileTokenizer.isWordByte(buffer.get(boundary))) {
+                boundary++;
+            }
+            if (boundary > boundaries.get(boundaries.size() - 1) && boundary < size) {
+                boundaries.add(boundary);
+            }
+        }
+        boundaries.add(size);
+
+        int[] result = new int[boundaries.size()];
+        for (int index = 0; index < result.length; index++) {
+            result[index] = boundaries.get(index);
+        }
+        return result;
+    }
+
+    /**
+     * The mergeAnalyzers method merges each source analyzer into the target
+     * analyzer at the same position. Both lists come from the same factory.
+     * Callers check the analyzers with AnalyzerRegistry.findUnmergeable
+     * first.
+     *
+     *@param target analyzers for the earlier part of the input
+     *@param source analyzers for the part directly after it
+     *@exception IllegalArgumentException  if an analyzer can not be merged
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static void mergeAnalyzers(List<Analyzer> target, List<Analyzer> source) {
+        Analyzer unmergeable = AnalyzerRegistry.findUnmergeable(target);
+        if (unmergeable != null) {
+            throw new IllegalArgumentException(unmergeable.getClass().getSimpleName()
+                    + " can not be merged");
+        }
+        for (int index = 0; index < target.size(); index++) {
+            MergeableAnalyzer analyzer = (MergeableAnalyzer) target.get(index);
+            analyzer.merge((MergeableAnalyzer) source.get(index));
+        }
+    }
+
+    /**
+     * The merge method merges the analyzers of the next part of the input,
+     * measuring the merge when the run has metrics
+     *
+     *@param target analyzers for the earlier part of the input
+     *@param source analyzers for the part directly after it
+     */
+    private void merge(List<Analyzer> target, List<Analyzer> source) {
+        if (metrics == null) {
+            mergeAnalyzers(target, source);
+        } else {
+            AnalysisMetrics.Timer timer = metrics.stageTimer("merge");
+            AnalysisMetrics.Sample sample = timer.start();
+            mergeAnalyzers(target, source);
+            timer.stop(sample, 0);
+        }
+    }
+
+    /**
+     * The RangeTask class analyzes the ranges between two boundary indexes,
+     * splitting in half until a single range is left.
+     */
+    private class RangeTask extends RecursiveTask<List<Analyzer>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private ByteBuffer buffer;
+        private int[] boundaries;
+        private int first;
+        private int last;
+
+        /**
+         * Constructor for the RangeTask object
+         *
+         *@param buffer     the mapped input file
+         *@param boundaries the range boundaries
+         *@param first      index of the first boundary
+         *@param last       index of the last boundary
+         */
+        RangeTask(ByteBuffer buffer, int[] boundaries, int first, int last) {
+            this.buffer = buffer;
+            this.boundaries = boundaries;
+            this.first = first;
+            this.last = last;
+        }
+
+        /**
+         * The compute method analyzes a single range, or forks both halves
+         * and merges the second half into the first.
+         *
+         *@return   analyzers for the ranges
+         */
+        protected List<Analyzer> compute() {
+            if (last - first == 1) {
+                List<Analyzer> analyzers = analyzerFactory.get();
+                TokenDispatcher dispatcher = new TokenDispatcher(analyzers, fusion,
+                        TokenTable.forArena(arena));
+                if (metrics != null) {
+                    dispatcher.setMetrics(metrics);
+                }
+                MappedFileTokenizer tokenizer = new MappedFileTokenizer(inputFilePath);
+                tokenizer.setPredicate(dispatcher.getTokenPredicate());
+                tokenizer.tokenize(buffer, boundaries[first], boundaries[last],
+                        new TokenBatch(), dispatcher::dispatch);
+                return analyzers;
+            }
+
+            int middle = (first + last) >>> 1;
+            RangeTask second = new RangeTask(buffer, boundaries, middle, last);
+            second.fork();
+            List<Analyzer> analyzers = new RangeTask(buffer, boundaries, first, middle).compute();
+            merge(analyzers, second.join());
+            return analyzers;
+        }
+    }
+
+}
@@ -0,0 +1,414 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * The ParallelGzipInputStream class decodes a mapped gzip file whose
+ * members can be decoded on several threads. Where one member ends is only
+ * known once it is decoded, so every later offset that looks like a gzip
+ * header is decoded ahead of the reader into memory. When the reader
+ * reaches the end of a member and a member decoded ahead starts exactly
+ * there, its bytes are used. Any other offset turned out to be inside a
+ * member and its result is dropped. A member decoded ahead must check its
+ * CRC and length, and members larger than the member limit are left for
+ * the reader, which decodes its current member as a stream. The decoded
+ * bytes are the same as from a GZIPInputStream.
+ *
+ *@author   April Albaugh
+ */
+
+public class ParallelGzipInputStream extends InputStream {
+
+    public static final int CANDIDATES_PER_THREAD = 2;
+
+    private static final int INITIAL_MEMBER_SIZE = 1 << 16;
+    private static final int HEADER_SIZE = 10;
+    private static final int TRAILER_SIZE = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int RESERVED_FLAGS = 0xE0;
+
+    private ByteBuffer buffer;
+    private int limit;
+    private int memberLimit;
+    private int window;
+    private ExecutorService executor;
+    private TreeMap<Integer, Future<Member>> candidates;
+    private int scanPosition;
+    private int position;
+
+    private Member member;
+    private int memberPosition;
+
+    private Inflater inflater;
+    private CRC32 crc;
+    private long inflated;
+    private int dataStart;
+
+    /**
+     * Constructor for the ParallelGzipInputStream object
+     *
+     *@param buffer         the mapped gzip file
+     *@param threads        the number of decode threads
+     *@param memberLimit    the largest member decoded ahead, in bytes
+     */
+    public ParallelGzipInputStream(ByteBuffer buffer, int threads, int memberLimit) {
+        this.buffer = buffer;
+        this.memberLimit = memberLimit;
+        limit = buffer.limit();
+        window = threads * CANDIDATES_PER_THREAD;
+        candidates = new TreeMap<Integer, Future<Member>>();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "gzip-decoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The read method reads one decoded byte
+     *
+     *@return   the byte, or -1 at the end of the file
+     *@exception IOException  if the file is not valid gzip
+     */
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    /**
+     * The read method reads decoded bytes from the member decoded ahead or
+     * from the member being decoded as a stream, moving on to the next
+     * member at the end of one
+     *
+     *@param bytes  the array to fill
+     *@param offset the first index to fill
+     *@param length the most bytes to read
+     *@return   the number of bytes read, or -1 at the end of the file
+     *@exception IOException  if the file is not valid gzip
+     */
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (true) {
+            if (member != null) {
+                if (memberPosition < member.length) {
+                    int count = Math.min(length, member.length - memberPosition);
+                    System.arraycopy(member.data, memberPosition, bytes, offset, count);
+                    memberPosition += count;
+                    return count;
+                }
+                member = null;
+            } else if (inflater != null) {
+                int count = inflate(bytes, offset, length);
+                if (count > 0) {
+                    return count;
+                }
+                finishMember();
+            }
+            if (!startMember()) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * The inflate method decodes bytes of the member being streamed
+     *
+     *@param bytes  the array to fill
+     *@param offset the first index to fill
+     *@param length the most bytes to read
+     *@return   the number of bytes decoded, 0 at the end of the member
+     *@exception IOException  if the member is not valid deflate data
+     */
+    private int inflate(byte[] bytes, int offset, int length) throws IOException {
+        try {
+            int count = inflater.inflate(bytes, offset, length);
+            if (count == 0 && !inflater.finished()) {
+                throw new EOFException("Unexpected end of gzip input");
+            }
+            crc.update(bytes, offset, count);
+            inflated += count;
+            return count;
+        } catch (DataFormatException dataFormatEx) {
+            throw new IOException("Corrupt gzip member at " + position, dataFormatEx);
+        }
+    }
+
+    /**
+     * The finishMember method checks the trailer of the streamed member and
+     * moves to the byte after it
+     *
+     *@exception IOException  if the trailer does not match the data
+     */
+    private void finishMember() throws IOException {
+        int end = dataStart + (int) inflater.getBytesRead();
+        inflater.end();
+        inflater = null;
+        if (!checkTrailer(end, (int) crc.getValue(), inflated)) {
+            throw new IOException("Corrupt gzip trailer at " + end);
+        }
+        position = end + TRAILER_SIZE;
+    }
+
+    /**
+     * The startMember method starts the member at the current position,
+     * using its decoded bytes if it was decoded ahead and otherwise
+     * streaming it. Candidates before the position are dropped and new
+     * ones are decoded ahead. Bytes after the last member that are not a
+     * member are ignored, as GZIPInputStream does.
+     *
+     *@return   false at the end of the file
+     *@exception IOException  if the member header is not valid
+     */
+    private boolean startMember() throws IOException {
+        Map<Integer, Future<Member>> passed = candidates.headMap(position, false);
+        for (Future<Member> future : passed.values()) {
+            future.cancel(true);
+        }
+        passed.clear();
+        if (!isCandidate(position)) {
+            if (position == 0) {
+                throw new ZipException("Not in gzip format");
+            }
+            return false;
+        }
+        scheduleCandidates();
+        Future<Member> future = candidates.remove(position);
+        if (future != null) {
+            Member decoded = await(future);
+            if (decoded != null) {
+                member = decoded;
+                memberPosition = 0;
+                position = decoded.end;
+                return true;
+            }
+        }
+        dataStart = parseHeader(position);
+        if (dataStart < 0) {
+            throw new IOException("Corrupt gzip header at " + position);
+        }
+        inflater = new Inflater(true);
+        inflater.setInput(buffer.slice(dataStart, limit - dataStart));
+        crc = new CRC32();
+        inflated = 0;
+        return true;
+    }
+
+    /**
+     * The scheduleCandidates method scans past the current position for
+     * offsets that look like gzip headers and decodes them ahead until the
+     * window is full
+     */
+    private void scheduleCandidates() {
+        scanPosition = Math.max(scanPosition, position + 1);
+        while (candidates.size() < window && scanPosition < limit) {
+            if (isCandidate(scanPosition)) {
+                int offset = scanPosition;
+                candidates.put(offset, executor.submit(() -> decodeMember(offset)));
+            }
+            scanPosition++;
+        }
+    }
+
+    /**
+     * The await method waits for a member decoded ahead
+     *
+     *@param future  the decode task
+     *@return   the member, or null if it was not decoded
+     *@exception IOException  if the wait was interrupted
+     */
+    private Member await(Future<Member> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException interruptedEx) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decoding gzip input");
+        } catch (ExecutionException executionEx) {
+            return null;
+        }
+    }
+
+    /**
+     * The isCandidate method tests for the gzip magic bytes, the deflate
+     * method and no reserved flags at an offset
+     *
+     *@param offset the offset in the file
+     *@return   true if a member could start at the offset
+     */
+    private boolean isCandidate(int offset) {
+        return offset + HEADER_SIZE + TRAILER_SIZE <= limit
+                && (buffer.get(offset) & 0xFF) == 0x1F
+                && (buffer.get(offset + 1) & 0xFF) == 0x8B
+                && buffer.get(offset + 2) == Deflater.DEFLATED
+                && (buffer.get(offset + 3) & RESERVED_FLAGS) == 0;
+    }
+
+    /**
+     * The parseHeader method skips the optional fields of a member header
+     *
+     *@param offset the offset of the member
+     *@return   the offset of the deflate data, or -1 if the header does not
+     *      fit in the file
+     */
+    private int parseHeader(int offset) {
+        int flags = buffer.get(offset + 3) & 0xFF;
+        int index = offset + HEADER_SIZE;
+        if ((flags & FEXTRA) != 0) {
+            if (index + 2 > limit) {
+                return -1;
+            }
+            index += 2 + ((buffer.get(index) & 0xFF) | (buffer.get(index + 1) & 0xFF) << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            index = skipString(index);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            index = skipString(index);
+        }
+        if ((flags & FHCRC) != 0 && index >= 0) {
+            index += 2;
+        }
+        return index >= 0 && index + TRAILER_SIZE <= limit ? index : -1;
+    }
+
+    /**
+     * The skipString method skips a zero terminated header field
+     *
+     *@param index  the start of the field, or -1
+     *@return   the offset after the field, or -1 if it does not end
+     */
+    private int skipString(int index) {
+        if (index < 0) {
+            return -1;
+        }
+        while (index < limit && buffer.get(index) != 0) {
+            index++;
+        }
+        return index < limit ? index + 1 : -1;
+    }
+
+    /**
+     * The checkTrailer method compares a member trailer with the CRC and
+     * length of the decoded bytes
+     *
+     *@param end    the offset of the trailer
+     *@param crc    the CRC-32 of the decoded bytes
+     *@param length the number of decoded bytes
+     *@return   true if the trailer matches
+     */
+    private boolean checkTrailer(int end, int crc, long length) {
+        return end + TRAILER_SIZE <= limit
+                && readInt(end) == crc
+                && readInt(end + 4) == (int) length;
+    }
+
+    /**
+     * The readInt method reads a little endian int
+     *
+     *@param offset the offset in the file
+     *@return   the value
+     */
+    private int readInt(int offset) {
+        return (buffer.get(offset) & 0xFF)
+                | (buffer.get(offset + 1) & 0xFF) << 8
+                | (buffer.get(offset + 2) & 0xFF) << 16
+                | (buffer.get(offset + 3) & 0xFF) << 24;
+    }
+
+    /**
+     * The decodeMember method decodes a whole member into memory on a
+     * decode thread
+     *
+     *@param offset the offset the member may start at
+     *@return   the member, or null if the offset does not start a valid
+     *      member or the member is larger than the member limit
+     */
+    private Member decodeMember(int offset) {
+        int start = parseHeader(offset);
+        if (start < 0) {
+            return null;
+        }
+        Inflater memberInflater = new Inflater(true);
+        try {
+            memberInflater.setInput(buffer.slice(start, limit - start));
+            byte[] data = new byte[Math.min(memberLimit, INITIAL_MEMBER_SIZE)];
+            int length = 0;
+            while (!memberInflater.finished()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+                if (length == data.length) {
+                    if (data.length >= memberLimit) {
+                        return null;
+                    }
+                    data = Arrays.copyOf(data, Math.min(memberLimit, data.length * 2));
+                }
+                int count = memberInflater.inflate(data, length, data.length - length);
+                if (count == 0 && (memberInflater.needsInput()
+                        || memberInflater.needsDictionary())) {
+                    return null;
+                }
+                length += count;
+            }
+            CRC32 memberCrc = new CRC32();
+            memberCrc.update(data, 0, length);
+            int end = start + (int) memberInflater.getBytesRead();
+            if (!checkTrailer(end, (int) memberCrc.getValue(), length)) {
+                return null;
+            }
+            return new Member(data, length, end + TRAILER_SIZE);
+        } catch (DataFormatException dataFormatEx) {
+            return null;
+        } finally {
+            memberInflater.end();
+        }
+    }
+
+    /**
+     * The close method stops the decode threads
+     */
+    public void close() {
+        for (Future<Member> future : candidates.values()) {
+            future.cancel(true);
+        }
+        candidates.clear();
+        executor.shutdownNow();
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+    }
+
+    /**
+     * The Member class is a member decoded ahead and where the next member
+     * starts
+     */
+    private static class Member {
+
+        private byte[] data;
+        private int length;
+        private int end;
+
+        /**
+         * Constructor for the Member object
+         *
+         *@param data   the decoded bytes
+         *@param length the number of decoded bytes
+         *@param end    the offset after the member trailer
+         */
+        Member(byte[] data, int length, int end) {
+            this.data = data;
+            this.length = length;
+            this.end = end;
+        }
+    }
+
+}
@@ -0,0 +1,818 @@
+package java112.analyzer;
+
+import java.util.*;
+
+/**
+ * The PatternAutomaton class compiles a keyword list with patterns into one
+ * automaton that classifies a token in a single pass over its characters,
+ * however many keywords there are. An entry that starts with ^ is a regular
+ * expression over the whole token, with literals, ., [] classes, \d and \w,
+ * groups, | and the *, +, ? and {m,n} repeats; without a closing $ any
+ * ending is allowed. An entry with * or ? is a glob, where * is any run of
+ * word characters and ? is one. Any other entry is a literal, and the
+ * literals share a trie.
+ *
+ * The entries are built into one nondeterministic automaton over the 63
+ * word characters, with each character class held as a bit mask. The
+ * deterministic automaton is built lazily: a state, the set of nodes the
+ * token could be at, and its transitions are only worked out the first
+ * time a token reaches them, so patterns like *x do not blow up the way a
+ * full subset construction can. A token stops as soon as it reaches the
+ * state with no nodes left. The states found so far are read without a
+ * lock, since a transition or accept value that is not known yet reads as
+ * 0 and is then worked out under the lock, so one automaton can be shared
+ * by every analyzer in a run.
+ *
+ *@author   April Albaugh
+ */
+
+public class PatternAutomaton {
+
+    public static final int SYMBOLS = 63;
+    public static final long ALL_SYMBOLS = (1L << SYMBOLS) - 1;
+    public static final int MAXIMUM_REPEAT = 1000;
+
+    private static final int[] SYMBOL_OF = new int[128];
+    private static final int DEAD = 0;
+    private static final int UNKNOWN = 0;
+    private static final int NO_MATCH = 1;
+    private static final int FIRST_ACCEPT_SET = 2;
+    private static final long DIGITS;
+
+    static {
+        Arrays.fill(SYMBOL_OF, -1);
+        int symbol = 0;
+        for (char character = '0'; character <= '9'; character++) {
+            SYMBOL_OF[character] = symbol++;
+        }
+        for (char character = 'A'; character <= 'Z'; character++) {
+            SYMBOL_OF[character] = symbol++;
+        }
+        for (char character = 'a'; character <= 'z'; character++) {
+            SYMBOL_OF[character] = symbol++;
+        }
+        SYMBOL_OF['_'] = symbol;
+        DIGITS = (1L << 10) - 1;
+    }
+
+    private long[] masks;
+    private int[] targets;
+    private int[][] epsilons;
+    private int[] epsilonCounts;
+    private int[] accepts;
+    private int nodes;
+
+    private Map<BitSet, Integer> stateIds;
+    private List<int[]> stateNodes;
+    private int start;
+    private volatile int[] transitions;
+    private volatile int[] stateAccepts;
+
+    private Map<List<Integer>, Integer> acceptSetIds;
+    private volatile int[][] acceptSets;
+    private int acceptSetCount;
+
+    /**
+     * Constructor for the PatternAutomaton object
+     *
+     *@param keywords   the keyword entries, each matched with its index as
+     *      the keyword id
+     *@exception IllegalArgumentException  if a pattern can not be parsed
+     */
+    public PatternAutomaton(List<String> keywords) {
+        masks = new long[64];
+        targets = new int[64];
+        epsilons = new int[64][];
+        epsilonCounts = new int[64];
+        accepts = new int[64];
+        int root = newNode();
+        int trie = newNode();
+        addEpsilon(root, trie);
+        Map<Long, Integer> trieEdges = new HashMap<Long, Integer>();
+        for (int id = 0; id < keywords.size(); id++) {
+            String keyword = keywords.get(id);
+            if (isPattern(keyword)) {
+                int[] fragment = build(parse(keyword));
+                addEpsilon(root, fragment[0]);
+                accepts[fragment[1]] = id;
+            } else {
+                addLiteral(trie, trieEdges, keyword, id);
+            }
+        }
+
+        stateIds = new HashMap<BitSet, Integer>();
+        stateNodes = new ArrayList<int[]>();
+        transitions = new int[SYMBOLS * 64];
+        stateAccepts = new int[64];
+        acceptSetIds = new HashMap<List<Integer>, Integer>();
+        acceptSets = new int[16][];
+        state(new BitSet());
+        BitSet seeds = new BitSet();
+        seeds.set(root);
+        start = state(closure(seeds));
+    }
+
+    /**
+     * The isPattern method tests if a keyword entry is a pattern instead of
+     * a literal
+     *
+     *@param keyword    the keyword entry
+     *@return   true for a regular expression or a glob
+     */
+    public static boolean isPattern(String keyword) {
+        return keyword.startsWith("^") || keyword.indexOf('*') >= 0
+                || keyword.indexOf('?') >= 0;
+    }
+
+    /**
+     * The match method runs a token through the automaton
+     *
+     *@param token  the token to match
+     *@return   the accept set of the keywords the token matches, or -1 if
+     *      it matches none
+     */
+    public int match(String token) {
+        int[] table = transitions;
+        int state = start;
+        for (int index = 0; index < token.length() && state != DEAD; index++) {
+            char character = token.charAt(index);
+            int symbol = character < SYMBOL_OF.length ? SYMBOL_OF[character] : -1;
+            if (symbol < 0) {
+                return -1;
+            }
+            int cell = state * SYMBOLS + symbol;
+            int next = cell < table.length ? table[cell] : UNKNOWN;
+            if (next == UNKNOWN) {
+                state = step(state, symbol);
+                table = transitions;
+            } else {
+                state = next - 1;
+            }
+        }
+        return accept(state);
+    }
+
+    /**
+     * The match method runs a token held as ASCII bytes through the
+     * automaton, the same way as a String
+     *
+     *@param data   the array holding the token
+     *@param start  the offset of the token
+     *@param length the number of bytes in the token
+     *@return   the accept set of the keywords the token matches, or -1 if
+     *      it matches none
+     */
+    public int match(byte[] data, int start, int length) {
+        int[] table = transitions;
+        int state = this.start;
+        for (int index = start; index < start + length && state != DEAD; index++) {
+            int symbol = data[index] >= 0 ? SYMBOL_OF[data[index]] : -1;
+            if (symbol < 0) {
+                return -1;
+            }
+            int cell = state * SYMBOLS + symbol;
+            int next = cell < table.length ? table[cell] : UNKNOWN;
+            if (next == UNKNOWN) {
+                state = step(state, symbol);
+                table = transitions;
+            } else {
+                state = next - 1;
+            }
+        }
+        return accept(state);
+    }
+
+    /**
+     * The getAcceptSet method returns the keywords of an accept set
+     *
+     *@param acceptSet  an accept set returned by match
+     *@return   the keyword ids in order
+     */
+    public int[] getAcceptSet(int acceptSet) {
+        int[][] sets = acceptSets;
+        int[] keywordIds = acceptSet < sets.length ? sets[acceptSet] : null;
+        return keywordIds != null ? keywordIds : lockedAcceptSet(acceptSet);
+    }
+
+    /**
+     * Gets the stateCount attribute, the number of states built so far
+     *
+     *@return   The stateCount value
+     */
+    public synchronized int getStateCount() {
+        return stateNodes.size();
+    }
+
+    /**
+     * The step method works out a transition that is not known yet
+     *
+     *@param state  the state the token is in
+     *@param symbol the next character of the token
+     *@return   the next state
+     */
+    private synchronized int step(int state, int symbol) {
+        int cell = state * SYMBOLS + symbol;
+        if (cell < transitions.length && transitions[cell] != UNKNOWN) {
+            return transitions[cell] - 1;
+        }
+        BitSet seeds = new BitSet();
+        long bit = 1L << symbol;
+        for (int node : stateNodes.get(state)) {
+            if ((masks[node] & bit) != 0) {
+                seeds.set(targets[node]);
+            }
+        }
+        int next = state(closure(seeds));
+        transitions[cell] = next + 1;
+        return next;
+    }
+
+    /**
+     * The accept method finds the accept set of the state a token ends in
+     *
+     *@param state  the state
+     *@return   the accept set, or -1 if the state accepts no keyword
+     */
+    private int accept(int state) {
+        if (state == DEAD) {
+            return -1;
+        }
+        int[] acceptTable = stateAccepts;
+        int accept = state < acceptTable.length ? acceptTable[state] : UNKNOWN;
+        if (accept == UNKNOWN) {
+            accept = acceptOf(state);
+        }
+        return accept - FIRST_ACCEPT_SET;
+    }
+
+    /**
+     * The acceptOf method reads the accept value of a state under the lock
+     *
+     *@param state  the state
+     *@return   the accept set plus FIRST_ACCEPT_SET, or NO_MATCH
+     */
+    private synchronized int acceptOf(int state) {
+        return stateAccepts[state];
+    }
+
+    /**
+     * The lockedAcceptSet method reads an accept set under the lock
+     *
+     *@param acceptSet  the accept set
+     *@return   the keyword ids in order
+     */
+    private synchronized int[] lockedAcceptSet(int acceptSet) {
+        return acceptSets[acceptSet];
+    }
+
+    /**
+     * The closure method adds every node that can be reached without a
+     * character from the seed nodes
+     *
+     *@param seeds  the nodes reached
+     *@return   the nodes that can take a character or accept, the identity
+     *      of a state
+     */
+    private BitSet closure(BitSet seeds) {
+        BitSet visited = new BitSet();
+        BitSet closure = new BitSet();
+        Deque<Integer> pending = new ArrayDeque<Integer>();
+        for (int node = seeds.nextSetBit(0); node >= 0; node = seeds.nextSetBit(node + 1)) {
+            visited.set(node);
+            pending.push(node);
+        }
+        while (!pending.isEmpty()) {
+            int node = pending.pop();
+            if (masks[node] != 0 || accepts[node] >= 0) {
+                closure.set(node);
+            }
+            for (int index = 0; index < epsilonCounts[node]; index++) {
+                int next = epsilons[node][index];
+                if (!visited.get(next)) {
+                    visited.set(next);
+                    pending.push(next);
+                }
+            }
+        }
+        return closure;
+    }
+
+    /**
+     * The state method finds the state for a set of nodes, adding it with
+     * its accept set if it is new. The tables are grown as copies, so a
+     * match reading an older table still finds it consistent.
+     *
+     *@param closure    the nodes of the state
+     *@return   the state
+     */
+    private int state(BitSet closure) {
+        Integer existing = stateIds.get(closure);
+        if (existing != null) {
+            return existing;
+        }
+        int state = stateNodes.size();
+        stateNodes.add(closure.stream().filter(node -> masks[node] != 0).toArray());
+        stateIds.put(closure, state);
+        if ((state + 1) * SYMBOLS > transitions.length) {
+            transitions = Arrays.copyOf(transitions, transitions.length * 2);
+        }
+        if (state >= stateAccepts.length) {
+            stateAccepts = Arrays.copyOf(stateAccepts, stateAccepts.length * 2);
+        }
+        List<Integer> keywordIds = new ArrayList<Integer>();
+        for (int node = closure.nextSetBit(0); node >= 0; node = closure.nextSetBit(node + 1)) {
+            if (accepts[node] >= 0) {
+                keywordIds.add(accepts[node]);
+            }
+        }
+        Collections.sort(keywordIds);
+        stateAccepts[state] = keywordIds.isEmpty() ? NO_MATCH
+                : acceptSet(keywordIds) + FIRST_ACCEPT_SET;
+        return state;
+    }
+
+    /**
+     * The acceptSet method finds the accept set of a list of keywords,
+     * adding it if it is new
+     *
+     *@param keywordIds the keyword ids in order
+     *@return   the accept set
+     */
+    private int acceptSet(List<Integer> keywordIds) {
+        Integer existing = acceptSetIds.get(keywordIds);
+        if (existing != null) {
+            return existing;
+        }
+        int acceptSet = acceptSetCount++;
+        acceptSetIds.put(keywordIds, acceptSet);
+        int[][] sets = acceptSets;
+        if (acceptSet >= sets.length) {
+            sets = Arrays.copyOf(sets, sets.length * 2);
+        }
+        sets[acceptSet] = keywordIds.stream().mapToInt(Integer::intValue).toArray();
+        acceptSets = sets;
+        return acceptSet;
+    }
+
+    /**
+     * The addLiteral method adds a literal keyword to the trie
+     *
+     *@param trie       the root of the trie
+     *@param trieEdges  the trie edges, by node and character
+     *@param keyword    the literal
+     *@param id         the keyword id
+     */
+    private void addLiteral(int trie, Map<Long, Integer> trieEdges, String keyword, int id) {
+        int node = trie;
+        for (int index = 0; index < keyword.length(); index++) {
+            long bit = maskOf(keyword.charAt(index));
+            if (bit == 0) {
+                return;
+            }
+            long edge = (long) node * SYMBOLS + Long.numberOfTrailingZeros(bit);
+            Integer child = trieEdges.get(edge);
+            if (child == null) {
+                int symbolNode = newNode();
+                child = newNode();
+                masks[symbolNode] = bit;
+                targets[symbolNode] = child;
+                addEpsilon(node, symbolNode);
+                trieEdges.put(edge, child);
+            }
+            node = child;
+        }
+        accepts[node] = id;
+    }
+
+    /**
+     * The newNode method adds a node with no edges
+     *
+     *@return   the node
+     */
+    private int newNode() {
+        if (nodes == masks.length) {
+            int capacity = nodes * 2;
+            masks = Arrays.copyOf(masks, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            epsilons = Arrays.copyOf(epsilons, capacity);
+            epsilonCounts = Arrays.copyOf(epsilonCounts, capacity);
+            accepts = Arrays.copyOf(accepts, capacity);
+        }
+        targets[nodes] = -1;
+        accepts[nodes] = -1;
+        return nodes++;
+    }
+
+    /**
+     * The addEpsilon method adds an edge that takes no character
+     *
+     *@param from   the node the edge leaves
+     *@param to     the node the edge reaches
+     */
+    private void addEpsilon(int from, int to) {
+        int[] edges = epsilons[from];
+        if (edges == null) {
+            edges = new int[2];
+        } else if (epsilonCounts[from] == edges.length) {
+            edges = Arrays.copyOf(edges, edges.length * 2);
+        }
+        edges[epsilonCounts[from]++] = to;
+        epsilons[from] = edges;
+    }
+
+    /**
+     * The build method adds the nodes of a term
+     *
+     *@param term   the term
+     *@return   the first and last node of the term
+     */
+    private int[] build(Term term) {
+        int first = newNode();
+        int last = first;
+        switch (term.kind) {
+            case Term.SYMBOL:
+                last = newNode();
+                masks[first] = term.mask;
+                targets[first] = last;
+                break;
+            case Term.CONCATENATION:
+                for (Term part : term.terms) {
+                    int[] fragment = build(part);
+                    addEpsilon(last, fragment[0]);
+                    last = fragment[1];
+                }
+                break;
+            case Term.ALTERNATION:
+                last = newNode();
+                for (Term branch : term.terms) {
+                    int[] fragment = build(branch);
+                    addEpsilon(first, fragment[0]);
+                    addEpsilon(fragment[1], last);
+                }
+                break;
+            default:
+                for (int count = 0; count < term.minimum; count++) {
+                    int[] fragment = build(term.terms.get(0));
+                    addEpsilon(last, fragment[0]);
+                    last = fragment[1];
+                }
+                if (term.maximum < 0) {
+                    int loop = newNode();
+                    int[] fragment = build(term.terms.get(0));
+                    addEpsilon(last, loop);
+                    addEpsilon(loop, fragment[0]);
+                    addEpsilon(fragment[1], loop);
+                    last = loop;
+                } else if (term.maximum > term.minimum) {
+                    int end = newNode();
+                    for (int count = term.minimum; count < term.maximum; count++) {
+                        int[] fragment = build(term.terms.get(0));
+                        addEpsilon(last, end);
+                        addEpsilon(last, fragment[0]);
+                        last = fragment[1];
+                    }
+                    addEpsilon(last, end);
+                    last = end;
+                }
+                break;
+        }
+        return new int[] {first, last};
+    }
+
+    /**
+     * The maskOf method finds the bit of a character
+     *
+     *@param character  the character
+     *@return   the bit of a word character, or 0 for a character no token
+     *      can hold
+     */
+    private static long maskOf(char character) {
+        int symbol = character < SYMBOL_OF.length ? SYMBOL_OF[character] : -1;
+        return symbol < 0 ? 0 : 1L << symbol;
+    }
+
+    /**
+     * The parse method turns a pattern entry into a term
+     *
+     *@param keyword    a regular expression or glob entry
+     *@return   the term
+     */
+    private static Term parse(String keyword) {
+        if (!keyword.startsWith("^")) {
+            List<Term> terms = new ArrayList<Term>();
+            for (int index = 0; index < keyword.length(); index++) {
+                char character = keyword.charAt(index);
+                if (character == '*') {
+                    terms.add(Term.repeat(Term.symbol(ALL_SYMBOLS), 0, -1));
+                } else if (character == '?') {
+                    terms.add(Term.symbol(ALL_SYMBOLS));
+                } else {
+                    terms.add(Term.symbol(maskOf(character)));
+                }
+            }
+            return Term.group(Term.CONCATENATION, terms);
+        }
+        String body = keyword.substring(1);
+        boolean anchored = body.endsWith("$") && !body.endsWith("\\$");
+        if (anchored) {
+            body = body.substring(0, body.length() - 1);
+        }
+        Term term = new Parser(keyword, body).parse();
+        if (!anchored) {
+            term = Term.group(Term.CONCATENATION, Arrays.asList(term,
+                    Term.repeat(Term.symbol(ALL_SYMBOLS), 0, -1)));
+        }
+        return term;
+    }
+
+    /**
+     * The Term class is one part of a parsed pattern: a character class, a
+     * sequence, a choice or a repeat
+     */
+    private static class Term {
+
+        static final int SYMBOL = 0;
+        static final int CONCATENATION = 1;
+        static final int ALTERNATION = 2;
+        static final int REPEAT = 3;
+
+        private int kind;
+        private long mask;
+        private List<Term> terms;
+        private int minimum;
+        private int maximum;
+
+        /**
+         * The symbol method creates a term for one character of a class
+         *
+         *@param mask   the bits of the characters
+         *@return   the term
+         */
+        static Term symbol(long mask) {
+            Term term = new Term();
+            term.kind = SYMBOL;
+            term.mask = mask;
+            return term;
+        }
+
+        /**
+         * The group method creates a sequence or a choice
+         *
+         *@param kind   CONCATENATION or ALTERNATION
+         *@param terms  the parts
+         *@return   the term
+         */
+        static Term group(int kind, List<Term> terms) {
+            Term term = new Term();
+            term.kind = kind;
+            term.terms = terms;
+            return term;
+        }
+
+        /**
+         * The repeat method creates a repeat of a term
+         *
+         *@param repeated   the term repeated
+         *@param minimum    the fewest repeats
+         *@param maximum    the most repeats, or -1 for no limit
+         *@return   the term
+         */
+        static Term repeat(Term repeated, int minimum, int maximum) {
+            Term term = new Term();
+            term.kind = REPEAT;
+            term.terms = Collections.singletonList(repeated);
+            term.minimum = minimum;
+            term.maximum = maximum;
+            return term;
+        }
+    }
+
+    /**
+     * The Parser class parses the body of a regular expression entry by
+     * recursive descent
+     */
+    private static class Parser {
+
+        private String keyword;
+        private String pattern;
+        private int position;
+
+        /**
+         * Constructor for the Parser object
+         *
+         *@param keyword    the whole entry, for error messages
+         *@param pattern    the expression between ^ and $
+         */
+        Parser(String keyword, String pattern) {
+            this.keyword = keyword;
+            this.pattern = pattern;
+        }
+
+        /**
+         * The parse method parses the whole expression
+         *
+         *@return   the term
+         */
+        Term parse() {
+            Term term = alternation();
+            if (position < pattern.length()) {
+                throw error("unmatched )");
+            }
+            return term;
+        }
+
+        /**
+         * The alternation method parses branches separated by |
+         *
+         *@return   the term
+         */
+        private Term alternation() {
+            List<Term> branches = new ArrayList<Term>();
+            branches.add(concatenation());
+            while (position < pattern.length() && pattern.charAt(position) == '|') {
+                position++;
+                branches.add(concatenation());
+            }
+            return branches.size() == 1 ? branches.get(0)
+                    : Term.group(Term.ALTERNATION, branches);
+        }
+
+        /**
+         * The concatenation method parses repeats up to a | or )
+         *
+         *@return   the term
+         */
+        private Term concatenation() {
+            List<Term> terms = new ArrayList<Term>();
+            while (position < pattern.length() && pattern.charAt(position) != '|'
+                    && pattern.charAt(position) != ')') {
+                terms.add(repetition());
+            }
+            return Term.group(Term.CONCATENATION, terms);
+        }
+
+        /**
+         * The repetition method parses an atom and its repeat operators
+         *
+         *@return   the term
+         */
+        private Term repetition() {
+            Term term = atom();
+            while (position < pattern.length()) {
+                char operator = pattern.charAt(position);
+                if (operator == '*') {
+                    term = Term.repeat(term, 0, -1);
+                } else if (operator == '+') {
+                    term = Term.repeat(term, 1, -1);
+                } else if (operator == '?') {
+                    term = Term.repeat(term, 0, 1);
+                } else if (operator == '{') {
+                    term = counted(term);
+                    continue;
+                } else {
+                    break;
+                }
+                position++;
+            }
+            return term;
+        }
+
+        /**
+         * The counted method parses a {m}, {m,} or {m,n} repeat
+         *
+         *@param term   the term repeated
+         *@return   the repeat
+         */
+        private Term counted(Term term) {
+            int close = pattern.indexOf('}', position);
+            if (close < 0) {
+                throw error("unclosed {");
+            }
+            String[] counts = pattern.substring(position + 1, close).split(",", -1);
+            position = close + 1;
+            try {
+                int minimum = Integer.parseInt(counts[0].trim());
+                int maximum = counts.length == 1 ? minimum
+                        : counts[1].trim().isEmpty() ? -1 : Integer.parseInt(counts[1].trim());
+                if (counts.length > 2 || minimum < 0 || maximum > MAXIMUM_REPEAT
+                        || minimum > MAXIMUM_REPEAT || (maximum >= 0 && maximum < minimum)) {
+                    throw error("bad repeat count");
+                }
+                return Term.repeat(term, minimum, maximum);
+            } catch (NumberFormatException numberFormatEx) {
+                throw error("bad repeat count");
+            }
+        }
+
+        /**
+         * The atom method parses a character, class or group
+         *
+         *@return   the term
+         */
+        private Term atom() {
+            char character = pattern.charAt(position++);
+            switch (character) {
+                case '(':
+                    if (pattern.startsWith("?:", position)) {
+                        position += 2;
+                    }
+                    Term group = alternation();
+                    if (position >= pattern.length() || pattern.charAt(position) != ')') {
+                        throw error("unclosed (");
+                    }
+                    position++;
+                    return group;
+                case '[':
+                    return Term.symbol(characterClass());
+                case '.':
+                    return Term.symbol(ALL_SYMBOLS);
+                case '\\':
+                    return Term.symbol(escape());
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    throw error("nothing to repeat");
+                default:
+                    return Term.symbol(maskOf(character));
+            }
+        }
+
+        /**
+         * The characterClass method parses the characters of a [] class
+         *
+         *@return   the bits of the word characters in the class
+         */
+        private long characterClass() {
+            boolean negated = position < pattern.length() && pattern.charAt(position) == '^';
+            if (negated) {
+                position++;
+            }
+            long mask = 0;
+            boolean first = true;
+            while (position < pattern.length() && (first || pattern.charAt(position) != ']')) {
+                first = false;
+                char low = pattern.charAt(position++);
+                if (low == '\\') {
+                    mask |= escape();
+                    continue;
+                }
+                char high = low;
+                if (position + 1 < pattern.length() && pattern.charAt(position) == '-'
+                        && pattern.charAt(position + 1) != ']') {
+                    high = pattern.charAt(position + 1);
+                    position += 2;
+                    if (high < low) {
+                        throw error("bad range " + low + "-" + high);
+                    }
+                }
+                for (char member = low; member <= high && member < SYMBOL_OF.length; member++) {
+                    mask |= maskOf(member);
+                }
+            }
+            if (position >= pattern.length()) {
+                throw error("unclosed [");
+            }
+            position++;
+            return negated ? ALL_SYMBOLS & ~mask : mask;
+        }
+
+        /**
+         * The escape method parses the character after a backslash
+         *
+         *@return   the bits of the word characters it stands for
+         */
+        private long escape() {
+            if (position >= pattern.length()) {
+                throw error("trailing \\");
+            }
+            char character = pattern.charAt(position++);
+            switch (character) {
+                case 'd':
+                    return DIGITS;
+                case 'D':
+                    return ALL_SYMBOLS & ~DIGITS;
+                case 'w':
+                case 'S':
+                    return ALL_SYMBOLS;
+                case 'W':
+                case 's':
+                    return 0;
+                default:
+                    return maskOf(character);
+            }
+        }
+
+        /**
+         * The error method creates the exception for a bad pattern
+         *
+         *@param problem    what is wrong
+         *@return   the exception
+         */
+        private IllegalArgumentException error(String problem) {
+            return new IllegalArgumentException("Bad keyword pattern " + keyword + ": "
+                    + problem + " at " + (position + 1));
+        }
+    }
+
+}
@@ -0,0 +1,353 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * The PipelineAnalysis class analyzes an input stream in three stages that
+ * run at the same time. A reader thread fills large byte buffers from the
+ * stream, cutting each buffer after its last whole token and carrying the
+ * rest to the next one. The calling thread tokenizes the buffers into
+ * token batches and gives the batches their ids. One thread per part of
+ * the TokenDispatcher, the fused kernel or a single analyzer, processes
+ * every batch. The stages are joined by RingBuffers of preallocated
+ * buffers and batches, so a slow stage makes the others wait instead of
+ * using more memory. The sizes come from the pipeline.read.buffer.size,
+ * pipeline.read.buffers and pipeline.batches properties, and with metrics
+ * the waits and depths of both ring buffers are reported.
+ *
+ *@author   April Albaugh
+ */
+
+public class PipelineAnalysis {
+
+    public static final int DEFAULT_READ_BUFFER_SIZE = 4 << 20;
+    public static final int DEFAULT_READ_BUFFERS = 4;
+    public static final int DEFAULT_BATCHES = 32;
+
+    private String inputFilePath;
+    private TokenDispatcher dispatcher;
+    private int readBufferSize;
+    private int readBuffers;
+    private int batches;
+    private AnalysisMetrics metrics;
+    private AtomicReference<Throwable> failure;
+
+    /**
+     * Constructor for the PipelineAnalysis object
+     *
+     *@param inputFilePath  the file being analyzed
+     *@param dispatcher     the dispatcher of the run's analyzers
+     *@param properties     the run properties
+     */
+    public PipelineAnalysis(String inputFilePath, TokenDispatcher dispatcher,
+            Properties properties) {
+        this.inputFilePath = inputFilePath;
+        this.dispatcher = dispatcher;
+        readBufferSize = Integer.parseInt(properties.getProperty("pipeline.read.buffer.size",
+                String.valueOf(DEFAULT_READ_BUFFER_SIZE)));
+        readBuffers = Integer.parseInt(properties.getProperty("pipeline.read.buffers",
+                String.valueOf(DEFAULT_READ_BUFFERS)));
+        batches = Integer.parseInt(properties.getProperty("pipeline.batches",
+                String.valueOf(DEFAULT_BATCHES)));
+        failure = new AtomicReference<Throwable>();
+    }
+
+    /**
+     * Sets the metrics attribute, so the ring buffers are reported
+     *
+     *@param metrics    the run metrics
+     */
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * The run method analyzes a stream and waits for every stage to finish
+     *
+     *@param input  the stream of the input file
+     *@exception IOException  if the stream can not be read
+     */
+    public void run(InputStream input) throws IOException {
+        RingBuffer<ReadBuffer> readRing = new RingBuffer<ReadBuffer>(readBuffers, 1,
+                () -> new ReadBuffer(readBufferSize));
+        int consumers = dispatcher.getConsumerCount();
+        RingBuffer<TokenBatch> batchRing = new RingBuffer<TokenBatch>(batches, consumers,
+                this::createBatch);
+        List<Thread> threads = new ArrayList<Thread>();
+        threads.add(startStage("pipeline-reader", () -> read(input, readRing),
+                readRing, batchRing));
+        for (int consumer = 0; consumer < consumers; consumer++) {
+            int part = consumer;
+            threads.add(startStage("pipeline-analyzer-" + part,
+                    () -> analyze(part, batchRing), readRing, batchRing));
+        }
+        try {
+            tokenize(readRing, batchRing);
+        } catch (RuntimeException | Error exception) {
+            fail(exception, readRing, batchRing);
+        } finally {
+            batchRing.close();
+        }
+        join(threads, readRing, batchRing);
+        if (metrics != null) {
+            metrics.addQueue("readBuffers", readRing.getStats());
+            metrics.addQueue("tokenBatches", batchRing.getStats());
+        }
+        rethrowFailure();
+    }
+
+    /**
+     * The createBatch method creates a batch slot, which is read on the
+     * analyzer threads while the table is still growing
+     *
+     *@return   the batch
+     */
+    private TokenBatch createBatch() {
+        TokenBatch batch = new TokenBatch();
+        batch.setTokensFromTable(false);
+        return batch;
+    }
+
+    /**
+     * The startStage method starts a stage on its own thread. A stage that
+     * fails aborts both ring buffers, so no stage waits for it.
+     *
+     *@param name       the thread name
+     *@param stage      the stage
+     *@param readRing   the ring buffer of read buffers
+     *@param batchRing  the ring buffer of token batches
+     *@return   the started thread
+     */
+    private Thread startStage(String name, Stage stage, RingBuffer<ReadBuffer> readRing,
+            RingBuffer<TokenBatch> batchRing) {
+        Thread thread = new Thread(() -> {
+            try {
+                stage.run();
+            } catch (Throwable throwable) {
+                fail(throwable, readRing, batchRing);
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * The read method is the reader stage. It fills each read buffer,
+     * passes on the bytes up to the last non word byte and carries the
+     * unfinished token to the next buffer. A buffer that is one token is
+     * grown.
+     *
+     *@param input      the stream of the input file
+     *@param readRing   the ring buffer of read buffers
+     *@exception IOException  if the stream can not be read
+     */
+    private void read(InputStream input, RingBuffer<ReadBuffer> readRing) throws IOException {
+        byte[] carry = new byte[0];
+        int carried = 0;
+        boolean finished = false;
+        while (!finished) {
+            ReadBuffer buffer = readRing.claim();
+            if (buffer == null) {
+                return;
+            }
+            if (buffer.data.length <= carried) {
+                buffer.data = new byte[carried * 2];
+            }
+            byte[] data = buffer.data;
+            System.arraycopy(carry, 0, data, 0, carried);
+            int length = carried;
+            int end = 0;
+            while (end == 0 && !finished) {
+                if (length == data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                    buffer.data = data;
+                }
+                int count = input.read(data, length, data.length - length);
+                if (count < 0) {
+                    finished = true;
+                    end = length;
+                } else {
+                    length += count;
+                    if (length == data.length) {
+                        end = lastBoundary(data, length);
+                    }
+                }
+            }
+            carried = length - end;
+            if (carry.length < carried) {
+                carry = new byte[Math.max(carried, carry.length * 2)];
+            }
+            System.arraycopy(data, end, carry, 0, carried);
+            buffer.length = end;
+            readRing.publish();
+        }
+        readRing.close();
+    }
+
+    /**
+     * The lastBoundary method finds the end of the last whole token
+     *
+     *@param data   the bytes read
+     *@param length the number of bytes read
+     *@return   one past the last non word byte, or 0 if every byte is a
+     *      word byte
+     */
+    private static int lastBoundary(byte[] data, int length) {
+        int end = length;
+        while (end > 0 && MappedFileTokenizer.isWordByte(data[end - 1])) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * The tokenize method is the tokenizer stage. It scans each read buffer
+     * into a batch of its own and hands each full batch on by exchanging it
+     * with the next free batch slot.
+     *
+     *@param readRing   the ring buffer of read buffers
+     *@param batchRing  the ring buffer of token batches
+     */
+    private void tokenize(RingBuffer<ReadBuffer> readRing, RingBuffer<TokenBatch> batchRing) {
+        MappedFileTokenizer tokenizer = new MappedFileTokenizer(inputFilePath);
+        tokenizer.setPredicate(dispatcher.getTokenPredicate());
+        TokenBatch batch = new TokenBatch();
+        Consumer<TokenBatch> handOff = full -> publish(full, batchRing);
+        while (!batchRing.isAborted()) {
+            ReadBuffer buffer = readRing.take(0);
+            if (buffer == null) {
+                break;
+            }
+            tokenizer.scan(ByteBuffer.wrap(buffer.data), 0, buffer.length, batch, handOff);
+            readRing.release(0);
+        }
+        if (batch.size() > 0) {
+            publish(batch, batchRing);
+        }
+    }
+
+    /**
+     * The publish method gives a full batch its ids and passes it to the
+     * analyzer threads. The batch gets the emptied tokens of the slot.
+     *
+     *@param batch      the full batch
+     *@param batchRing  the ring buffer of token batches
+     */
+    private void publish(TokenBatch batch, RingBuffer<TokenBatch> batchRing) {
+        TokenBatch slot = batchRing.claim();
+        if (slot == null) {
+            return;
+        }
+        slot.clear();
+        slot.swap(batch);
+        dispatcher.assignIds(slot);
+        batchRing.publish();
+    }
+
+    /**
+     * The analyze method is an analyzer stage. It passes every batch to one
+     * part of the dispatcher.
+     *
+     *@param consumer   the part of the dispatcher
+     *@param batchRing  the ring buffer of token batches
+     */
+    private void analyze(int consumer, RingBuffer<TokenBatch> batchRing) {
+        for (TokenBatch batch = batchRing.take(consumer); batch != null;
+                batch = batchRing.take(consumer)) {
+            dispatcher.process(consumer, batch);
+            batchRing.release(consumer);
+        }
+    }
+
+    /**
+     * The fail method keeps the first failure and stops every stage
+     *
+     *@param throwable  the failure
+     *@param readRing   the ring buffer of read buffers
+     *@param batchRing  the ring buffer of token batches
+     */
+    private void fail(Throwable throwable, RingBuffer<ReadBuffer> readRing,
+            RingBuffer<TokenBatch> batchRing) {
+        failure.compareAndSet(null, throwable);
+        readRing.abort();
+        batchRing.abort();
+    }
+
+    /**
+     * The join method waits for the stage threads
+     *
+     *@param threads    the stage threads
+     *@param readRing   the ring buffer of read buffers
+     *@param batchRing  the ring buffer of token batches
+     *@exception InterruptedIOException  if the wait is interrupted
+     */
+    private void join(List<Thread> threads, RingBuffer<ReadBuffer> readRing,
+            RingBuffer<TokenBatch> batchRing) throws InterruptedIOException {
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException interruptedEx) {
+            readRing.abort();
+            batchRing.abort();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while analyzing the input");
+        }
+    }
+
+    /**
+     * The rethrowFailure method throws the first failure of any stage
+     *
+     *@exception IOException  if a stage could not read the input
+     */
+    private void rethrowFailure() throws IOException {
+        Throwable throwable = failure.get();
+        if (throwable instanceof IOException) {
+            throw (IOException) throwable;
+        } else if (throwable instanceof RuntimeException) {
+            throw (RuntimeException) throwable;
+        } else if (throwable instanceof Error) {
+            throw (Error) throwable;
+        } else if (throwable != null) {
+            throw new IOException(throwable);
+        }
+    }
+
+    /**
+     * The Stage interface is the work of one pipeline thread
+     */
+    private interface Stage {
+
+        /**
+         * The run method does the work of the stage
+         *
+         *@exception Exception  if the stage fails
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * The ReadBuffer class is a read buffer slot and the number of bytes in
+     * it that end on a token boundary
+     */
+    private static class ReadBuffer {
+
+        private byte[] data;
+        private int length;
+
+        /**
+         * Constructor for the ReadBuffer object
+         *
+         *@param size   the size of the buffer
+         */
+        ReadBuffer(int size) {
+            data = new byte[size];
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package java112.analyzer;
+
+import java.util.*;
+
+/**
+ * The PostingList class is a growable list of increasing long positions,
+ * used for keyword positions. Each position is stored as its difference
+ * from the one before in a variable length number of seven bit groups, so
+ * a keyword that is seen often takes one or two bytes per hit instead of
+ * eight, and no Long is boxed per hit. The list is read back in order.
+ *
+ *@author   April Albaugh
+ */
+
+public class PostingList {
+
+    public static final int INITIAL_CAPACITY = 16;
+
+    private byte[] data;
+    private int length;
+    private long size;
+    private long last;
+
+    /**
+     * Constructor for the PostingList object
+     */
+    public PostingList() {
+        data = new byte[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Gets the size attribute
+     *
+     *@return   The number of positions
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Gets the last attribute
+     *
+     *@return   The last position added, or 0 for an empty list
+     */
+    public long getLast() {
+        return last;
+    }
+
+    /**
+     * Gets the byteSize attribute
+     *
+     *@return   The number of bytes the positions take
+     */
+    public int getByteSize() {
+        return length;
+    }
+
+    /**
+     * The add method adds a position to the end of the list
+     *
+     *@param position   the position, not less than the last one
+     */
+    public void add(long position) {
+        if (position < last) {
+            throw new IllegalArgumentException("Position " + position
+                    + " is before the last position " + last);
+        }
+        long delta = position - last;
+        if (length + 10 > data.length) {
+            data = Arrays.copyOf(data, Math.max(length + 10, data.length * 2));
+        }
+        while ((delta & ~0x7FL) != 0) {
+            data[length++] = (byte) (delta | 0x80);
+            delta >>>= 7;
+        }
+        data[length++] = (byte) delta;
+        last = position;
+        size++;
+    }
+
+    /**
+     * The addAll method adds every position of another list, each increased
+     * by an offset. Only the first difference changes, so the rest of the
+     * other list's bytes are copied as they are.
+     *
+     *@param other  the positions to add
+     *@param offset the amount to add to each position, not less than the
+     *      last position of this list
+     */
+    public void addAll(PostingList other, long offset) {
+        if (other.size == 0) {
+            return;
+        }
+        int index = 0;
+        long first = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte next = other.data[index++];
+            first |= (long) (next & 0x7F) << shift;
+            if (next >= 0) {
+                break;
+            }
+        }
+        add(first + offset);
+        int rest = other.length - index;
+        if (length + rest > data.length) {
+            data = Arrays.copyOf(data, Math.max(length + rest, data.length * 2));
+        }
+        System.arraycopy(other.data, index, data, length, rest);
+        length += rest;
+        size += other.size - 1;
+        last = other.last + offset;
+    }
+
+    /**
+     * The iterator method returns the positions in order
+     *
+     *@return   an iterator over the positions
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+
+            private int index;
+            private long position;
+
+            public boolean hasNext() {
+                return index < length;
+            }
+
+            public long nextLong() {
+                if (index >= length) {
+                    throw new NoSuchElementException();
+                }
+                long delta = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte next = data[index++];
+                    delta |= (long) (next & 0x7F) << shift;
+                    if (next >= 0) {
+                        break;
+                    }
+                }
+                position += delta;
+                return position;
+            }
+        };
+    }
+
+    /**
+     * The toList method copies the positions into a read only list
+     *
+     *@return   the positions
+     */
+    public List<Long> toList() {
+        List<Long> list = new ArrayList<Long>();
+        for (PrimitiveIterator.OfLong positions = iterator(); positions.hasNext(); ) {
+            list.add(positions.nextLong());
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+}
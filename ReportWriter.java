@@ -0,0 +1,304 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The ReportWriter class writes report text through one large buffer.
+ * Characters below 128 are put in the buffer as bytes and numbers are
+ * written digit by digit, so no String is built per line. Other text is
+ * encoded with the default charset, the same as a FileWriter, so reports
+ * are byte for byte the same as before. The buffer is a direct buffer
+ * written to a FileChannel, or with output.compression=gzip a heap buffer
+ * streamed through a GZIPOutputStream to the report name plus ".gz".
+ *
+ * A direct buffer is only freed when the garbage collector gets to it, so
+ * closed writers keep their direct buffers in a small free list for the
+ * next report. A batch of many files then holds no more direct buffers
+ * than it has reports being written at once, and each job's virtual
+ * thread does not need a buffer of its own.
+ *
+ *@author   April Albaugh
+ */
+
+public class ReportWriter implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    public static final String GZIP_EXTENSION = ".gz";
+    public static final int MAXIMUM_FREE_BUFFERS = 16;
+
+    private static final byte[] LINE_SEPARATOR =
+            System.lineSeparator().getBytes(Charset.defaultCharset());
+    private static final int MAXIMUM_DIGITS = 20;
+    private static final Deque<ByteBuffer> FREE_BUFFERS = new ArrayDeque<ByteBuffer>();
+
+    private ByteBuffer buffer;
+    private FileChannel channel;
+    private OutputStream compressed;
+
+    /**
+     * Constructor for a ReportWriter that writes to a FileChannel
+     *
+     *@param channel    the open file channel
+     *@param bufferSize the size of the direct buffer
+     */
+    public ReportWriter(FileChannel channel, int bufferSize) {
+        this.channel = channel;
+        buffer = takeDirectBuffer(Math.max(bufferSize, MAXIMUM_DIGITS));
+    }
+
+    /**
+     * Constructor for a ReportWriter that writes to a stream
+     *
+     *@param output     the output stream
+     *@param bufferSize the size of the buffer
+     */
+    public ReportWriter(OutputStream output, int bufferSize) {
+        compressed = output;
+        buffer = ByteBuffer.allocate(Math.max(bufferSize, MAXIMUM_DIGITS));
+    }
+
+    /**
+     * The takeDirectBuffer method reuses a free direct buffer of a size, or
+     * allocates one
+     *
+     *@param size   the size of the buffer
+     *@return   the empty buffer
+     */
+    private static ByteBuffer takeDirectBuffer(int size) {
+        synchronized (FREE_BUFFERS) {
+            Iterator<ByteBuffer> buffers = FREE_BUFFERS.iterator();
+            while (buffers.hasNext()) {
+                ByteBuffer free = buffers.next();
+                if (free.capacity() == size) {
+                    buffers.remove();
+                    return free;
+                }
+            }
+        }
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    /**
+     * The releaseDirectBuffer method keeps a direct buffer for the next
+     * writer, unless MAXIMUM_FREE_BUFFERS are already kept
+     *
+     *@param free   the buffer, no longer used by its writer
+     */
+    private static void releaseDirectBuffer(ByteBuffer free) {
+        free.clear();
+        synchronized (FREE_BUFFERS) {
+            if (FREE_BUFFERS.size() < MAXIMUM_FREE_BUFFERS) {
+                FREE_BUFFERS.addFirst(free);
+            }
+        }
+    }
+
+    /**
+     * The open method opens a report for writing. The output.compression
+     * property chooses gzip and output.buffer.size the buffer size.
+     *
+     *@param properties     the run properties
+     *@param outputFilePath the report path
+     *@return   the report writer
+     *@exception IOException  if the report can not be created
+     */
+    public static ReportWriter open(Properties properties, String outputFilePath)
+            throws IOException {
+        int bufferSize = Integer.parseInt(properties.getProperty("output.buffer.size",
+                String.valueOf(DEFAULT_BUFFER_SIZE)));
+        if ("gzip".equals(properties.getProperty("output.compression"))) {
+            OutputStream output = Files.newOutputStream(Paths.get(outputFilePath + GZIP_EXTENSION));
+            return new ReportWriter(new GZIPOutputStream(output, bufferSize), bufferSize);
+        }
+        FileChannel channel = FileChannel.open(Paths.get(outputFilePath),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        return new ReportWriter(channel, bufferSize);
+    }
+
+    /**
+     * The print method writes text
+     *
+     *@param text   the text
+     *@exception IOException  if the report can not be written
+     */
+    public void print(String text) throws IOException {
+        int length = text.length();
+        for (int index = 0; index < length; index++) {
+            if (text.charAt(index) >= 0x80) {
+                putBytes(text.getBytes(Charset.defaultCharset()));
+                return;
+            }
+        }
+        int index = 0;
+        while (index < length) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int end = Math.min(length, index + buffer.remaining());
+            for (; index < end; index++) {
+                buffer.put((byte) text.charAt(index));
+            }
+        }
+    }
+
+    /**
+     * The print method writes one character
+     *
+     *@param character  the character
+     *@exception IOException  if the report can not be written
+     */
+    public void print(char character) throws IOException {
+        if (character >= 0x80) {
+            print(String.valueOf(character));
+            return;
+        }
+        if (!buffer.hasRemaining()) {
+            flushBuffer();
+        }
+        buffer.put((byte) character);
+    }
+
+    /**
+     * The print method writes a number in decimal without creating a String
+     *
+     *@param number the number
+     *@exception IOException  if the report can not be written
+     */
+    public void print(long number) throws IOException {
+        if (number == Long.MIN_VALUE) {
+            print(Long.toString(number));
+            return;
+        }
+        if (buffer.remaining() < MAXIMUM_DIGITS) {
+            flushBuffer();
+        }
+        if (number < 0) {
+            buffer.put((byte) '-');
+            number = -number;
+        }
+        int start = buffer.position();
+        do {
+            buffer.put((byte) ('0' + number % 10));
+            number /= 10;
+        } while (number > 0);
+        for (int left = start, right = buffer.position() - 1; left < right; left++, right--) {
+            byte digit = buffer.get(left);
+            buffer.put(left, buffer.get(right));
+            buffer.put(right, digit);
+        }
+    }
+
+    /**
+     * The write method writes part of a character array
+     *
+     *@param characters the characters
+     *@param offset     the first character
+     *@param length     the number of characters
+     *@exception IOException  if the report can not be written
+     */
+    public void write(char[] characters, int offset, int length) throws IOException {
+        for (int index = offset; index < offset + length; index++) {
+            print(characters[index]);
+        }
+    }
+
+    /**
+     * The println method ends the line
+     *
+     *@exception IOException  if the report can not be written
+     */
+    public void println() throws IOException {
+        putBytes(LINE_SEPARATOR);
+    }
+
+    /**
+     * The println method writes text and ends the line
+     *
+     *@param text   the text
+     *@exception IOException  if the report can not be written
+     */
+    public void println(String text) throws IOException {
+        print(text);
+        println();
+    }
+
+    /**
+     * The println method writes a number and ends the line
+     *
+     *@param number the number
+     *@exception IOException  if the report can not be written
+     */
+    public void println(long number) throws IOException {
+        print(number);
+        println();
+    }
+
+    /**
+     * The putBytes method writes encoded bytes
+     *
+     *@param bytes  the bytes
+     *@exception IOException  if the report can not be written
+     */
+    private void putBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int length = Math.min(bytes.length - offset, buffer.remaining());
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * The flushBuffer method writes the buffered bytes to the file
+     *
+     *@exception IOException  if the report can not be written
+     */
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        if (compressed != null) {
+            compressed.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+        } else {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        buffer.clear();
+    }
+
+    /**
+     * The close method writes the buffered bytes, closes the file and frees
+     * the direct buffer for the next writer
+     *
+     *@exception IOException  if the report can not be written
+     */
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            flushBuffer();
+        } finally {
+            if (compressed != null) {
+                compressed.close();
+            } else {
+                try {
+                    channel.close();
+                } finally {
+                    releaseDirectBuffer(buffer);
+                }
+            }
+            buffer = null;
+        }
+    }
+
+}
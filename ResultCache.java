@@ -0,0 +1,352 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * The ResultCache class keeps the binary reports of analyzed files in
+ * cache.dir so an unchanged file is not tokenized again. An entry is keyed
+ * by a hash of the file contents and a fingerprint of the properties that
+ * change the results: the keyword file contents, bigwords.minimum.length
+ * and the estimate and approximate mode settings. Each entry is a
+ * directory with one binary report per analyzer, named after the analyzer
+ * class.
+ *
+ * A new entry is written to a staging directory and renamed into place, so
+ * other processes never see part of an entry. Reading an entry sets its
+ * modified time, and when the entries take more than cache.max.bytes the
+ * least recently used are deleted. Storing and evicting hold a lock on the
+ * cache.lock file, so processes sharing the directory take turns. Reads
+ * take no lock: an entry deleted while it is read is treated as a miss.
+ *
+ *@author   April Albaugh
+ */
+
+public class ResultCache {
+
+    public static final long DEFAULT_MAX_BYTES = 1L << 30;
+    public static final String LOCK_FILE = "cache.lock";
+    public static final String STAGING_PREFIX = "staging-";
+    public static final long STALE_STAGING_MILLIS = 60 * 60 * 1000;
+
+    private static final String[] FINGERPRINT_PROPERTIES = {
+        "bigwords.minimum.length", "cardinality.mode", "cardinality.precision",
+        "token.count.mode", "token.count.top.k", "token.count.sketch.width",
+        "token.count.sketch.depth"
+    };
+    private static final int SEGMENT_SIZE = 1 << 30;
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final Object LOCK = new Object();
+
+    private Path directory;
+    private long maxBytes;
+    private long fingerprint;
+
+    /**
+     * Constructor for the ResultCache object
+     *
+     *@param directory      the cache directory
+     *@param maxBytes       the size the entries are kept under
+     *@param fingerprint    the fingerprint of the properties
+     */
+    public ResultCache(Path directory, long maxBytes, long fingerprint) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * The forProperties method creates a cache when cache.dir is set
+     *
+     *@param properties         the run properties
+     *@param outputProperties   the reports of the analyzers that run
+     *@return   the cache, or null when caching is off
+     *@exception IOException  if the cache directory or keyword file can not
+     *      be read
+     */
+    public static ResultCache forProperties(Properties properties,
+            List<String> outputProperties) throws IOException {
+        String cacheDir = properties.getProperty("cache.dir");
+        if (cacheDir == null) {
+            return null;
+        }
+        Path directory = Paths.get(cacheDir);
+        Files.createDirectories(directory);
+        long maxBytes = Long.parseLong(properties.getProperty("cache.max.bytes",
+                String.valueOf(DEFAULT_MAX_BYTES)));
+        return new ResultCache(directory, maxBytes, fingerprint(properties, outputProperties));
+    }
+
+    /**
+     * The fingerprint method hashes the keyword file and the properties that
+     * change what the analyzers keep, along with the binary report version
+     * and which analyzers run.
+     *
+     *@param properties         the run properties
+     *@param outputProperties   the reports of the analyzers that run
+     *@return   the fingerprint
+     *@exception IOException  if the keyword file can not be read
+     */
+    private static long fingerprint(Properties properties, List<String> outputProperties)
+            throws IOException {
+        StringBuilder settings = new StringBuilder("version=" + BinaryReportOutput.VERSION);
+        settings.append("\nanalyzers=").append(outputProperties);
+        for (String name : FINGERPRINT_PROPERTIES) {
+            settings.append('\n').append(name).append('=').append(properties.getProperty(name));
+        }
+        long hash = hash(ByteBuffer.wrap(settings.toString().getBytes(StandardCharsets.UTF_8)), 0);
+        if (outputProperties.contains("output.file.keyword")) {
+            hash = hash(ByteBuffer.wrap(Files.readAllBytes(Paths.get(
+                    properties.getProperty("file.path.keywords")))), hash);
+        }
+        return hash;
+    }
+
+    /**
+     * The computeKey method hashes the contents of an input file, a
+     * gigabyte of the mapped file at a time, and combines the hash with the
+     * fingerprint.
+     *
+     *@param inputFilePath  the file to analyze
+     *@return   the cache key
+     *@exception IOException  if the file can not be read
+     */
+    public String computeKey(String inputFilePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(inputFilePath),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            long contentHash = size;
+            for (long position = 0; position < size; position += SEGMENT_SIZE) {
+                long length = Math.min(SEGMENT_SIZE, size - position);
+                contentHash = hash(channel.map(FileChannel.MapMode.READ_ONLY, position, length),
+                        contentHash);
+            }
+            return String.format("%016x%016x", TokenHash.finish(contentHash), fingerprint);
+        }
+    }
+
+    /**
+     * The hash method continues a hash over the remaining bytes of a
+     * buffer, eight bytes at a time
+     *
+     *@param buffer the bytes to hash
+     *@param seed   the hash so far
+     *@return   the hash
+     */
+    private static long hash(ByteBuffer buffer, long seed) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        long hash = seed ^ PRIME_1;
+        while (buffer.remaining() >= Long.BYTES) {
+            hash = Long.rotateLeft(hash ^ buffer.getLong() * PRIME_2, 31) * PRIME_1;
+        }
+        while (buffer.hasRemaining()) {
+            hash = Long.rotateLeft(hash ^ (buffer.get() & 0xFF) * PRIME_1, 23) * PRIME_2;
+        }
+        return hash;
+    }
+
+    /**
+     * The find method looks up an entry and marks it as used
+     *
+     *@param key    the cache key
+     *@return   the entry directory, or null if there is none
+     */
+    public Path find(String key) {
+        Path entry = directory.resolve(key);
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return entry;
+        } catch (IOException ioEx) {
+            return null;
+        }
+    }
+
+    /**
+     * The read method reads the binary report of each analyzer from an
+     * entry. An entry that can not be read, for example because another
+     * process evicted it, counts as a miss.
+     *
+     *@param entry      the entry directory
+     *@param analyzers  new analyzers for the results
+     *@return   true if every report was read
+     */
+    public boolean read(Path entry, List<Analyzer> analyzers) {
+        try {
+            BinaryReportMerger.readStates(analyzers, analyzer -> entry.resolve(
+                    analyzer.getClass().getSimpleName() + BinaryReportOutput.BINARY_EXTENSION));
+            return true;
+        } catch (IOException ioEx) {
+            return false;
+        } catch (UncheckedIOException uncheckedIoEx) {
+            return false;
+        }
+    }
+
+    /**
+     * The createStaging method creates a directory for the binary reports
+     * of a new entry
+     *
+     *@return   the staging directory
+     *@exception IOException  if the directory can not be created
+     */
+    public Path createStaging() throws IOException {
+        return Files.createTempDirectory(directory, STAGING_PREFIX);
+    }
+
+    /**
+     * The stagingProperties method returns properties that write every
+     * analyzer's binary report to the staging directory
+     *
+     *@param properties the run properties
+     *@param staging    the staging directory
+     *@return   the properties for the analyzers
+     */
+    public static Properties stagingProperties(Properties properties, Path staging) {
+        Properties stagingProperties = new Properties(properties);
+        stagingProperties.setProperty("output.binary", "true");
+        stagingProperties.setProperty("output.binary.dir", staging + File.separator);
+        return stagingProperties;
+    }
+
+    /**
+     * The store method renames the staged reports after their analyzers and
+     * moves the staging directory into place as the entry for the key. When
+     * another process stored the same entry first the staged reports are
+     * deleted. Old entries are then evicted.
+     *
+     *@param key        the cache key
+     *@param staging    the staging directory holding the reports
+     *@param analyzers  the analyzers that wrote the reports
+     *@param properties the properties the reports were named with
+     *@exception IOException  if a report is missing or the cache can not be
+     *      written
+     */
+    public void store(String key, Path staging, List<Analyzer> analyzers, Properties properties)
+            throws IOException {
+        for (Analyzer analyzer : analyzers) {
+            if (!(analyzer instanceof BinaryStateAnalyzer)) {
+                throw new IOException(analyzer.getClass().getSimpleName()
+                        + " has no binary report to cache");
+            }
+            BinaryStateAnalyzer stateAnalyzer = (BinaryStateAnalyzer) analyzer;
+            Files.move(staging.resolve(properties.getProperty(stateAnalyzer.getReportProperty())
+                    + BinaryReportOutput.BINARY_EXTENSION), staging.resolve(
+                    analyzer.getClass().getSimpleName() + BinaryReportOutput.BINARY_EXTENSION));
+        }
+        synchronized (LOCK) {
+            try (FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    Path entry = directory.resolve(key);
+                    if (Files.exists(entry)) {
+                        delete(staging);
+                    } else {
+                        Files.move(staging, entry, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                    evict(entry);
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * The discard method deletes a staging directory that will not be stored
+     *
+     *@param staging    the staging directory
+     */
+    public void discard(Path staging) {
+        try {
+            if (Files.exists(staging)) {
+                delete(staging);
+            }
+        } catch (IOException ioEx) {
+            System.out.println("Could not delete " + staging);
+            ioEx.printStackTrace();
+        }
+    }
+
+    /**
+     * The evict method deletes the least recently used entries until the
+     * rest fit in cache.max.bytes, and staging directories left behind by
+     * processes that did not finish. The newest entry is always kept.
+     *
+     *@param newest the entry just stored
+     *@exception IOException  if the cache directory can not be read
+     */
+    private void evict(Path newest) throws IOException {
+        List<Path> entries = new ArrayList<Path>();
+        long staleTime = System.currentTimeMillis() - STALE_STAGING_MILLIS;
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : paths.filter(Files::isDirectory).collect(Collectors.toList())) {
+                if (!path.getFileName().toString().startsWith(STAGING_PREFIX)) {
+                    entries.add(path);
+                } else if (Files.getLastModifiedTime(path).toMillis() < staleTime) {
+                    delete(path);
+                }
+            }
+        }
+        Map<Path, Long> sizes = new HashMap<Path, Long>();
+        Map<Path, Long> usedTimes = new HashMap<Path, Long>();
+        long total = 0;
+        for (Path entry : entries) {
+            sizes.put(entry, size(entry));
+            usedTimes.put(entry, Files.getLastModifiedTime(entry).toMillis());
+            total += sizes.get(entry);
+        }
+        entries.sort(Comparator.comparing(usedTimes::get));
+        for (Path entry : entries) {
+            if (total <= maxBytes) {
+                return;
+            }
+            if (!entry.equals(newest)) {
+                delete(entry);
+                total -= sizes.get(entry);
+            }
+        }
+    }
+
+    /**
+     * The size method adds up the sizes of the files in an entry
+     *
+     *@param entry  the entry directory
+     *@return   the number of bytes
+     *@exception IOException  if the entry can not be read
+     */
+    private long size(Path entry) throws IOException {
+        long size = 0;
+        try (Stream<Path> files = Files.list(entry)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                size += Files.size(file);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The delete method deletes a directory and the files in it
+     *
+     *@param path   the directory
+     *@exception IOException  if it can not be deleted
+     */
+    private void delete(Path path) throws IOException {
+        try (Stream<Path> files = Files.list(path)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(path);
+    }
+
+}
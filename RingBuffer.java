@@ -0,0 +1,223 @@
+package java112.analyzer;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * The RingBuffer class passes preallocated slots from one producer thread
+ * to several consumer threads. Every consumer sees every slot, in order,
+ * and a slot is only filled again once all the consumers have released
+ * it, so a slow consumer holds the producer back instead of letting the
+ * slots pile up. The slots are created once and reused, so nothing is
+ * allocated per slot passed. A thread that has to wait spins briefly and
+ * then parks. The time the producer waits for a free slot, the time each
+ * consumer waits for a filled one and the number of filled slots waiting
+ * are counted for the metrics report.
+ *
+ *@param <T>    the slot type
+ *@author   April Albaugh
+ */
+
+public class RingBuffer<T> {
+
+    private static final int SPINS = 100;
+    private static final long PARK_NANOS = 20000;
+
+    private Object[] slots;
+    private int mask;
+    private AtomicLong published;
+    private AtomicLongArray released;
+    private long next;
+    private volatile boolean closed;
+    private volatile boolean aborted;
+
+    private long producerStallNanos;
+    private AtomicLongArray consumerStallNanos;
+    private long publishes;
+    private long depthTotal;
+    private long maximumDepth;
+
+    /**
+     * Constructor for the RingBuffer object
+     *
+     *@param capacity   the number of slots, rounded up to a power of two
+     *@param consumers  the number of consumer threads
+     *@param factory    creates each slot
+     */
+    public RingBuffer(int capacity, int consumers, Supplier<T> factory) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        slots = new Object[size];
+        for (int index = 0; index < size; index++) {
+            slots[index] = factory.get();
+        }
+        mask = size - 1;
+        published = new AtomicLong(-1);
+        released = new AtomicLongArray(consumers);
+        for (int consumer = 0; consumer < consumers; consumer++) {
+            released.set(consumer, -1);
+        }
+        consumerStallNanos = new AtomicLongArray(consumers);
+    }
+
+    /**
+     * Gets the capacity attribute
+     *
+     *@return   the number of slots
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * The claim method returns the next slot for the producer to fill,
+     * waiting until every consumer has released it
+     *
+     *@return   the slot, or null if the buffer was aborted
+     */
+    @SuppressWarnings("unchecked")
+    public T claim() {
+        long wrap = next - slots.length;
+        if (slowestRelease() < wrap) {
+            long start = System.nanoTime();
+            for (int attempt = 0; slowestRelease() < wrap; attempt++) {
+                if (aborted) {
+                    return null;
+                }
+                pause(attempt);
+            }
+            producerStallNanos += System.nanoTime() - start;
+        }
+        return aborted ? null : (T) slots[(int) next & mask];
+    }
+
+    /**
+     * The publish method passes the claimed slot to the consumers
+     */
+    public void publish() {
+        long depth = next - slowestRelease();
+        publishes++;
+        depthTotal += depth;
+        maximumDepth = Math.max(maximumDepth, depth);
+        published.set(next++);
+    }
+
+    /**
+     * The close method tells the consumers that no more slots will be
+     * published
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * The abort method stops the producer and every consumer, as when one
+     * of them fails
+     */
+    public void abort() {
+        aborted = true;
+    }
+
+    /**
+     * Gets the aborted attribute
+     *
+     *@return   true if the buffer was aborted
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * The take method returns the next slot for a consumer, waiting until
+     * it is published. The slot must be released when the consumer is done
+     * with it.
+     *
+     *@param consumer   the consumer number
+     *@return   the slot, or null after the last slot or when aborted
+     */
+    @SuppressWarnings("unchecked")
+    public T take(int consumer) {
+        long sequence = released.get(consumer) + 1;
+        if (published.get() < sequence) {
+            long start = System.nanoTime();
+            for (int attempt = 0; published.get() < sequence; attempt++) {
+                if (aborted || (closed && published.get() < sequence)) {
+                    consumerStallNanos.addAndGet(consumer, System.nanoTime() - start);
+                    return null;
+                }
+                pause(attempt);
+            }
+            consumerStallNanos.addAndGet(consumer, System.nanoTime() - start);
+        }
+        return aborted ? null : (T) slots[(int) sequence & mask];
+    }
+
+    /**
+     * The release method gives the consumer's current slot back to the
+     * producer
+     *
+     *@param consumer   the consumer number
+     */
+    public void release(int consumer) {
+        released.set(consumer, released.get(consumer) + 1);
+    }
+
+    /**
+     * The slowestRelease method finds the last slot every consumer has
+     * released
+     *
+     *@return   the sequence of the slot
+     */
+    private long slowestRelease() {
+        long slowest = Long.MAX_VALUE;
+        for (int consumer = 0; consumer < released.length(); consumer++) {
+            slowest = Math.min(slowest, released.get(consumer));
+        }
+        return slowest;
+    }
+
+    /**
+     * The pause method waits before checking the buffer again, spinning
+     * first and then parking
+     *
+     *@param attempt    the number of checks so far
+     */
+    private static void pause(int attempt) {
+        if (attempt < SPINS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * The getStats method returns the waits and queue depth of the buffer.
+     * It is read once the producer and consumers are finished.
+     *
+     *@return   the capacity, the time the producer waited for a free slot,
+     *      the total and longest time a consumer waited for a filled slot,
+     *      and the mean and largest number of filled slots when one was
+     *      published
+     */
+    public Map<String, Long> getStats() {
+        long consumerStall = 0;
+        long longestConsumerStall = 0;
+        for (int consumer = 0; consumer < consumerStallNanos.length(); consumer++) {
+            consumerStall += consumerStallNanos.get(consumer);
+            longestConsumerStall = Math.max(longestConsumerStall,
+                    consumerStallNanos.get(consumer));
+        }
+        Map<String, Long> stats = new LinkedHashMap<String, Long>();
+        stats.put("capacity", (long) slots.length);
+        stats.put("consumers", (long) released.length());
+        stats.put("published", publishes);
+        stats.put("producerStallNanos", producerStallNanos);
+        stats.put("consumerStallNanos", consumerStall);
+        stats.put("longestConsumerStallNanos", longestConsumerStall);
+        stats.put("meanDepth", publishes == 0 ? 0 : Math.round((double) depthTotal / publishes));
+        stats.put("maximumDepth", maximumDepth);
+        return stats;
+    }
+
+}
@@ -1,19 +1,27 @@
 package java112.analyzer;
 
 import java.io.*;
+import java.nio.file.NoSuchFileException;
 import java.util.*;
 
 /**
  * The SummaryReport class implements the Analyzer interface and
- * creates a summary report
+ * creates a summary report. With cardinality.mode=estimate it also counts
+ * the distinct tokens and distinct big words in HyperLogLog sketches, which
+ * are written next to the report so runs can be combined later. The count
+ * and sketches are also written in the binary report format.
  *
  *@author   April Albaugh
  */
 
-public class SummaryReport implements Analyzer {
+public class SummaryReport implements MergeableAnalyzer<SummaryReport>,
+        BinaryStateAnalyzer {
 
     private Properties properties;    
-    private int totalTokensCount;
+    private long totalTokensCount;
+    private HyperLogLog tokenSketch;
+    private HyperLogLog bigWordSketch;
+    private int minimumWordLength;
 
     /**
      * Constructor for the SummaryReport object
@@ -28,6 +36,14 @@ public class SummaryReport implements Analyzer {
      */
     public SummaryReport(Properties properties) {
         this.properties = properties;
+        if ("estimate".equals(properties.getProperty("cardinality.mode"))) {
+            int precision = Integer.parseInt(properties.getProperty("cardinality.precision",
+                    String.valueOf(HyperLogLog.DEFAULT_PRECISION)));
+            tokenSketch = new HyperLogLog(precision);
+            bigWordSketch = new HyperLogLog(precision);
+            minimumWordLength =
+                    Integer.parseInt(properties.getProperty("bigwords.minimum.length"));
+        }
     }
 
 
@@ -36,10 +52,30 @@ public class SummaryReport implements Analyzer {
      *
      *@return   The totalTokensCount value
      */
-    public int getTotalTokensCount() {
+    public long getTotalTokensCount() {
         return totalTokensCount;
     }
 
+    /**
+     * Gets the tokenSketch attribute, the distinct token sketch or null when
+     * cardinality estimation is off
+     *
+     *@return   The tokenSketch value
+     */
+    public HyperLogLog getTokenSketch() {
+        return tokenSketch;
+    }
+
+    /**
+     * Gets the bigWordSketch attribute, the distinct big word sketch or null
+     * when cardinality estimation is off
+     *
+     *@return   The bigWordSketch value
+     */
+    public HyperLogLog getBigWordSketch() {
+        return bigWordSketch;
+    }
+
     /**
      * The processToken method adds all the tokens
      *
@@ -47,6 +83,120 @@ public class SummaryReport implements Analyzer {
      */
     public void processToken(String token) {
         totalTokensCount++;
+        if (tokenSketch != null) {
+            tokenSketch.add(token);
+            if (token.length() >= minimumWordLength) {
+                bigWordSketch.add(token);
+            }
+        }
+    }
+
+    /**
+     * The isFusible method tests if a FusedKernel can count the tokens for
+     * the report, which it can unless the tokens are also hashed into
+     * sketches
+     *
+     *@return   true without cardinality estimation
+     */
+    boolean isFusible() {
+        return tokenSketch == null;
+    }
+
+    /**
+     * The getTokenPredicate method tells the tokenizer that only the token
+     * count is needed, unless the tokens are hashed into sketches
+     *
+     *@return   LENGTH_ONLY without cardinality estimation, otherwise ALL
+     */
+    public TokenPredicate getTokenPredicate() {
+        return tokenSketch == null ? TokenPredicate.LENGTH_ONLY : TokenPredicate.ALL;
+    }
+
+    /**
+     * The addTokens method adds to the total token count
+     *
+     *@param count  the number of tokens
+     */
+    void addTokens(int count) {
+        totalTokensCount += count;
+    }
+
+    /**
+     * The processTokens method adds all the tokens of a batch
+     *
+     *@param batch  tokens from the input file
+     */
+    public void processTokens(TokenBatch batch) {
+        totalTokensCount += batch.size();
+        if (tokenSketch != null) {
+            byte[] data = batch.getData();
+            for (int index = 0; index < batch.size(); index++) {
+                int start = batch.getStart(index);
+                int length = batch.getLength(index);
+                long hash = TokenHash.hash(data, start, length);
+                tokenSketch.addHash(hash);
+                if (length >= minimumWordLength) {
+                    bigWordSketch.addHash(hash);
+                }
+            }
+        }
+    }
+
+    /**
+     * The merge method adds the token count and sketches of another
+     * SummaryReport
+     *
+     *@param other  SummaryReport for the next part of the input
+     */
+    public void merge(SummaryReport other) {
+        totalTokensCount += other.totalTokensCount;
+        if (tokenSketch != null && other.tokenSketch != null) {
+            tokenSketch.merge(other.tokenSketch);
+            bigWordSketch.merge(other.bigWordSketch);
+        }
+    }
+
+    /**
+     * Gets the reportProperty attribute
+     *
+     *@return   The property naming the summary report
+     */
+    public String getReportProperty() {
+        return "output.file.summary";
+    }
+
+    /**
+     * The writeState method writes the token count and the sketches, if
+     * any, to the binary report
+     *
+     *@param output the binary report
+     *@exception IOException  if the report can not be written
+     */
+    private void writeState(BinaryReportOutput output) throws IOException {
+        output.writeVarLong(totalTokensCount);
+        output.writeByte(tokenSketch == null ? 0 : 1);
+        if (tokenSketch != null) {
+            output.writeBytes(tokenSketch.toBytes());
+            output.writeBytes(bigWordSketch.toBytes());
+        }
+    }
+
+    /**
+     * The readState method reads the token count and the sketches. The
+     * sketches of the report replace the analyzer's own, so a report
+     * without them has no estimated counts.
+     *
+     *@param input  the binary report
+     *@exception IOException  if the report can not be read
+     */
+    public void readState(BinaryReportInput input) throws IOException {
+        totalTokensCount = input.readVarLong();
+        tokenSketch = null;
+        bigWordSketch = null;
+        if (input.readByte() == 1) {
+            tokenSketch = HyperLogLog.fromBytes(input.readBytes());
+            bigWordSketch = HyperLogLog.fromBytes(input.readBytes());
+        }
     }
 
     /**
@@ -55,21 +205,33 @@ public class SummaryReport implements Analyzer {
      *@param inputFilePath  inputFilePath file input name from command line
      */
     public void writeOutputFile(String inputFilePath) {
-        PrintWriter out = null;
+        ReportWriter out = null;
         String outputFilePath = properties.getProperty("output.dir")
                  + properties.getProperty("output.file.summary");
         File file = new File(inputFilePath);
         try {
-            out = new PrintWriter(new BufferedWriter(new FileWriter(outputFilePath)));
+            out = ReportWriter.open(properties, outputFilePath);
             out.println("Application: " + properties.getProperty("application.name"));
             out.println("Author: " + properties.getProperty("author"));
             out.println("Email: " + properties.getProperty("author.email.address"));
             out.println("Input File: " + file.getAbsolutePath());
             out.println("Analyzed On: " + new Date());
             out.println("Total Token Count: " + getTotalTokensCount());
-        } catch (FileNotFoundException fileNotFoundEx) {
+            if (tokenSketch != null) {
+                out.println("Distinct Token Count (estimated): " + tokenSketch.estimate());
+                out.println("Distinct Big Word Count (estimated): " + bigWordSketch.estimate());
+                tokenSketch.write(new File(outputFilePath + ".tokens.hll").toPath());
+                bigWordSketch.write(new File(outputFilePath + ".bigwords.hll").toPath());
+            }
+            try (BinaryReportOutput binary =
+                    BinaryReportOutput.open(properties, this, inputFilePath)) {
+                if (binary != null) {
+                    writeState(binary);
+                }
+            }
+        } catch (NoSuchFileException noSuchFileEx) {
             System.out.println("Could not find file");
-            fileNotFoundEx.printStackTrace();
+            noSuchFileEx.printStackTrace();
         } catch (IOException ioEx) {
             System.out.println("Could not write the file");
             ioEx.printStackTrace();
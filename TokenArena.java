@@ -0,0 +1,189 @@
+package java112.analyzer;
+
+import java.lang.reflect.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The TokenArena class hands out the off-heap memory of a run's token
+ * tables. With storage.backend=offheap each TokenTable of the run keeps its
+ * token bytes, hashes and index in direct buffers from the arena, so the
+ * heap only holds a small handle per table instead of a String per
+ * distinct token. Every buffer still in use is freed when the arena is
+ * closed at the end of the run, without waiting for the garbage collector,
+ * and a table must not be used after that. The arena counts the memory it
+ * holds for the metrics report.
+ *
+ *@author   April Albaugh
+ */
+
+public class TokenArena {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException reflectiveEx) {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private int chunkSize;
+    private Set<ByteBuffer> buffers;
+    private long reservedBytes;
+    private long peakReservedBytes;
+    private long allocations;
+    private LongAdder tokens;
+    private LongAdder tokenBytes;
+    private volatile boolean closed;
+
+    /**
+     * Constructor for the TokenArena object
+     *
+     *@param chunkSize  the size of the buffers token bytes are copied into
+     */
+    public TokenArena(int chunkSize) {
+        this.chunkSize = chunkSize;
+        buffers = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+        tokens = new LongAdder();
+        tokenBytes = new LongAdder();
+    }
+
+    /**
+     * The forProperties method creates the arena for a run when
+     * storage.backend is offheap. The storage.offheap.chunk.size property
+     * sets the size of the token byte buffers.
+     *
+     *@param properties the run properties
+     *@return   the arena, or null when the tokens are kept on the heap
+     */
+    public static TokenArena forProperties(Properties properties) {
+        if (!"offheap".equals(properties.getProperty("storage.backend"))) {
+            return null;
+        }
+        return new TokenArena(Integer.parseInt(properties.getProperty(
+                "storage.offheap.chunk.size", String.valueOf(DEFAULT_CHUNK_SIZE))));
+    }
+
+    /**
+     * Gets the chunkSize attribute
+     *
+     *@return   The chunkSize value
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Gets the closed attribute
+     *
+     *@return   true once the arena has been closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * The allocate method reserves a zeroed direct buffer in native byte
+     * order
+     *
+     *@param capacity   the size of the buffer in bytes
+     *@return   the buffer
+     */
+    public synchronized ByteBuffer allocate(int capacity) {
+        if (closed) {
+            throw new IllegalStateException("The token arena is closed");
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+        buffers.add(buffer);
+        reservedBytes += capacity;
+        peakReservedBytes = Math.max(peakReservedBytes, reservedBytes);
+        allocations++;
+        return buffer;
+    }
+
+    /**
+     * The free method frees a buffer from the arena that is no longer used,
+     * such as the old index of a table that has grown
+     *
+     *@param buffer the buffer
+     */
+    public synchronized void free(ByteBuffer buffer) {
+        if (buffers.remove(buffer)) {
+            reservedBytes -= buffer.capacity();
+            release(buffer);
+        }
+    }
+
+    /**
+     * The addToken method counts a token stored in the arena
+     *
+     *@param length the number of bytes in the token
+     */
+    void addToken(int length) {
+        tokens.increment();
+        tokenBytes.add(length);
+    }
+
+    /**
+     * The getFootprint method returns the memory the arena holds
+     *
+     *@return   the reserved bytes, the most bytes reserved at once, the
+     *      number of buffers allocated and live, and the number and bytes
+     *      of the stored tokens
+     */
+    public synchronized Map<String, Long> getFootprint() {
+        Map<String, Long> footprint = new LinkedHashMap<String, Long>();
+        footprint.put("reservedBytes", reservedBytes);
+        footprint.put("peakReservedBytes", peakReservedBytes);
+        footprint.put("allocations", allocations);
+        footprint.put("liveBuffers", (long) buffers.size());
+        footprint.put("tokens", tokens.sum());
+        footprint.put("tokenBytes", tokenBytes.sum());
+        return footprint;
+    }
+
+    /**
+     * The close method frees every buffer still held by the arena
+     */
+    public synchronized void close() {
+        closed = true;
+        for (ByteBuffer buffer : buffers) {
+            release(buffer);
+        }
+        buffers.clear();
+        reservedBytes = 0;
+    }
+
+    /**
+     * The release method frees the memory of a direct buffer now, or leaves
+     * it to the garbage collector when the runtime does not allow that
+     *
+     *@param buffer the buffer
+     */
+    private static void release(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException reflectiveEx) {
+            reflectiveEx.printStackTrace();
+        }
+    }
+
+}
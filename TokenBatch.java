@@ -0,0 +1,317 @@
+package java112.analyzer;
+
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The TokenBatch class is a reusable buffer of tokens passed to the
+ * analyzers together. The token bytes are copied one after another into a
+ * shared byte array and each token is an offset and a length into it. When
+ * the batch has been given ids from a TokenTable the tokens are read from
+ * the table, otherwise a String is only created for a token when an
+ * analyzer asks for it. A batch read on another thread than the one adding
+ * to the table copies its tokens from its own bytes instead. A token the
+ * run's TokenPredicate does not accept is kept as its length only, with no
+ * bytes, id or String.
+ *
+ *@author   April Albaugh
+ */
+
+public class TokenBatch {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int NO_ID = -1;
+
+    private static final int NO_CONTENT = -1;
+
+    private byte[] data;
+    private int dataSize;
+    private int[] starts;
+    private int[] lengths;
+    private int[] ids;
+    private String[] tokens;
+    private TokenTable tokenTable;
+    private boolean tokensFromTable;
+    private int size;
+
+    /**
+     * Constructor for the TokenBatch object with the default capacity
+     */
+    public TokenBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for the TokenBatch object
+     *
+     *@param capacity   the number of tokens the batch holds
+     */
+    public TokenBatch(int capacity) {
+        data = new byte[capacity * 8];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        ids = new int[capacity];
+        tokens = new String[capacity];
+        tokensFromTable = true;
+    }
+
+    /**
+     * Sets the tokensFromTable attribute. A batch passed to analyzers on
+     * other threads while the table is still growing must not read the
+     * table, so getToken creates the String from the batch's bytes.
+     *
+     *@param tokensFromTable    false to never read tokens from the table
+     */
+    public void setTokensFromTable(boolean tokensFromTable) {
+        this.tokensFromTable = tokensFromTable;
+    }
+
+    /**
+     * Gets the size attribute, the number of tokens in the batch
+     *
+     *@return   The size value
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The isFull method tests if the batch can take another token
+     *
+     *@return   true if the batch is full
+     */
+    public boolean isFull() {
+        return size == starts.length;
+    }
+
+    /**
+     * Gets the data attribute, the array holding the token bytes
+     *
+     *@return   The data value
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * The getStart method returns the offset of a token in the data array
+     *
+     *@param index  the index of the token in the batch
+     *@return   the offset of the first byte, or -1 for a token kept as its
+     *      length only
+     */
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    /**
+     * The getLength method returns the length of a token
+     *
+     *@param index  the index of the token in the batch
+     *@return   the number of characters in the token
+     */
+    public int getLength(int index) {
+        return lengths[index];
+    }
+
+    /**
+     * The hasContent method tests if a token was kept with its bytes
+     *
+     *@param index  the index of the token in the batch
+     *@return   false for a token kept as its length only
+     */
+    public boolean hasContent(int index) {
+        return starts[index] != NO_CONTENT;
+    }
+
+    /**
+     * Gets the tokenTable attribute, the table the ids were assigned from
+     *
+     *@return   The tokenTable value, or null if no ids have been assigned
+     */
+    public TokenTable getTokenTable() {
+        return tokenTable;
+    }
+
+    /**
+     * The getId method returns the id of a token in the batch's TokenTable
+     *
+     *@param index  the index of the token in the batch
+     *@return   the token id, or NO_ID for a token kept as its length only
+     */
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * The getToken method returns a token as a String
+     *
+     *@param index  the index of the token in the batch
+     *@return   the token
+     */
+    public String getToken(int index) {
+        if (starts[index] == NO_CONTENT) {
+            throw new IllegalStateException("Token " + index + " was kept as its length only");
+        }
+        if (tokenTable != null && tokensFromTable && ids[index] != NO_ID) {
+            return tokenTable.getToken(ids[index]);
+        }
+        String token = tokens[index];
+        if (token == null) {
+            token = new String(data, starts[index], lengths[index], StandardCharsets.ISO_8859_1);
+            tokens[index] = token;
+        }
+        return token;
+    }
+
+    /**
+     * The add method copies a token from a buffer into the batch
+     *
+     *@param buffer the buffer holding the token
+     *@param start  the offset of the token in the buffer
+     *@param length the number of bytes in the token
+     */
+    public void add(ByteBuffer buffer, int start, int length) {
+        int index = reserve(length);
+        buffer.get(start, data, starts[index], length);
+    }
+
+    /**
+     * The addLength method adds a token that no analyzer reads, keeping only
+     * its length
+     *
+     *@param length the number of bytes in the token
+     */
+    public void addLength(int length) {
+        int index = size++;
+        starts[index] = NO_CONTENT;
+        lengths[index] = length;
+    }
+
+    /**
+     * The removeContent method drops the bytes of the last token added, so
+     * it is kept as its length only
+     */
+    public void removeContent() {
+        int index = size - 1;
+        dataSize = starts[index];
+        starts[index] = NO_CONTENT;
+        tokens[index] = null;
+    }
+
+    /**
+     * The add method copies a token String into the batch. Tokens only hold
+     * ASCII word characters, so each character is one byte.
+     *
+     *@param token  the token
+     */
+    public void add(String token) {
+        int index = reserve(token.length());
+        int start = starts[index];
+        for (int offset = 0; offset < token.length(); offset++) {
+            data[start + offset] = (byte) token.charAt(offset);
+        }
+        tokens[index] = token;
+    }
+
+    /**
+     * The reserve method makes room for the next token's bytes
+     *
+     *@param length the number of bytes in the token
+     *@return   the index of the token
+     */
+    private int reserve(int length) {
+        if (dataSize + length > data.length) {
+            data = Arrays.copyOf(data, Math.max(dataSize + length, data.length * 2));
+        }
+        int index = size++;
+        starts[index] = dataSize;
+        lengths[index] = length;
+        dataSize += length;
+        return index;
+    }
+
+    /**
+     * The assignIds method adds every token to a TokenTable and keeps the
+     * ids. A String is only created for tokens new to the table, and a
+     * token kept as its length only is not added.
+     *
+     *@param tokenTable the table to assign the ids from
+     */
+    public void assignIds(TokenTable tokenTable) {
+        assignIds(tokenTable, TokenPredicate.ALL);
+    }
+
+    /**
+     * The assignIds method adds the tokens a predicate accepts to a
+     * TokenTable and keeps the ids. The other tokens get NO_ID but keep
+     * their bytes, so the table only grows with the tokens an analyzer
+     * needs ids for.
+     *
+     *@param tokenTable the table to assign the ids from
+     *@param predicate  the tokens to add
+     */
+    public void assignIds(TokenTable tokenTable, TokenPredicate predicate) {
+        if (predicate.isAll()) {
+            for (int index = 0; index < size; index++) {
+                int start = starts[index];
+                ids[index] = start == NO_CONTENT ? NO_ID
+                        : tokenTable.add(data, start, lengths[index]);
+            }
+        } else {
+            for (int index = 0; index < size; index++) {
+                int start = starts[index];
+                int length = lengths[index];
+                ids[index] = start == NO_CONTENT || !predicate.mightAccept(length)
+                        || (predicate.needsBytes() && !predicate.test(data, start, length))
+                        ? NO_ID : tokenTable.add(data, start, length);
+            }
+        }
+        this.tokenTable = tokenTable;
+    }
+
+    /**
+     * The swap method exchanges the tokens of two batches, so a filled
+     * batch can be handed on without copying it
+     *
+     *@param other  the batch to exchange tokens with
+     */
+    public void swap(TokenBatch other) {
+        byte[] otherData = other.data;
+        other.data = data;
+        data = otherData;
+        int[] otherStarts = other.starts;
+        other.starts = starts;
+        starts = otherStarts;
+        int[] otherLengths = other.lengths;
+        other.lengths = lengths;
+        lengths = otherLengths;
+        int[] otherIds = other.ids;
+        other.ids = ids;
+        ids = otherIds;
+        String[] otherTokens = other.tokens;
+        other.tokens = tokens;
+        tokens = otherTokens;
+        TokenTable otherTable = other.tokenTable;
+        other.tokenTable = tokenTable;
+        tokenTable = otherTable;
+        int otherDataSize = other.dataSize;
+        other.dataSize = dataSize;
+        dataSize = otherDataSize;
+        int otherSize = other.size;
+        other.size = size;
+        size = otherSize;
+    }
+
+    /**
+     * The clear method empties the batch so it can be filled again
+     */
+    public void clear() {
+        Arrays.fill(tokens, 0, size, null);
+        size = 0;
+        dataSize = 0;
+        tokenTable = null;
+    }
+
+}
@@ -1,26 +1,60 @@
 package java112.analyzer;
 
 import java.io.*;
+import java.nio.file.NoSuchFileException;
 import java.util.*;
 
 /**
  * The TokenCountAnalyzer class implements the Analyzer interface and
  * receives tokens from the input file. It counts the number of unique tokens
- * and the number of times it occurred, and outputs a file.
+ * and the number of times it occurred, and outputs a file. Tokens get an id
+ * from an open addressing TokenTable, which can be shared with the other
+ * analyzers of the run, and the counts are kept in a long array indexed by
+ * id. The tokens are only sorted once, when the report is written.
+ *
+ * With token.count.mode=approximate the analyzer keeps no exact counts.
+ * It feeds a fixed size HeavyHitterSketch instead and writes the top
+ * token.count.top.k tokens with their error bounds to
+ * output.file.token.count.top, so memory use does not grow with the input.
+ * The tokens of a batch are hashed from their bytes and never added to the
+ * shared TokenTable.
+ *
+ * With spill.threshold.tokens set the exact counts are kept in the
+ * analyzer's own TokenTable, which is written to a sorted run on disk by an
+ * ExternalSorter whenever it holds that many tokens. The runs are merged
+ * into the same report when it is written.
+ *
+ * With output.binary=true the exact counts, or the heavy hitter sketch, are
+ * also written as a binary report that BinaryReportMerger can read back.
  *
  *@author   April Albaugh
  */
 
-public class TokenCountAnalyzer implements Analyzer {
+public class TokenCountAnalyzer implements MergeableAnalyzer<TokenCountAnalyzer>,
+        TokenIdAnalyzer, BinaryStateAnalyzer {
+
+    public static final int DEFAULT_TOP_K = 100;
+    public static final int MONITORED_PER_TOP_TOKEN = 10;
+    public static final int DEFAULT_SKETCH_WIDTH = 1 << 16;
+    public static final int DEFAULT_SKETCH_DEPTH = 4;
+
+    private static final int EXACT = 0;
+    private static final int APPROXIMATE = 1;
 
     private Properties properties;
-    private Map<String, Integer> tokenCounts;
+    private TokenTable tokenTable;
+    private long[] counts;
+    private HeavyHitterSketch heavyHitters;
+    private int topK;
+    private ExternalSorter sorter;
+    private int spillThreshold;
 
     /**
-     * Constructor for the TokenCountAnalyzer object. Instantiates a TreeMap.
+     * Constructor for the TokenCountAnalyzer object. Instantiates a TokenTable.
      */
     public TokenCountAnalyzer()  {
-        tokenCounts = new TreeMap<String, Integer>();
+        tokenTable = new TokenTable();
+        counts = new long[TokenTable.INITIAL_CAPACITY];
     }
 
     /**
@@ -31,32 +65,303 @@ public class TokenCountAnalyzer implements Analyzer {
     public TokenCountAnalyzer(Properties properties) {
         this();
         this.properties = properties;
+        if ("approximate".equals(properties.getProperty("token.count.mode"))) {
+            topK = Integer.parseInt(properties.getProperty("token.count.top.k",
+                    String.valueOf(DEFAULT_TOP_K)));
+            int width = Integer.parseInt(properties.getProperty("token.count.sketch.width",
+                    String.valueOf(DEFAULT_SKETCH_WIDTH)));
+            int depth = Integer.parseInt(properties.getProperty("token.count.sketch.depth",
+                    String.valueOf(DEFAULT_SKETCH_DEPTH)));
+            heavyHitters = new HeavyHitterSketch(topK * MONITORED_PER_TOP_TOKEN, width, depth);
+        } else {
+            sorter = ExternalSorter.forProperties(properties);
+            spillThreshold = ExternalSorter.getThreshold(properties);
+        }
     }
 
     /**
-     * Gets the tokenCounts attribute
+     * Gets the heavyHitters attribute
+     *
+     *@return   The heavyHitters sketch, or null when counts are exact
+     */
+    public HeavyHitterSketch getHeavyHitters() {
+        return heavyHitters;
+    }
+
+    /**
+     * Gets the tokenCounts attribute, a read only view of the tokens and
+     * their counts in alphabetical order. When spilling, only the tokens
+     * not yet written to a run are included.
      *
      *@return   The tokenCounts value
-     */ 
-    public Map getTokenCounts() {
-        return tokenCounts;
+     */
+    public Map<String, Long> getTokenCounts() {
+        SortedMap<String, Long> tokenCounts = new TreeMap<String, Long>();
+        for (int id = 0; id < tokenTable.size() && id < counts.length; id++) {
+            if (counts[id] > 0) {
+                tokenCounts.put(tokenTable.getToken(id), counts[id]);
+            }
+        }
+        return Collections.unmodifiableSortedMap(tokenCounts);
+    }
+
+    /**
+     * The setTokenTable method replaces the analyzer's own table with the
+     * table shared by the run. When spilling the analyzer keeps its own
+     * table, which it empties after each run.
+     *
+     *@param tokenTable the shared token table
+     */
+    public void setTokenTable(TokenTable tokenTable) {
+        if (sorter == null) {
+            this.tokenTable = tokenTable;
+        }
+    }
+
+    /**
+     * The usesTokenIds method returns false when spilling or counting
+     * approximately, since the shared table would keep every token in
+     * memory.
+     *
+     *@return   whether the analyzer needs token ids
+     */
+    public boolean usesTokenIds() {
+        return sorter == null && heavyHitters == null;
     }
 
     /**
-     *  The processToken method receives String token and adds it
-     *  to the TreeSet. Then it counts number of times token occurs.
+     *  The processToken method receives String token, finds its id in the
+     *  TokenTable and adds one to its count.
      *
      *@param token  The token value from the input file
      */
     public void processToken(String token) {
+        if (heavyHitters != null) {
+            heavyHitters.add(token);
+            return;
+        }
+        addCount(tokenTable.add(token), 1);
+        if (sorter != null) {
+            spillIfFull();
+        }
+    }
+
+    /**
+     *  The processTokenId method adds one to the count of a token id
+     *
+     *@param id     The token id in the TokenTable
+     *@param token  The token value from the input file
+     */
+    public void processTokenId(int id, String token) {
+        if (heavyHitters != null) {
+            heavyHitters.add(token);
+            return;
+        }
+        if (sorter != null) {
+            processToken(token);
+            return;
+        }
+        addCount(id, 1);
+    }
 
-        int count = 1;
+    /**
+     *  The isFusible method tests if a FusedKernel can count the ids for the
+     *  analyzer, which it can when the counts are exact and kept in the
+     *  shared table
+     *
+     *@return   true when the counts are a long array indexed by id
+     */
+    boolean isFusible() {
+        return sorter == null && heavyHitters == null;
+    }
 
-        if(tokenCounts.containsKey(token))  {
-            count = tokenCounts.get(token);
-            tokenCounts.put(token, ++count);
-        } else {
-            tokenCounts.put(token, count);
+    /**
+     *  The countsFor method grows the count array to hold every id of the
+     *  table
+     *
+     *@param size   the number of ids in the table
+     *@return   the count array a FusedKernel adds to
+     */
+    long[] countsFor(int size) {
+        if (size > counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(size, counts.length * 2));
+        }
+        return counts;
+    }
+
+    /**
+     *  The processTokens method adds one to the count of each id in a batch.
+     *  A batch with ids from another table is processed token by token, and
+     *  in approximate mode the bytes of each token go to the sketch.
+     *
+     *@param batch  tokens from the input file
+     */
+    public void processTokens(TokenBatch batch) {
+        if (heavyHitters != null) {
+            byte[] data = batch.getData();
+            for (int index = 0; index < batch.size(); index++) {
+                heavyHitters.add(data, batch.getStart(index), batch.getLength(index), 1);
+            }
+            return;
+        }
+        if (sorter != null) {
+            byte[] data = batch.getData();
+            for (int index = 0; index < batch.size(); index++) {
+                addCount(tokenTable.add(data, batch.getStart(index), batch.getLength(index)), 1);
+            }
+            spillIfFull();
+            return;
+        }
+        if (batch.getTokenTable() != tokenTable) {
+            TokenIdAnalyzer.super.processTokens(batch);
+            return;
+        }
+        if (tokenTable.size() > counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(tokenTable.size(), counts.length * 2));
+        }
+        for (int index = 0; index < batch.size(); index++) {
+            counts[batch.getId(index)]++;
+        }
+    }
+
+    /**
+     *  The addCount method adds to the count for a token id, growing the
+     *  count array with the table.
+     *
+     *@param id     The token id
+     *@param count  The number to add
+     */
+    private void addCount(int id, long count) {
+        if (id >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(id + 1, counts.length * 2));
+        }
+        counts[id] += count;
+    }
+
+    /**
+     *  The spillIfFull method writes the table to a run once it holds
+     *  spill.threshold.tokens tokens.
+     */
+    private void spillIfFull() {
+        if (tokenTable.size() >= spillThreshold) {
+            spill();
+        }
+    }
+
+    /**
+     *  The spill method writes the table to a run and starts an empty one
+     */
+    private void spill() {
+        try {
+            sorter.writeRun(tokenTable, counts);
+        } catch (IOException ioEx) {
+            throw new UncheckedIOException(ioEx);
+        }
+        tokenTable = new TokenTable();
+        counts = new long[TokenTable.INITIAL_CAPACITY];
+    }
+
+    /**
+     *  The merge method adds the token counts of another TokenCountAnalyzer
+     *
+     *@param other  TokenCountAnalyzer for the next part of the input
+     */
+    public void merge(TokenCountAnalyzer other) {
+        if (heavyHitters != null && other.heavyHitters != null) {
+            heavyHitters.merge(other.heavyHitters);
+            return;
+        }
+        if (heavyHitters != null) {
+            addToHeavyHitters(other);
+            return;
+        }
+        if (other.heavyHitters != null) {
+            throw new IllegalArgumentException(
+                    "Can not merge approximate token counts into exact counts");
+        }
+        boolean sameTable = other.tokenTable == tokenTable;
+        for (int id = 0; id < other.tokenTable.size() && id < other.counts.length; id++) {
+            if (other.counts[id] > 0) {
+                addCount(sameTable ? id : tokenTable.add(other.tokenTable.getToken(id)),
+                        other.counts[id]);
+            }
+        }
+        if (sorter != null) {
+            sorter.addRuns(other.sorter);
+            spillIfFull();
+        }
+    }
+
+    /**
+     *  The addToHeavyHitters method adds the exact counts of another
+     *  TokenCountAnalyzer, including its spilled runs, to the sketch
+     *
+     *@param other  TokenCountAnalyzer with exact counts
+     */
+    private void addToHeavyHitters(TokenCountAnalyzer other) {
+        for (int id = 0; id < other.tokenTable.size() && id < other.counts.length; id++) {
+            if (other.counts[id] > 0) {
+                heavyHitters.add(other.tokenTable.getToken(id), other.counts[id]);
+            }
+        }
+        if (other.sorter != null && other.sorter.getRunCount() > 0) {
+            try {
+                other.sorter.merge((token, count) -> heavyHitters.add(token, count));
+            } catch (IOException ioEx) {
+                throw new UncheckedIOException(ioEx);
+            }
+        }
+    }
+
+    /**
+     * The close method deletes the spilled runs that were not merged into
+     * the report
+     */
+    public void close() {
+        if (sorter != null) {
+            sorter.close();
+        }
+    }
+
+    /**
+     * Gets the reportProperty attribute
+     *
+     *@return   The property naming the token count report
+     */
+    public String getReportProperty() {
+        return "output.file.token.count";
+    }
+
+    /**
+     *  The readState method adds the counts of a binary report. A report of
+     *  approximate counts replaces the analyzer's sketch, which must have
+     *  the shape of the configured sketch.
+     *
+     *@param input  the binary report
+     *@exception IOException  if the report can not be read or its sketch
+     *      has a different shape
+     */
+    public void readState(BinaryReportInput input) throws IOException {
+        if (input.readByte() == APPROXIMATE) {
+            topK = input.readVarInt();
+            HeavyHitterSketch sketch = HeavyHitterSketch.readState(input);
+            if (heavyHitters != null && !heavyHitters.hasSameShape(sketch)) {
+                throw new IOException("Binary report has a sketch of "
+                        + sketch.describeShape() + ", not " + heavyHitters.describeShape());
+            }
+            heavyHitters = sketch;
+            return;
+        }
+        for (String token = input.readToken(); token != null; token = input.readToken()) {
+            long count = input.readVarLong();
+            if (heavyHitters != null) {
+                heavyHitters.add(token, count);
+                continue;
+            }
+            addCount(tokenTable.add(token), count);
+            if (sorter != null) {
+                spillIfFull();
+            }
         }
     }
 
@@ -67,18 +372,43 @@ public class TokenCountAnalyzer implements Analyzer {
      *
      */
     public void writeOutputFile(String inputFilePath) {
+        if (heavyHitters != null) {
+            writeTopTokens(inputFilePath);
+            return;
+        }
         String outputFilePath = properties.getProperty("output.dir")
                 + properties.getProperty("output.file.token.count");
-        try (PrintWriter writer = 
-                new PrintWriter(new BufferedWriter(new FileWriter(outputFilePath)))) {
-            for(Map.Entry<String, Integer> entry : tokenCounts.entrySet())  {
-                writer.print(entry.getKey());
+        try (ReportWriter writer = ReportWriter.open(properties, outputFilePath);
+                BinaryReportOutput binary =
+                        BinaryReportOutput.open(properties, this, inputFilePath)) {
+            if (binary != null) {
+                binary.writeByte(EXACT);
+            }
+            ExternalSorter.EntryConsumer writeCount = (token, count) -> {
+                writer.print(token);
                 writer.print("\t");
-                writer.println(entry.getValue());
+                writer.println(count);
+                if (binary != null) {
+                    binary.writeToken(token);
+                    binary.writeVarLong(count);
+                }
+            };
+            if (sorter != null && sorter.getRunCount() > 0) {
+                spill();
+                sorter.merge(writeCount);
+            } else {
+                for (int id : tokenTable.sortedIds()) {
+                    if (id < counts.length && counts[id] > 0) {
+                        writeCount.accept(tokenTable.getToken(id), counts[id]);
+                    }
+                }
+            }
+            if (binary != null) {
+                binary.endDictionary();
             }
-        } catch (FileNotFoundException fileNotFoundEx) {
+        } catch (NoSuchFileException noSuchFileEx) {
             System.out.println("Could not find file");
-            fileNotFoundEx.printStackTrace();
+            noSuchFileEx.printStackTrace();
         } catch (IOException ioEx) {
             System.out.println("Could not read the file");
             ioEx.printStackTrace();
@@ -87,4 +417,45 @@ public class TokenCountAnalyzer implements Analyzer {
             exception.printStackTrace();
         }
     }
+
+    /**
+     *  The writeTopTokens method writes the approximate report. Each line is
+     *  a token, the upper bound and the lower bound of its count. The true
+     *  count of every listed token is within its bounds.
+     *
+     *@param inputFilePath  inputFilePath file name
+     */
+    private void writeTopTokens(String inputFilePath) {
+        String outputFilePath = properties.getProperty("output.dir")
+                + properties.getProperty("output.file.token.count.top",
+                properties.getProperty("output.file.token.count") + ".top");
+        try (ReportWriter writer = ReportWriter.open(properties, outputFilePath);
+                BinaryReportOutput binary =
+                        BinaryReportOutput.open(properties, this, inputFilePath)) {
+            writer.println("# tokens: " + heavyHitters.getTotalCount()
+                    + ", monitored: " + heavyHitters.getCapacity()
+                    + ", maximum over estimate: " + heavyHitters.getErrorBound());
+            for (HeavyHitterSketch.HeavyHitter hitter : heavyHitters.topTokens(topK)) {
+                writer.print(hitter.getToken());
+                writer.print("\t");
+                writer.print(hitter.getCount());
+                writer.print("\t");
+                writer.println(hitter.getMinimumCount());
+            }
+            if (binary != null) {
+                binary.writeByte(APPROXIMATE);
+                binary.writeVarLong(topK);
+                heavyHitters.writeState(binary);
+            }
+        } catch (NoSuchFileException noSuchFileEx) {
+            System.out.println("Could not find file");
+            noSuchFileEx.printStackTrace();
+        } catch (IOException ioEx) {
+            System.out.println("Could not write the file");
+            ioEx.printStackTrace();
+        } catch (Exception exception) {
+            System.out.println("Something bad happened");
+            exception.printStackTrace();
+        }
+    }
  }
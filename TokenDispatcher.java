@@ -0,0 +1,294 @@
+package java112.analyzer;
+
+import java.util.*;
+
+/**
+ * The TokenDispatcher class passes batches of tokens to a set of analyzers.
+ * It creates the TokenTable shared by the analyzers of one run, and when any
+ * analyzer is a TokenIdAnalyzer that uses ids it adds the tokens of a batch
+ * to the table once before the batch is passed on. Only the tokens accepted
+ * by the predicate of an analyzer that uses ids are added, so tokens that
+ * only sketches or spilled runs read never fill the table. Each analyzer
+ * then loops over the whole batch itself, so there is one interface call
+ * per analyzer per batch instead of one per token. With fusion the
+ * analyzers that can share a FusedKernel are passed the batch in one loop
+ * instead. When the run has AnalysisMetrics each analyzer's processing of
+ * each batch is measured, and the fused analyzers are measured together.
+ * The dispatcher also joins the TokenPredicate of every analyzer, so the
+ * tokenizer only keeps the bytes of the tokens some analyzer reads.
+ * Analyzers that are only merged and written, with no tokens to dispatch,
+ * are given a shared table by the shareTable method.
+ *
+ *@author   April Albaugh
+ */
+
+public class TokenDispatcher {
+
+    private TokenTable tokenTable;
+    private Analyzer[] analyzers;
+    private boolean assignIds;
+    private TokenBatch batch;
+    private FusedKernel kernel;
+    private TokenPredicate tokenPredicate;
+    private TokenPredicate idPredicate;
+    private AnalysisMetrics metrics;
+    private AnalysisMetrics.Timer idTimer;
+    private AnalysisMetrics.Timer kernelTimer;
+    private AnalysisMetrics.Timer[] processTimers;
+
+    /**
+     * Constructor for the TokenDispatcher object
+     *
+     *@param analyzers  the analyzers to receive the tokens
+     */
+    public TokenDispatcher(List<Analyzer> analyzers) {
+        this(analyzers, false);
+    }
+
+    /**
+     * Constructor for a TokenDispatcher that can fuse the analyzers
+     *
+     *@param analyzers  the analyzers to receive the tokens
+     *@param fusion     true to process the analyzers that can share a
+     *      FusedKernel in one loop
+     */
+    public TokenDispatcher(List<Analyzer> analyzers, boolean fusion) {
+        this(analyzers, fusion, new TokenTable());
+    }
+
+    /**
+     * Constructor for a TokenDispatcher whose analyzers share a given table,
+     * such as an OffHeapTokenTable
+     *
+     *@param analyzers  the analyzers to receive the tokens
+     *@param fusion     true to process the analyzers that can share a
+     *      FusedKernel in one loop
+     *@param tokenTable the empty table to share
+     */
+    public TokenDispatcher(List<Analyzer> analyzers, boolean fusion, TokenTable tokenTable) {
+        this.tokenTable = tokenTable;
+        tokenPredicate = TokenPredicate.LENGTH_ONLY;
+        idPredicate = TokenPredicate.LENGTH_ONLY;
+        for (Analyzer analyzer : analyzers) {
+            tokenPredicate = tokenPredicate.or(analyzer.getTokenPredicate());
+            if (analyzer instanceof TokenIdAnalyzer) {
+                TokenIdAnalyzer idAnalyzer = (TokenIdAnalyzer) analyzer;
+                idAnalyzer.setTokenTable(tokenTable);
+                if (idAnalyzer.usesTokenIds()) {
+                    assignIds = true;
+                    idPredicate = idPredicate.or(analyzer.getTokenPredicate());
+                }
+            }
+        }
+        if (fusion) {
+            kernel = FusedKernel.plan(analyzers, tokenTable);
+        }
+        List<Analyzer> separate = new ArrayList<Analyzer>();
+        for (Analyzer analyzer : analyzers) {
+            if (kernel == null || !kernel.covers(analyzer)) {
+                separate.add(analyzer);
+            }
+        }
+        this.analyzers = separate.toArray(new Analyzer[0]);
+        batch = new TokenBatch();
+    }
+
+    /**
+     * The shareTable method gives a new TokenTable to every TokenIdAnalyzer
+     * of a set, for analyzers that are merged into instead of being passed
+     * tokens
+     *
+     *@param analyzers  the analyzers to share the table
+     *@return   the shared table
+     */
+    public static TokenTable shareTable(List<Analyzer> analyzers) {
+        TokenTable tokenTable = new TokenTable();
+        for (Analyzer analyzer : analyzers) {
+            if (analyzer instanceof TokenIdAnalyzer) {
+                ((TokenIdAnalyzer) analyzer).setTokenTable(tokenTable);
+            }
+        }
+        return tokenTable;
+    }
+
+    /**
+     * Gets the tokenTable attribute
+     *
+     *@return   The tokenTable value
+     */
+    public TokenTable getTokenTable() {
+        return tokenTable;
+    }
+
+    /**
+     * Gets the tokenPredicate attribute, the tokens any analyzer reads
+     *
+     *@return   The tokenPredicate value
+     */
+    public TokenPredicate getTokenPredicate() {
+        return tokenPredicate;
+    }
+
+    /**
+     * Gets the kernel attribute
+     *
+     *@return   The kernel, or null if no analyzers are fused
+     */
+    public FusedKernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Sets the metrics attribute, so every batch is measured
+     *
+     *@param metrics    the run metrics
+     */
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+        idTimer = metrics.stageTimer("assignIds");
+        if (kernel != null) {
+            kernelTimer = metrics.stageTimer("fusedKernel");
+        }
+        processTimers = new AnalysisMetrics.Timer[analyzers.length];
+        for (int index = 0; index < analyzers.length; index++) {
+            processTimers[index] = metrics.processTimer(analyzers[index]);
+        }
+    }
+
+    /**
+     * The dispatch method passes a batch of tokens to every analyzer
+     *
+     *@param batch  tokens from the input file
+     */
+    public void dispatch(TokenBatch batch) {
+        if (metrics != null) {
+            dispatchMeasured(batch);
+            return;
+        }
+        if (assignIds) {
+            batch.assignIds(tokenTable, idPredicate);
+        }
+        if (kernel != null) {
+            kernel.processTokens(batch);
+        }
+        for (Analyzer analyzer : analyzers) {
+            analyzer.processTokens(batch);
+        }
+    }
+
+    /**
+     * The dispatchMeasured method passes a batch of tokens to every
+     * analyzer and measures the id assignment and each analyzer
+     *
+     *@param batch  tokens from the input file
+     */
+    private void dispatchMeasured(TokenBatch batch) {
+        metrics.addTokens(batch.size());
+        if (assignIds) {
+            AnalysisMetrics.Sample sample = idTimer.start();
+            batch.assignIds(tokenTable, idPredicate);
+            idTimer.stop(sample, batch.size());
+        }
+        if (kernel != null) {
+            AnalysisMetrics.Sample sample = kernelTimer.start();
+            kernel.processTokens(batch);
+            kernelTimer.stop(sample, batch.size());
+        }
+        for (int index = 0; index < analyzers.length; index++) {
+            AnalysisMetrics.Sample sample = processTimers[index].start();
+            analyzers[index].processTokens(batch);
+            processTimers[index].stop(sample, batch.size());
+        }
+    }
+
+    /**
+     * Gets the consumerCount attribute, the number of parts the analysis of
+     * a batch can be split into: the kernel, when there is one, and each
+     * analyzer it does not cover
+     *
+     *@return   The consumerCount value
+     */
+    public int getConsumerCount() {
+        return (kernel != null ? 1 : 0) + analyzers.length;
+    }
+
+    /**
+     * The assignIds method adds the tokens of a batch to the shared table
+     * when an analyzer uses the ids. It is the first step of dispatching a
+     * batch in parts, and must be done on one thread.
+     *
+     *@param batch  tokens from the input file
+     */
+    public void assignIds(TokenBatch batch) {
+        if (metrics != null) {
+            metrics.addTokens(batch.size());
+        }
+        if (!assignIds) {
+            return;
+        }
+        if (metrics == null) {
+            batch.assignIds(tokenTable, idPredicate);
+            return;
+        }
+        AnalysisMetrics.Sample sample = idTimer.start();
+        batch.assignIds(tokenTable, idPredicate);
+        idTimer.stop(sample, batch.size());
+    }
+
+    /**
+     * The process method passes a batch that has its ids to one part of
+     * the analysis. Each part can run on its own thread.
+     *
+     *@param consumer   the part, from 0 to getConsumerCount() - 1, where 0
+     *      is the kernel when there is one
+     *@param batch      tokens from the input file
+     */
+    public void process(int consumer, TokenBatch batch) {
+        if (kernel != null && consumer == 0) {
+            if (metrics == null) {
+                kernel.processTokens(batch);
+            } else {
+                AnalysisMetrics.Sample sample = kernelTimer.start();
+                kernel.processTokens(batch);
+                kernelTimer.stop(sample, batch.size());
+            }
+            return;
+        }
+        int index = kernel != null ? consumer - 1 : consumer;
+        if (metrics == null) {
+            analyzers[index].processTokens(batch);
+        } else {
+            AnalysisMetrics.Sample sample = processTimers[index].start();
+            analyzers[index].processTokens(batch);
+            processTimers[index].stop(sample, batch.size());
+        }
+    }
+
+    /**
+     * The dispatch method adds a token that is not blank to the dispatcher's
+     * own batch, passing the batch on when it is full. The flush method must
+     * be called after the last token.
+     *
+     *@param token  token processed words from input file
+     */
+    public void dispatch(String token) {
+        if (token.length() > 0) {
+            batch.add(token);
+            if (batch.isFull()) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * The flush method passes on the tokens waiting in the dispatcher's own
+     * batch.
+     */
+    public void flush() {
+        if (batch.size() > 0) {
+            dispatch(batch);
+            batch.clear();
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package java112.analyzer;
+
+/**
+ * The TokenHash class computes the 64 bit token hash used by the sketches.
+ * It is FNV-1a over the characters followed by the MurmurHash3 finalizer.
+ * Tokens only hold ASCII characters, so hashing a token's bytes gives the
+ * same value as hashing its String.
+ *
+ *@author   April Albaugh
+ */
+
+public final class TokenHash {
+
+    private static final long OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long PRIME = 0x100000001B3L;
+
+    /**
+     * Constructor for the TokenHash object, which only has static methods
+     */
+    private TokenHash() {
+
+    }
+
+    /**
+     * The hash method hashes a token String
+     *
+     *@param token  the token
+     *@return   the 64 bit hash
+     */
+    public static long hash(String token) {
+        long hash = OFFSET_BASIS;
+        for (int index = 0; index < token.length(); index++) {
+            hash = (hash ^ token.charAt(index)) * PRIME;
+        }
+        return finish(hash);
+    }
+
+    /**
+     * The hash method hashes a token held as ASCII bytes
+     *
+     *@param data   the array holding the token
+     *@param start  the offset of the token
+     *@param length the number of bytes in the token
+     *@return   the 64 bit hash
+     */
+    public static long hash(byte[] data, int start, int length) {
+        long hash = OFFSET_BASIS;
+        for (int index = start; index < start + length; index++) {
+            hash = (hash ^ (data[index] & 0xFF)) * PRIME;
+        }
+        return finish(hash);
+    }
+
+    /**
+     * The finish method mixes the bits so every bit depends on every
+     * character
+     *
+     *@param hash   the FNV hash
+     *@return   the mixed hash
+     */
+    static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+}
@@ -0,0 +1,43 @@
+package java112.analyzer;
+
+/**
+ * The TokenIdAnalyzer interface is implemented by analyzers that keep their
+ * state by token id. When a run shares one TokenTable between analyzers,
+ * each token is added to the table once and the id is passed to every
+ * TokenIdAnalyzer, so the token is hashed and stored only once.
+ *
+ *@author   April Albaugh
+ */
+
+public interface TokenIdAnalyzer extends Analyzer {
+
+    /**
+     * The setTokenTable method gives the analyzer the table that assigns
+     * the token ids. It is called before any token is processed.
+     *
+     *@param tokenTable the shared token table
+     */
+    void setTokenTable(TokenTable tokenTable);
+
+    /**
+     * The processTokenId method processes a token that has already been
+     * added to the shared token table.
+     *
+     *@param id     the token id in the shared table
+     *@param token  the token
+     */
+    void processTokenId(int id, String token);
+
+    /**
+     * The usesTokenIds method tells the dispatcher whether the analyzer needs
+     * the ids of a batch. An analyzer configured to work without the table
+     * returns false, and when no analyzer needs them the ids are not
+     * assigned.
+     *
+     *@return   whether the analyzer needs token ids
+     */
+    default boolean usesTokenIds() {
+        return true;
+    }
+
+}
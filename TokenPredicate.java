@@ -0,0 +1,189 @@
+package java112.analyzer;
+
+/**
+ * The TokenPredicate class tells the tokenizer which tokens an analyzer
+ * needs to read. Every token is still counted and passed with its length,
+ * but only a token the predicate accepts has its bytes copied into the
+ * batch, an id in the token table and a String when asked for. A predicate
+ * is any of a few cheap clauses, each a length range and an optional
+ * keyword list, and is tested on the raw bytes of the input, so a token
+ * no analyzer reads costs nothing but its length. ALL keeps every token
+ * and LENGTH_ONLY keeps none.
+ *
+ *@author   April Albaugh
+ */
+
+public class TokenPredicate {
+
+    public static final TokenPredicate ALL = new TokenPredicate(new int[] {0},
+            new int[] {Integer.MAX_VALUE}, new KeywordMatcher[] {null});
+    public static final TokenPredicate LENGTH_ONLY = new TokenPredicate(new int[0],
+            new int[0], new KeywordMatcher[0]);
+
+    private int[] minimumLengths;
+    private int[] maximumLengths;
+    private KeywordMatcher[] keywordMatchers;
+    private int shortest;
+    private int longest;
+    private boolean needsBytes;
+
+    /**
+     * Constructor for the TokenPredicate object
+     *
+     *@param minimumLengths     the shortest token of each clause
+     *@param maximumLengths     the longest token of each clause
+     *@param keywordMatchers    the keywords of each clause, or null for a
+     *      clause of lengths only
+     */
+    private TokenPredicate(int[] minimumLengths, int[] maximumLengths,
+            KeywordMatcher[] keywordMatchers) {
+        this.minimumLengths = minimumLengths;
+        this.maximumLengths = maximumLengths;
+        this.keywordMatchers = keywordMatchers;
+        shortest = Integer.MAX_VALUE;
+        longest = -1;
+        for (int clause = 0; clause < minimumLengths.length; clause++) {
+            shortest = Math.min(shortest, minimumLengths[clause]);
+            longest = Math.max(longest, maximumLengths[clause]);
+            needsBytes |= keywordMatchers[clause] != null;
+        }
+    }
+
+    /**
+     * The lengthBetween method creates a predicate for the tokens with a
+     * length in a range
+     *
+     *@param minimumLength  the shortest token accepted
+     *@param maximumLength  the longest token accepted
+     *@return   the predicate
+     */
+    public static TokenPredicate lengthBetween(int minimumLength, int maximumLength) {
+        return new TokenPredicate(new int[] {minimumLength}, new int[] {maximumLength},
+                new KeywordMatcher[] {null});
+    }
+
+    /**
+     * The keywords method creates a predicate for the tokens that match a
+     * keyword list. A list of literals also limits the lengths to those of
+     * the keywords, so most tokens are turned down without a lookup.
+     *
+     *@param keywordMatcher the keywords
+     *@return   the predicate
+     */
+    public static TokenPredicate keywords(KeywordMatcher keywordMatcher) {
+        if (keywordMatcher.size() == 0) {
+            return LENGTH_ONLY;
+        }
+        int minimumLength = 0;
+        int maximumLength = Integer.MAX_VALUE;
+        if (!keywordMatcher.hasPatterns()) {
+            minimumLength = Integer.MAX_VALUE;
+            maximumLength = 0;
+            for (int id = 0; id < keywordMatcher.size(); id++) {
+                int length = keywordMatcher.getKeyword(id).length();
+                minimumLength = Math.min(minimumLength, length);
+                maximumLength = Math.max(maximumLength, length);
+            }
+        }
+        return new TokenPredicate(new int[] {minimumLength}, new int[] {maximumLength},
+                new KeywordMatcher[] {keywordMatcher});
+    }
+
+    /**
+     * The or method combines two predicates, as for the analyzers of one
+     * run
+     *
+     *@param other  the other predicate
+     *@return   a predicate accepting the tokens either one accepts
+     */
+    public TokenPredicate or(TokenPredicate other) {
+        if (isAll() || other.isAll()) {
+            return ALL;
+        }
+        int clauses = minimumLengths.length;
+        int otherClauses = other.minimumLengths.length;
+        int[] minimums = new int[clauses + otherClauses];
+        int[] maximums = new int[clauses + otherClauses];
+        KeywordMatcher[] matchers = new KeywordMatcher[clauses + otherClauses];
+        System.arraycopy(minimumLengths, 0, minimums, 0, clauses);
+        System.arraycopy(other.minimumLengths, 0, minimums, clauses, otherClauses);
+        System.arraycopy(maximumLengths, 0, maximums, 0, clauses);
+        System.arraycopy(other.maximumLengths, 0, maximums, clauses, otherClauses);
+        System.arraycopy(keywordMatchers, 0, matchers, 0, clauses);
+        System.arraycopy(other.keywordMatchers, 0, matchers, clauses, otherClauses);
+        return new TokenPredicate(minimums, maximums, matchers);
+    }
+
+    /**
+     * The isAll method tests if the predicate accepts every token
+     *
+     *@return   true if every token is kept
+     */
+    public boolean isAll() {
+        for (int clause = 0; clause < minimumLengths.length; clause++) {
+            if (minimumLengths[clause] <= 1 && maximumLengths[clause] == Integer.MAX_VALUE
+                    && keywordMatchers[clause] == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The isLengthOnly method tests if the predicate accepts no token
+     *
+     *@return   true if only the token lengths are kept
+     */
+    public boolean isLengthOnly() {
+        return minimumLengths.length == 0;
+    }
+
+    /**
+     * The needsBytes method tests if a token of an accepted length must
+     * still be looked up
+     *
+     *@return   true if a clause has keywords
+     */
+    public boolean needsBytes() {
+        return needsBytes;
+    }
+
+    /**
+     * The mightAccept method tests if the predicate can accept a token of
+     * a length
+     *
+     *@param length the length of the token
+     *@return   false if no clause accepts the length
+     */
+    public boolean mightAccept(int length) {
+        if (length < shortest || length > longest) {
+            return false;
+        }
+        for (int clause = 0; clause < minimumLengths.length; clause++) {
+            if (length >= minimumLengths[clause] && length <= maximumLengths[clause]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The test method tests a token held as ASCII bytes
+     *
+     *@param data   the array holding the token
+     *@param start  the offset of the token
+     *@param length the number of bytes in the token
+     *@return   true if a clause accepts the token
+     */
+    public boolean test(byte[] data, int start, int length) {
+        for (int clause = 0; clause < minimumLengths.length; clause++) {
+            if (length >= minimumLengths[clause] && length <= maximumLengths[clause]
+                    && (keywordMatchers[clause] == null
+                    || keywordMatchers[clause].match(data, start, length) >= 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -1,27 +1,39 @@
 package java112.analyzer;
 
 import java.io.*;
+import java.nio.file.NoSuchFileException;
 import java.util.*;
 
 /**
  * The TokenSizeAnalyzer class implements the Analyzer interface and
  * determines the size distribution of the tokens in the input file.
  * Outputs file with list of token lengths and a histogram of the results.
+ * The counts are kept in a long array indexed by token length, which grows
+ * as longer tokens are seen. Only lengths above MAXIMUM_DENSE_SIZE are kept
+ * in a sparse overflow map. The counts can also be written as a binary
+ * report of size deltas and counts.
  *
  *@author   April Albaugh
  */
 
-public class TokenSizeAnalyzer implements Analyzer {
+public class TokenSizeAnalyzer implements MergeableAnalyzer<TokenSizeAnalyzer>,
+        BinaryStateAnalyzer {
 
-    private Map<Integer, Integer> tokenSizes;
+    public static final int INITIAL_DENSE_SIZE = 32;
+    public static final int MAXIMUM_DENSE_SIZE = 4096;
+
+    private long[] sizeCounts;
+    private SortedMap<Integer, Long> overflowSizes;
     private Properties properties;
     private int maximumSize;
 
     /**
-     * Constructor for the TokenSizeAnalyzer object. Instantiates a TreeMap.
+     * Constructor for the TokenSizeAnalyzer object. Instantiates the counter
+     * array and the overflow TreeMap.
      */
     public TokenSizeAnalyzer()  {
-        tokenSizes = new TreeMap<Integer, Integer>();
+        sizeCounts = new long[INITIAL_DENSE_SIZE];
+        overflowSizes = new TreeMap<Integer, Long>();
     }
 
     /**
@@ -36,35 +48,159 @@ public class TokenSizeAnalyzer implements Analyzer {
     }
 
     /**
-     * Gets the tokenSizes attribute
+     * Gets the tokenSizes attribute, a sorted read only view of the token
+     * lengths and the number of tokens with each length.
      *
      *@return   The tokenSizes value
-     */ 
-    public Map<Integer, Integer> getTokenSizes() {
-        return tokenSizes;
+     */
+    public Map<Integer, Long> getTokenSizes() {
+        SortedMap<Integer, Long> tokenSizes = new TreeMap<Integer, Long>();
+        for (int size = 0; size < sizeCounts.length; size++) {
+            if (sizeCounts[size] > 0) {
+                tokenSizes.put(size, sizeCounts[size]);
+            }
+        }
+        tokenSizes.putAll(overflowSizes);
+        return Collections.unmodifiableSortedMap(tokenSizes);
     }
 
     /**
      * Gets the maximumSize attribute
      *
      *@return   The maximumSize value
-     */ 
+     */
     public int getMaximumSize()  {
       return maximumSize;
     }
 
     /**
-     *  The processToken method checks the TreeMap for each token length. 
-     *  Then it adds the lengths. 
+     *  The processToken method adds one to the count for the token length.
      *
      *@param token  The token value from the input file
      */
     public void processToken(String token) {
-        if (tokenSizes.containsKey(token.length())) {
-            int value = tokenSizes.get(token.length());
-            tokenSizes.put(token.length(), ++value);
+        addSize(token.length(), 1);
+    }
+
+    /**
+     *  The getTokenPredicate method tells the tokenizer that only the token
+     *  lengths are needed
+     *
+     *@return   LENGTH_ONLY
+     */
+    public TokenPredicate getTokenPredicate() {
+        return TokenPredicate.LENGTH_ONLY;
+    }
+
+    /**
+     *  The processTokens method adds one to the count for the length of each
+     *  token in the batch.
+     *
+     *@param batch  tokens from the input file
+     */
+    public void processTokens(TokenBatch batch) {
+        for (int index = 0; index < batch.size(); index++) {
+            int size = batch.getLength(index);
+            if (size < sizeCounts.length) {
+                sizeCounts[size]++;
+            } else {
+                addSize(size, 1);
+            }
+        }
+    }
+
+    /**
+     *  Gets the sizeCounts attribute, the dense counter array a FusedKernel
+     *  adds to. The array is replaced when addSize grows it.
+     *
+     *@return   The sizeCounts value
+     */
+    long[] getSizeCounts() {
+        return sizeCounts;
+    }
+
+    /**
+     *  The addSize method adds to the count for a token length, growing the
+     *  counter array or using the overflow map for very long tokens.
+     *
+     *@param size   The token length
+     *@param count  The number of tokens to add
+     */
+    void addSize(int size, long count) {
+        if (size < sizeCounts.length) {
+            sizeCounts[size] += count;
+        } else if (size < MAXIMUM_DENSE_SIZE) {
+            int length = sizeCounts.length;
+            while (length <= size) {
+                length *= 2;
+            }
+            sizeCounts = Arrays.copyOf(sizeCounts, Math.min(length, MAXIMUM_DENSE_SIZE));
+            sizeCounts[size] += count;
         } else {
-            tokenSizes.put(token.length(), 1);
+            overflowSizes.merge(size, count, Long::sum);
+        }
+    }
+
+    /**
+     *  The merge method adds the token sizes of another TokenSizeAnalyzer
+     *
+     *@param other  TokenSizeAnalyzer for the next part of the input
+     */
+    public void merge(TokenSizeAnalyzer other) {
+        for (int size = 0; size < other.sizeCounts.length; size++) {
+            if (other.sizeCounts[size] > 0) {
+                addSize(size, other.sizeCounts[size]);
+            }
+        }
+        for (Map.Entry<Integer, Long> entry : other.overflowSizes.entrySet()) {
+            addSize(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Gets the reportProperty attribute
+     *
+     *@return   The property naming the token size report
+     */
+    public String getReportProperty() {
+        return "output.file.token.size";
+    }
+
+    /**
+     *  The writeState method writes the number of token lengths, then each
+     *  length as the difference from the one before and its count.
+     *
+     *@param output the binary report
+     *@exception IOException  if the report can not be written
+     */
+    private void writeState(BinaryReportOutput output) throws IOException {
+        Map<Integer, Long> sizes = new TreeMap<Integer, Long>(overflowSizes);
+        for (int size = 0; size < sizeCounts.length; size++) {
+            if (sizeCounts[size] > 0) {
+                sizes.put(size, sizeCounts[size]);
+            }
+        }
+        output.writeVarLong(sizes.size());
+        int previous = 0;
+        for (Map.Entry<Integer, Long> entry : sizes.entrySet()) {
+            output.writeVarLong(entry.getKey() - previous);
+            output.writeVarLong(entry.getValue());
+            previous = entry.getKey();
+        }
+    }
+
+    /**
+     *  The readState method adds the token length counts of a binary report
+     *
+     *@param input  the binary report
+     *@exception IOException  if the report can not be read
+     */
+    public void readState(BinaryReportInput input) throws IOException {
+        int entries = input.readVarInt();
+        int size = 0;
+        for (int entry = 0; entry < entries; entry++) {
+            size += input.readVarInt();
+            addSize(size, input.readVarLong());
         }
     }
 
@@ -77,14 +213,19 @@ public class TokenSizeAnalyzer implements Analyzer {
     public void writeOutputFile(String inputFilePath) {
         String outputFilePath = properties.getProperty("output.dir")
                 + properties.getProperty("output.file.token.size");
-        try (PrintWriter writer = 
-                new PrintWriter(new BufferedWriter(new FileWriter(outputFilePath)))) {
+        try (ReportWriter writer = ReportWriter.open(properties, outputFilePath)) {
             outputTokenSizeReport(writer);
             writer.println("");
             outputTokenHistogram(writer);
-        } catch (FileNotFoundException fileNotFoundEx) {
+            try (BinaryReportOutput binary =
+                    BinaryReportOutput.open(properties, this, inputFilePath)) {
+                if (binary != null) {
+                    writeState(binary);
+                }
+            }
+        } catch (NoSuchFileException noSuchFileEx) {
             System.out.println("Could not find file");
-            fileNotFoundEx.printStackTrace();
+            noSuchFileEx.printStackTrace();
         } catch (IOException ioEx) {
             System.out.println("Could not read the file");
             ioEx.printStackTrace();
@@ -98,61 +239,83 @@ public class TokenSizeAnalyzer implements Analyzer {
      * The outputTokenSizeReport method outputs the length of each token and the
      * the number of tokens with the key's length.
      *
-     * @param writer    Printwriter write to file.
+     * @param writer    ReportWriter write to file.
      */
-    private void outputTokenSizeReport(PrintWriter writer) {
-        for(Map.Entry<Integer, Integer> entry : tokenSizes.entrySet())  {
-            writer.println(entry.getKey() + "	" + entry.getValue());
+    private void outputTokenSizeReport(ReportWriter writer) throws IOException {
+        for (int size = 0; size < sizeCounts.length; size++) {
+            if (sizeCounts[size] > 0) {
+                writer.print(size);
+                writer.print('\t');
+                writer.println(sizeCounts[size]);
+            }
+        }
+        for (Map.Entry<Integer, Long> entry : overflowSizes.entrySet()) {
+            writer.print(entry.getKey().intValue());
+            writer.print('\t');
+            writer.println(entry.getValue().longValue());
         }
     }
 
     /**
      * The outputTokenHistogram method outputs a histogram with asterisk
-     * values for each key in the tokenSizes map. Collections.max returns the 
-     * maximum element of the given collection (the tokenSizes largest value).
-     * String keyLine calls the formatLine method and returns a String
-     * representation of map Key (an int). Key becomes String with toString, tab 
-     * minus length of the Key String and ' ' char adds spaces after Key.
-     * Int number outputs the number of asterisks. Converts double to int.
-     * The method Math.ceil(double a) returns the smallest double value that is  
-     * greater than or equal to the argument and is equal to a mathematical 
-     * integer. Math.ceil gives correct number of asterisks (shows at least
-     * one). String stars calls the formatLine method and creates a String
-     * representation of the number of asterisks and outputs the number of 
-     * asterisks, the char value.
-     *
-     * @param writer   Printwriter write to file.
-     */
-    private void outputTokenHistogram(PrintWriter writer) {
-        final int TAB = 4;
-        double tokenLargestValue = Collections.max(tokenSizes.values());
+     * values for each token length. The largest count is shown with
+     * getMaximumSize asterisks. Each row is the length padded with spaces to
+     * TAB characters, followed by the count divided by the count per
+     * asterisk. Math.ceil gives correct number of asterisks (shows at least
+     * one). The rows are built in one reusable char array.
+     *
+     * @param writer   ReportWriter write to file.
+     */
+    private void outputTokenHistogram(ReportWriter writer) throws IOException {
+        double tokenLargestValue = 0;
+        for (long count : sizeCounts) {
+            tokenLargestValue = Math.max(tokenLargestValue, count);
+        }
+        for (long count : overflowSizes.values()) {
+            tokenLargestValue = Math.max(tokenLargestValue, count);
+        }
+        if (tokenLargestValue == 0) {
+            return;
+        }
+
         double totalAsterisks = tokenLargestValue / getMaximumSize();
-        for(Map.Entry<Integer, Integer> entry : tokenSizes.entrySet())  {
-            String keyLine = formatLine(entry.getKey().toString(),
-                             TAB - entry.getKey().toString().length(), ' ');
-            int number = (int) Math.ceil(entry.getValue() / totalAsterisks);
-            String stars = formatLine(keyLine, number, '*');
-            writer.println(stars);
+        char[] row = new char[64];
+        for (int size = 0; size < sizeCounts.length; size++) {
+            if (sizeCounts[size] > 0) {
+                row = formatLine(writer, row, size, sizeCounts[size], totalAsterisks);
+            }
+        }
+        for (Map.Entry<Integer, Long> entry : overflowSizes.entrySet()) {
+            row = formatLine(writer, row, entry.getKey(), entry.getValue(), totalAsterisks);
         }
     }
 
     /**
-     * The formatLine method assigns the number to the specified char value and
-     * outputs the input String. The primitive char type is used for a single
-     * character value.
+     * The formatLine method writes one histogram row. The row array is
+     * reused between rows and only replaced when a row does not fit.
      *
-     * @param input String to add values to.
-     * @param number  The number of values to add.
-     * @param value Value to add.
-     * @return  The input string.
+     * @param writer    ReportWriter write to file.
+     * @param row   The char array to build the row in.
+     * @param size  The token length.
+     * @param count The number of tokens with that length.
+     * @param totalAsterisks    The number of tokens per asterisk.
+     * @return  The row array, to be passed in for the next row.
      */
-    private String formatLine(String input, int number, char value) {
-          //char[] array with dimension
-          char[] charArray = new char[number];
-          //The Arrays.fill(char[] a, char val) method assigns the 
-          //specified char value to each element of the specified array of chars
-          Arrays.fill(charArray, value);         
-          input += new String(charArray); 
-          return input;
+    private char[] formatLine(ReportWriter writer, char[] row, int size, long count,
+            double totalAsterisks) throws IOException {
+        final int TAB = 4;
+        String key = Integer.toString(size);
+        int number = (int) Math.ceil(count / totalAsterisks);
+        int keyWidth = Math.max(TAB, key.length());
+        int length = keyWidth + number;
+        if (length > row.length) {
+            row = new char[length];
+        }
+        key.getChars(0, key.length(), row, 0);
+        Arrays.fill(row, key.length(), keyWidth, ' ');
+        Arrays.fill(row, keyWidth, length, '*');
+        writer.write(row, 0, length);
+        writer.println();
+        return row;
     }
  }
@@ -0,0 +1,309 @@
+package java112.analyzer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The TokenTable class is an open addressing hash table that gives each
+ * distinct token a dense int id, starting at 0 in the order the tokens were
+ * first added. Callers keep their per token values in primitive arrays
+ * indexed by id. The slots hold id + 1, so 0 marks an empty slot, and the
+ * token hashes are kept so the table can grow without rehashing Strings.
+ * With a TokenArena the run uses an OffHeapTokenTable instead, which keeps
+ * the tokens outside the heap.
+ *
+ *@author   April Albaugh
+ */
+
+public class TokenTable {
+
+    public static final int INITIAL_CAPACITY = 1024;
+
+    private int[] slots;
+    private int mask;
+    private String[] tokens;
+    private int[] hashes;
+    private int size;
+    private int[] sortedIds;
+
+    /**
+     * Constructor for the TokenTable object
+     */
+    public TokenTable() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructor for a TokenTable with room for a number of tokens
+     *
+     *@param capacity   the number of tokens before the table grows
+     */
+    TokenTable(int capacity) {
+        slots = new int[capacity * 2];
+        mask = slots.length - 1;
+        tokens = new String[capacity];
+        hashes = new int[capacity];
+    }
+
+    /**
+     * The forArena method creates a table for a run
+     *
+     *@param arena  the run's off-heap memory, or null to keep the tokens on
+     *      the heap
+     *@return   the table
+     */
+    public static TokenTable forArena(TokenArena arena) {
+        return arena == null ? new TokenTable() : new OffHeapTokenTable(arena);
+    }
+
+    /**
+     * Gets the size attribute, the number of distinct tokens
+     *
+     *@return   The size value
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The getToken method returns the token for an id
+     *
+     *@param id the token id
+     *@return   the token
+     */
+    public String getToken(int id) {
+        return tokens[id];
+    }
+
+    /**
+     * The find method looks up the id of a token
+     *
+     *@param token  the token to find
+     *@return   the token id, or -1 if the token has not been added
+     */
+    public int find(String token) {
+        int hash = mix(token.hashCode());
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (hashes[entry - 1] == hash && tokens[entry - 1].equals(token)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * The add method returns the id of a token, adding it with the next id
+     * if it is new.
+     *
+     *@param token  the token to add
+     *@return   the token id
+     */
+    public int add(String token) {
+        int hash = mix(token.hashCode());
+        int slot = hash & mask;
+        for (int entry = slots[slot]; entry != 0; entry = slots[slot]) {
+            if (hashes[entry - 1] == hash && tokens[entry - 1].equals(token)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return insert(token, hash, slot);
+    }
+
+    /**
+     * The add method returns the id of a token held as ASCII bytes, adding
+     * it with the next id if it is new. The bytes are hashed the same way as
+     * String.hashCode and compared in place, so a String is only created for
+     * a new token.
+     *
+     *@param data   the array holding the token
+     *@param start  the offset of the token
+     *@param length the number of bytes in the token
+     *@return   the token id
+     */
+    public int add(byte[] data, int start, int length) {
+        int hashCode = 0;
+        for (int index = start; index < start + length; index++) {
+            hashCode = 31 * hashCode + (data[index] & 0xFF);
+        }
+        int hash = mix(hashCode);
+        int slot = hash & mask;
+        for (int entry = slots[slot]; entry != 0; entry = slots[slot]) {
+            if (hashes[entry - 1] == hash && matches(tokens[entry - 1], data, start, length)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return insert(new String(data, start, length, StandardCharsets.ISO_8859_1), hash, slot);
+    }
+
+    /**
+     * The find method looks up the id of a token held as ASCII bytes
+     * without adding it
+     *
+     *@param data   the array holding the token
+     *@param start  the offset of the token
+     *@param length the number of bytes in the token
+     *@return   the token id, or -1 if the token has not been added
+     */
+    public int find(byte[] data, int start, int length) {
+        int hashCode = 0;
+        for (int index = start; index < start + length; index++) {
+            hashCode = 31 * hashCode + (data[index] & 0xFF);
+        }
+        int hash = mix(hashCode);
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (hashes[entry - 1] == hash && matches(tokens[entry - 1], data, start, length)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * The matches method compares a token with ASCII bytes
+     *
+     *@param token  the stored token
+     *@param data   the array holding the bytes
+     *@param start  the offset of the bytes
+     *@param length the number of bytes
+     *@return   true if the token has the same characters
+     */
+    private static boolean matches(String token, byte[] data, int start, int length) {
+        if (token.length() != length) {
+            return false;
+        }
+        for (int index = 0; index < length; index++) {
+            if (token.charAt(index) != (data[start + index] & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The insert method gives a new token the next id and stores it in the
+     * empty slot found by the probe.
+     *
+     *@param token  the new token
+     *@param hash   the mixed hash of the token
+     *@param slot   the empty slot
+     *@return   the token id
+     */
+    private int insert(String token, int hash, int slot) {
+        if (size == tokens.length) {
+            tokens = Arrays.copyOf(tokens, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        tokens[id] = token;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * The sortedIds method returns the ids in alphabetical order of their
+     * tokens, the same order as a TreeMap of the tokens. The order is kept
+     * until another token is added, so analyzers sharing the table sort it
+     * only once. The returned array must not be changed.
+     *
+     *@return   the sorted ids
+     */
+    public synchronized int[] sortedIds() {
+        int size = size();
+        if (sortedIds != null && sortedIds.length == size) {
+            return sortedIds;
+        }
+        int[] ids = new int[size];
+        for (int id = 0; id < size; id++) {
+            ids[id] = id;
+        }
+        mergeSort(ids, new int[size], 0, size);
+        sortedIds = ids;
+        return ids;
+    }
+
+    /**
+     * The mergeSort method sorts a range of ids by token without boxing
+     *
+     *@param ids    the ids to sort
+     *@param work   scratch space the same size as ids
+     *@param from   first index to sort
+     *@param to     one past the last index to sort
+     */
+    private void mergeSort(int[] ids, int[] work, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(ids, work, from, middle);
+        mergeSort(ids, work, middle, to);
+        if (compareIds(ids[middle - 1], ids[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(ids, from, work, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int index = from; index < to; index++) {
+            if (right >= to || (left < middle
+                    && compareIds(work[left], work[right]) <= 0)) {
+                ids[index] = work[left++];
+            } else {
+                ids[index] = work[right++];
+            }
+        }
+    }
+
+    /**
+     * The compareIds method compares the tokens of two ids in alphabetical
+     * order
+     *
+     *@param first  the first id
+     *@param second the second id
+     *@return   less than, equal to or greater than 0 as the first token
+     *      sorts before, with or after the second
+     */
+    int compareIds(int first, int second) {
+        return tokens[first].compareTo(tokens[second]);
+    }
+
+    /**
+     * The rehash method doubles the slot array and reinserts every id
+     */
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    /**
+     * The mix method spreads the bits of a String hash code so that similar
+     * tokens do not cluster in neighbouring slots.
+     *
+     *@param hash   the String hash code
+     *@return   the mixed hash
+     */
+    static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+}
@@ -1,26 +1,50 @@
 package java112.analyzer;
 
 import java.io.*;
+import java.nio.file.NoSuchFileException;
 import java.util.*;
 
 /**
  * The UniqueTokenAnalyzer class implements the Analyzer interface and
- * creates a report of all unique tokens.
+ * creates a report of all unique tokens. Tokens are stored once in a
+ * TokenTable, which can be shared with the other analyzers of the run, and
+ * the analyzer only keeps a BitSet of the token ids it has seen. With
+ * cardinality.mode=estimate no tokens are kept at all: a HyperLogLog sketch
+ * estimates how many distinct tokens there were, and the report holds only
+ * that count.
+ *
+ * With spill.threshold.tokens set the tokens are kept in the analyzer's own
+ * TokenTable, which an ExternalSorter writes to a sorted run on disk
+ * whenever it holds that many tokens. The runs are merged into the same
+ * report when it is written.
+ *
+ * With output.binary=true the tokens, or the sketch, are also written as a
+ * binary report that BinaryReportMerger can read back.
  *
  *@author   April Albaugh
  */
 
-public class UniqueTokenAnalyzer implements Analyzer {
+public class UniqueTokenAnalyzer implements MergeableAnalyzer<UniqueTokenAnalyzer>,
+        TokenIdAnalyzer, BinaryStateAnalyzer {
+
+    private static final int DICTIONARY = 0;
+    private static final int SKETCH = 1;
 
     private Properties properties;
 
-    private Set<String> uniqueTokensList;
+    private TokenTable tokenTable;
+    private BitSet uniqueTokenIds;
+    private HyperLogLog tokenSketch;
+    private ExternalSorter sorter;
+    private int spillThreshold;
 
     /**
-     * Constructor for the UniqueTokenAnalyzer object. Instantiates a TreeSet.
+     * Constructor for the UniqueTokenAnalyzer object. Instantiates a
+     * TokenTable and a BitSet.
      */
     public UniqueTokenAnalyzer() { 
-        uniqueTokensList = new TreeSet<String>();
+        tokenTable = new TokenTable();
+        uniqueTokenIds = new BitSet();
     }
 
     /**
@@ -31,27 +55,245 @@ public class UniqueTokenAnalyzer implements Analyzer {
     public UniqueTokenAnalyzer(Properties properties) {
         this();
         this.properties = properties;
+        if ("estimate".equals(properties.getProperty("cardinality.mode"))) {
+            tokenSketch = new HyperLogLog(Integer.parseInt(properties.getProperty(
+                    "cardinality.precision", String.valueOf(HyperLogLog.DEFAULT_PRECISION))));
+        } else {
+            sorter = ExternalSorter.forProperties(properties);
+            spillThreshold = ExternalSorter.getThreshold(properties);
+        }
+    }
+
+    /**
+     * Gets the tokenSketch attribute, the distinct token sketch or null when
+     * the tokens themselves are kept
+     *
+     *@return   The tokenSketch value
+     */
+    public HyperLogLog getTokenSketch() {
+        return tokenSketch;
+    }
+
+    /**
+     * The usesTokenIds method returns false in estimate mode, where the
+     * tokens are only hashed, and when spilling, where the analyzer keeps
+     * its own table.
+     *
+     *@return   whether the analyzer needs token ids
+     */
+    public boolean usesTokenIds() {
+        return tokenSketch == null && sorter == null;
     }
 
     /**
-     * Gets the uniqueTokensList attribute
+     * Gets the uniqueTokensList attribute, a sorted read only set of the
+     * unique tokens. When spilling, only the tokens not yet written to a run
+     * are included.
      *
      *@return   The uniqueTokensList value
      */  
-    public Set getUniqueTokensList() {
-        return uniqueTokensList;
+    public Set<String> getUniqueTokensList() {
+        SortedSet<String> uniqueTokensList = new TreeSet<String>();
+        for (int id = uniqueTokenIds.nextSetBit(0); id >= 0;
+                id = uniqueTokenIds.nextSetBit(id + 1)) {
+            uniqueTokensList.add(tokenTable.getToken(id));
+        }
+        return Collections.unmodifiableSortedSet(uniqueTokensList);
+    }
+
+    /**
+     * The setTokenTable method replaces the analyzer's own table with the
+     * table shared by the run. When spilling the analyzer keeps its own
+     * table, which it empties after each run.
+     *
+     *@param tokenTable the shared token table
+     */
+    public void setTokenTable(TokenTable tokenTable) {
+        if (sorter == null) {
+            this.tokenTable = tokenTable;
+        }
     }
 
     /**
      * The processToken method receives String token and adds it
-     * to the TreeSet.
+     * to the TokenTable.
      *
      *@param token  The token value from the input file
      */ 
     public void processToken(String token) {
-        uniqueTokensList.add(token);
+        if (tokenSketch != null) {
+            tokenSketch.add(token);
+            return;
+        }
+        uniqueTokenIds.set(tokenTable.add(token));
+        if (sorter != null) {
+            spillIfFull();
+        }
     } 
 
+    /**
+     * The processTokenId method marks the token id as seen
+     *
+     *@param id     The token id in the TokenTable
+     *@param token  The token value from the input file
+     */
+    public void processTokenId(int id, String token) {
+        if (tokenSketch != null) {
+            tokenSketch.add(token);
+            return;
+        }
+        if (sorter != null) {
+            processToken(token);
+            return;
+        }
+        uniqueTokenIds.set(id);
+    }
+
+    /**
+     * The isFusible method tests if a FusedKernel can mark the ids for the
+     * analyzer, which it can when the analyzer uses the shared table
+     *
+     *@return   true when the token ids are used
+     */
+    boolean isFusible() {
+        return usesTokenIds();
+    }
+
+    /**
+     * Gets the uniqueTokenIds attribute, the ids a FusedKernel marks
+     *
+     *@return   The uniqueTokenIds value
+     */
+    BitSet getUniqueTokenIds() {
+        return uniqueTokenIds;
+    }
+
+    /**
+     * The processTokens method marks the ids of a batch as seen. A batch
+     * with ids from another table is processed token by token.
+     *
+     *@param batch  tokens from the input file
+     */
+    public void processTokens(TokenBatch batch) {
+        if (tokenSketch != null) {
+            for (int index = 0; index < batch.size(); index++) {
+                tokenSketch.add(batch.getData(), batch.getStart(index), batch.getLength(index));
+            }
+            return;
+        }
+        if (sorter != null) {
+            byte[] data = batch.getData();
+            for (int index = 0; index < batch.size(); index++) {
+                uniqueTokenIds.set(tokenTable.add(data, batch.getStart(index),
+                        batch.getLength(index)));
+            }
+            spillIfFull();
+            return;
+        }
+        if (batch.getTokenTable() != tokenTable) {
+            TokenIdAnalyzer.super.processTokens(batch);
+            return;
+        }
+        for (int index = 0; index < batch.size(); index++) {
+            uniqueTokenIds.set(batch.getId(index));
+        }
+    }
+
+    /**
+     * The spillIfFull method writes the table to a run once it holds
+     * spill.threshold.tokens tokens, and starts an empty one.
+     */
+    private void spillIfFull() {
+        if (tokenTable.size() >= spillThreshold) {
+            spill();
+        }
+    }
+
+    /**
+     * The spill method writes the table to a run and starts an empty one.
+     * Every token in the analyzer's own table has been seen.
+     */
+    private void spill() {
+        try {
+            sorter.writeRun(tokenTable, null);
+        } catch (IOException ioEx) {
+            throw new UncheckedIOException(ioEx);
+        }
+        tokenTable = new TokenTable();
+        uniqueTokenIds = new BitSet();
+    }
+
+    /**
+     * The merge method adds the unique tokens of another UniqueTokenAnalyzer
+     *
+     *@param other  UniqueTokenAnalyzer for the next part of the input
+     */
+    public void merge(UniqueTokenAnalyzer other) {
+        if (tokenSketch != null && other.tokenSketch != null) {
+            tokenSketch.merge(other.tokenSketch);
+            return;
+        }
+        if (tokenSketch != null) {
+            for (int id = other.uniqueTokenIds.nextSetBit(0); id >= 0;
+                    id = other.uniqueTokenIds.nextSetBit(id + 1)) {
+                tokenSketch.add(other.tokenTable.getToken(id));
+            }
+            return;
+        }
+        if (other.tokenSketch != null) {
+            throw new IllegalArgumentException(
+                    "Can not merge an estimated token count into a token list");
+        }
+        if (other.tokenTable == tokenTable) {
+            uniqueTokenIds.or(other.uniqueTokenIds);
+            return;
+        }
+        for (int id = other.uniqueTokenIds.nextSetBit(0); id >= 0;
+                id = other.uniqueTokenIds.nextSetBit(id + 1)) {
+            uniqueTokenIds.set(tokenTable.add(other.tokenTable.getToken(id)));
+        }
+        if (sorter != null) {
+            sorter.addRuns(other.sorter);
+            spillIfFull();
+        }
+    }
+
+    /**
+     * The close method deletes the spilled runs that were not merged into
+     * the report
+     */
+    public void close() {
+        if (sorter != null) {
+            sorter.close();
+        }
+    }
+
+    /**
+     * Gets the reportProperty attribute
+     *
+     *@return   The property naming the unique token report
+     */
+    public String getReportProperty() {
+        return "output.file.unique";
+    }
+
+    /**
+     * The readState method adds the tokens of a binary report. A report of
+     * an estimate replaces the analyzer's sketch.
+     *
+     *@param input  the binary report
+     *@exception IOException  if the report can not be read
+     */
+    public void readState(BinaryReportInput input) throws IOException {
+        if (input.readByte() == SKETCH) {
+            tokenSketch = HyperLogLog.fromBytes(input.readBytes());
+            return;
+        }
+        for (String token = input.readToken(); token != null; token = input.readToken()) {
+            processToken(token);
+        }
+    }
+
     /**
      * The writeOutputFile method creates the summary report
      *
@@ -60,14 +302,42 @@ public class UniqueTokenAnalyzer implements Analyzer {
     public void writeOutputFile(String inputFilePath) {
         String outputFilePath = properties.getProperty("output.dir")
                  + properties.getProperty("output.file.unique");
-        try (PrintWriter out = 
-                new PrintWriter(new BufferedWriter(new FileWriter(outputFilePath)))) {
-            for (String tokenWriter : uniqueTokensList) {
-                out.println(tokenWriter);
+        try (ReportWriter out = ReportWriter.open(properties, outputFilePath);
+                BinaryReportOutput binary =
+                        BinaryReportOutput.open(properties, this, inputFilePath)) {
+            if (tokenSketch != null) {
+                out.println("Distinct Token Count (estimated): " + tokenSketch.estimate());
+                if (binary != null) {
+                    binary.writeByte(SKETCH);
+                    binary.writeBytes(tokenSketch.toBytes());
+                }
+                return;
+            }
+            if (binary != null) {
+                binary.writeByte(DICTIONARY);
+            }
+            ExternalSorter.EntryConsumer writeToken = (token, count) -> {
+                out.println(token);
+                if (binary != null) {
+                    binary.writeToken(token);
+                }
+            };
+            if (sorter != null && sorter.getRunCount() > 0) {
+                spill();
+                sorter.merge(writeToken);
+            } else {
+                for (int id : tokenTable.sortedIds()) {
+                    if (uniqueTokenIds.get(id)) {
+                        writeToken.accept(tokenTable.getToken(id), 1);
+                    }
+                }
+            }
+            if (binary != null) {
+                binary.endDictionary();
             }
-        } catch (FileNotFoundException fileNotFoundEx) {
+        } catch (NoSuchFileException noSuchFileEx) {
             System.out.println("Could not find file");
-            fileNotFoundEx.printStackTrace();
+            noSuchFileEx.printStackTrace();
         } catch (IOException ioEx) {
             System.out.println("Could not read the file");
             ioEx.printStackTrace();
@@ -0,0 +1,65 @@
+package java112.analyzer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The AnalyzerBenchmark class measures each Analyzer on its own. The
+ * processTokens benchmark passes the tokenized corpus to a new analyzer, so
+ * it measures the analyzer without the tokenizer. The writeOutputFile
+ * benchmark writes the report of an analyzer that has already processed
+ * the corpus.
+ *
+ *@author   April Albaugh
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalyzerBenchmark {
+
+    @Param({"summary", "unique", "bigwords", "tokencount", "tokensize", "keyword"})
+    public String analyzerName;
+
+    private Analyzer filledAnalyzer;
+
+    /**
+     * The setUp method fills the analyzer used by the writeOutputFile
+     * benchmark
+     *
+     *@param corpus the corpus
+     */
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkCorpus corpus) {
+        filledAnalyzer = corpus.analyze(corpus.createAnalyzer(analyzerName));
+    }
+
+    /**
+     * The processTokens method passes the whole corpus to a new analyzer
+     *
+     *@param corpus     the corpus
+     *@param counters   the throughput counters
+     *@return   the analyzer, so the work is not removed
+     */
+    @Benchmark
+    public Analyzer processTokens(BenchmarkCorpus corpus, ThroughputCounters counters) {
+        Analyzer analyzer = corpus.analyze(corpus.createAnalyzer(analyzerName));
+        counters.add(corpus);
+        return analyzer;
+    }
+
+    /**
+     * The writeOutputFile method writes the report of the filled analyzer
+     *
+     *@param corpus     the corpus
+     */
+    @Benchmark
+    public void writeOutputFile(BenchmarkCorpus corpus) {
+        filledAnalyzer.writeOutputFile(corpus.getCorpusPath());
+    }
+
+}
@@ -0,0 +1,217 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The BenchmarkCorpus class is the shared state of the benchmarks. For each
+ * combination of parameters it writes a corpus with the CorpusGenerator, a
+ * keyword file and an output directory to a temporary directory, and builds
+ * the properties a run would load. The corpus is also tokenized once into
+ * batches, so the analyzer benchmarks measure the analyzers only.
+ *
+ *@author   April Albaugh
+ */
+
+@State(Scope.Benchmark)
+public class BenchmarkCorpus {
+
+    public static final String[] ANALYZERS = {"summary", "unique", "bigwords", "tokencount",
+            "tokensize", "keyword"};
+
+    @Param({"16"})
+    public int megabytes;
+
+    @Param({"50000"})
+    public int vocabularySize;
+
+    @Param({"6.0"})
+    public double meanTokenLength;
+
+    @Param({"0.02"})
+    public double keywordDensity;
+
+    private Path directory;
+    private Path corpusPath;
+    private Properties properties;
+    private KeywordMatcher keywordMatcher;
+    private List<TokenBatch> batches;
+    private long tokenCount;
+    private long byteCount;
+
+    /**
+     * The setUp method writes the corpus and tokenizes it
+     *
+     *@exception IOException  if the files can not be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("analyzer-benchmark");
+        corpusPath = directory.resolve("corpus.txt");
+        Path keywordPath = directory.resolve("keywords.txt");
+        Path outputDirectory = Files.createDirectories(directory.resolve("output"));
+
+        CorpusGenerator generator = new CorpusGenerator(CorpusGenerator.DEFAULT_SEED,
+                vocabularySize, meanTokenLength, keywordDensity,
+                Arrays.asList(CorpusGenerator.DEFAULT_KEYWORDS));
+        generator.write(corpusPath, (long) megabytes << 20);
+        generator.writeKeywords(keywordPath);
+        byteCount = Files.size(corpusPath);
+
+        properties = new Properties();
+        properties.setProperty("application.name", "Benchmark");
+        properties.setProperty("author", "Benchmark");
+        properties.setProperty("author.email.address", "benchmark@localhost");
+        properties.setProperty("output.dir", outputDirectory + File.separator);
+        properties.setProperty("output.file.summary", "summary.txt");
+        properties.setProperty("output.file.unique", "unique_tokens.txt");
+        properties.setProperty("output.file.bigwords", "big_words.txt");
+        properties.setProperty("output.file.token.count", "token_count.txt");
+        properties.setProperty("output.file.token.size", "token_size.txt");
+        properties.setProperty("output.file.keyword", "keyword.txt");
+        properties.setProperty("bigwords.minimum.length", "14");
+        properties.setProperty("file.path.keywords", keywordPath.toString());
+        keywordMatcher = new KeywordMatcher(KeywordAnalyzer.readKeywords(properties));
+
+        batches = new ArrayList<TokenBatch>();
+        new MappedFileTokenizer(corpusPath.toString()).tokenize(new TokenBatch(),
+                batch -> batches.add(copy(batch)));
+        tokenCount = batches.stream().mapToLong(TokenBatch::size).sum();
+    }
+
+    /**
+     * The tearDown method deletes the temporary directory
+     *
+     *@exception IOException  if a file can not be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * The copy method copies a batch, since the tokenizer reuses its batch
+     *
+     *@param batch  the batch to copy
+     *@return   the copy
+     */
+    private static TokenBatch copy(TokenBatch batch) {
+        TokenBatch copy = new TokenBatch();
+        ByteBuffer data = ByteBuffer.wrap(batch.getData());
+        for (int index = 0; index < batch.size(); index++) {
+            copy.add(data, batch.getStart(index), batch.getLength(index));
+        }
+        return copy;
+    }
+
+    /**
+     * The createAnalyzer method creates one analyzer by name
+     *
+     *@param name   one of the ANALYZERS names
+     *@return   the analyzer
+     */
+    public Analyzer createAnalyzer(String name) {
+        switch (name) {
+            case "summary":
+                return new SummaryReport(properties);
+            case "unique":
+                return new UniqueTokenAnalyzer(properties);
+            case "bigwords":
+                return new BigWordAnalyzer(properties);
+            case "tokencount":
+                return new TokenCountAnalyzer(properties);
+            case "tokensize":
+                return new TokenSizeAnalyzer(properties);
+            case "keyword":
+                return new KeywordAnalyzer(properties, keywordMatcher);
+            default:
+                throw new IllegalArgumentException("Unknown analyzer: " + name);
+        }
+    }
+
+    /**
+     * The analyze method passes every batch of the corpus to one analyzer
+     * through a TokenDispatcher, as a run does
+     *
+     *@param analyzer   the analyzer
+     *@return   the analyzer
+     */
+    public Analyzer analyze(Analyzer analyzer) {
+        analyze(Collections.singletonList(analyzer), false);
+        return analyzer;
+    }
+
+    /**
+     * The analyze method passes every batch of the corpus to a set of
+     * analyzers through one TokenDispatcher
+     *
+     *@param analyzers  the analyzers
+     *@param fusion     true to run the analyzers that can share a
+     *      FusedKernel in one loop
+     *@return   the analyzers
+     */
+    public List<Analyzer> analyze(List<Analyzer> analyzers, boolean fusion) {
+        TokenDispatcher dispatcher = new TokenDispatcher(analyzers, fusion);
+        for (TokenBatch batch : batches) {
+            dispatcher.dispatch(batch);
+        }
+        return analyzers;
+    }
+
+    /**
+     * Gets the corpusPath attribute
+     *
+     *@return   The corpusPath value
+     */
+    public String getCorpusPath() {
+        return corpusPath.toString();
+    }
+
+    /**
+     * Gets the properties attribute, a copy the caller may change
+     *
+     *@return   The properties value
+     */
+    public Properties getProperties() {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        return copy;
+    }
+
+    /**
+     * Gets the batches attribute, the tokenized corpus
+     *
+     *@return   The batches value, read only
+     */
+    public List<TokenBatch> getBatches() {
+        return Collections.unmodifiableList(batches);
+    }
+
+    /**
+     * Gets the tokenCount attribute
+     *
+     *@return   The number of tokens in the corpus
+     */
+    public long getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Gets the byteCount attribute
+     *
+     *@return   The size of the corpus in bytes
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+}
@@ -0,0 +1,41 @@
+package java112.analyzer;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+/**
+ * The BenchmarkRunner class runs the benchmarks with the gc profiler, which
+ * adds the allocation rate and bytes allocated per operation to the results.
+ * The benchmark classes are compiled together with the analyzer classes,
+ * with jmh-core and the jmh-generator-annprocess annotation processor on the
+ * classpath. For example:
+ *
+ *   java java112.analyzer.BenchmarkRunner Analyzer -p megabytes=64
+ *
+ * The first argument is a regular expression selecting benchmarks, and the
+ * rest are passed to JMH. Without arguments every benchmark runs.
+ *
+ *@author   April Albaugh
+ */
+
+public class BenchmarkRunner {
+
+    /**
+     * The main method runs the selected benchmarks
+     *
+     *@param args   benchmark pattern followed by JMH options
+     *@exception Exception  if the benchmarks can not be run
+     */
+    public static void main(String[] args) throws Exception {
+        String[] jmhArgs = new String[Math.max(0, args.length - 1)];
+        System.arraycopy(args, Math.min(1, args.length), jmhArgs, 0, jmhArgs.length);
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(jmhArgs))
+                .include(args.length > 0 ? args[0] : ".*Benchmark.*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,223 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * The CorpusGenerator class writes synthetic input files for the
+ * benchmarks. The same seed and settings always give the same file. The
+ * vocabulary has a fixed number of words whose lengths follow a geometric
+ * distribution around the mean token length, and words are drawn with Zipf
+ * frequencies, so a few words are very common as in real text. Each token
+ * is a keyword instead with the keyword density probability. Tokens are
+ * separated by spaces and punctuation, with a line break every few tokens.
+ *
+ *@author   April Albaugh
+ */
+
+public class CorpusGenerator {
+
+    public static final long DEFAULT_SEED = 112L;
+    public static final int DEFAULT_VOCABULARY_SIZE = 50000;
+    public static final double DEFAULT_MEAN_TOKEN_LENGTH = 6.0;
+    public static final double DEFAULT_KEYWORD_DENSITY = 0.02;
+    public static final int MAXIMUM_TOKEN_LENGTH = 40;
+    public static final int TOKENS_PER_LINE = 12;
+
+    public static final String[] DEFAULT_KEYWORDS = {"the", "of", "and", "a", "void",
+            "public", "class", "return", "static", "private", "import", "package"};
+
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+    private static final String WORD_CHARACTERS = LETTERS + LETTERS.toUpperCase() + "0123456789_";
+    private static final byte[] NEW_LINE = {'\n'};
+    private static final String[] SEPARATORS = {" ", " ", " ", " ", ", ", ". ", " - ", "; "};
+
+    private long seed;
+    private String[] vocabulary;
+    private double[] cumulativeFrequency;
+    private List<String> keywords;
+    private double keywordDensity;
+
+    /**
+     * Constructor for the CorpusGenerator object with the default settings
+     */
+    public CorpusGenerator() {
+        this(DEFAULT_SEED, DEFAULT_VOCABULARY_SIZE, DEFAULT_MEAN_TOKEN_LENGTH,
+                DEFAULT_KEYWORD_DENSITY, Arrays.asList(DEFAULT_KEYWORDS));
+    }
+
+    /**
+     * Constructor for the CorpusGenerator object
+     *
+     *@param seed               the random seed
+     *@param vocabularySize     the number of distinct words
+     *@param meanTokenLength    the mean word length
+     *@param keywordDensity     the share of tokens that are keywords
+     *@param keywords           the keywords
+     */
+    public CorpusGenerator(long seed, int vocabularySize, double meanTokenLength,
+            double keywordDensity, List<String> keywords) {
+        this.seed = seed;
+        this.keywordDensity = keywordDensity;
+        this.keywords = new ArrayList<String>(keywords);
+        SplittableRandom random = new SplittableRandom(seed);
+        vocabulary = new String[vocabularySize];
+        cumulativeFrequency = new double[vocabularySize];
+        double total = 0;
+        for (int rank = 0; rank < vocabularySize; rank++) {
+            vocabulary[rank] = createWord(random, meanTokenLength);
+            total += 1.0 / (rank + 1);
+            cumulativeFrequency[rank] = total;
+        }
+        for (int rank = 0; rank < vocabularySize; rank++) {
+            cumulativeFrequency[rank] /= total;
+        }
+    }
+
+    /**
+     * Gets the keywords attribute
+     *
+     *@return   The keywords value
+     */
+    public List<String> getKeywords() {
+        return Collections.unmodifiableList(keywords);
+    }
+
+    /**
+     * The createWord method creates a random word. The length is geometric
+     * with the given mean, from 1 to MAXIMUM_TOKEN_LENGTH.
+     *
+     *@param random             the random source
+     *@param meanTokenLength    the mean word length
+     *@return   the word
+     */
+    private static String createWord(SplittableRandom random, double meanTokenLength) {
+        double stop = 1.0 / Math.max(1.0, meanTokenLength);
+        int length = 1;
+        while (length < MAXIMUM_TOKEN_LENGTH && random.nextDouble() >= stop) {
+            length++;
+        }
+        StringBuilder word = new StringBuilder(length);
+        for (int index = 0; index < length; index++) {
+            String characters = random.nextInt(10) == 0 ? WORD_CHARACTERS : LETTERS;
+            word.append(characters.charAt(random.nextInt(characters.length())));
+        }
+        return word.toString();
+    }
+
+    /**
+     * The nextToken method draws the next token
+     *
+     *@param random the random source
+     *@return   the token
+     */
+    private String nextToken(SplittableRandom random) {
+        if (!keywords.isEmpty() && random.nextDouble() < keywordDensity) {
+            return keywords.get(random.nextInt(keywords.size()));
+        }
+        int rank = Arrays.binarySearch(cumulativeFrequency, random.nextDouble());
+        rank = rank >= 0 ? rank : Math.min(-rank - 1, vocabulary.length - 1);
+        return vocabulary[rank];
+    }
+
+    /**
+     * The generate method returns a corpus of about the given size
+     *
+     *@param bytes  the size of the corpus
+     *@return   the corpus bytes
+     */
+    public byte[] generate(int bytes) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(bytes + MAXIMUM_TOKEN_LENGTH);
+        try {
+            write(output, bytes);
+        } catch (IOException ioEx) {
+            throw new UncheckedIOException(ioEx);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * The write method writes a corpus of about the given size to a file
+     *
+     *@param path   the file to write
+     *@param bytes  the size of the corpus
+     *@exception IOException  if the file can not be written
+     */
+    public void write(Path path, long bytes) throws IOException {
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+            write(output, bytes);
+        }
+    }
+
+    /**
+     * The write method writes lines of tokens until the size is reached
+     *
+     *@param output the stream to write to
+     *@param bytes  the size of the corpus
+     *@exception IOException  if the stream can not be written
+     */
+    private void write(OutputStream output, long bytes) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed + 1);
+        long written = 0;
+        int tokensOnLine = 0;
+        while (written < bytes) {
+            byte[] token = nextToken(random).getBytes(StandardCharsets.ISO_8859_1);
+            output.write(token);
+            written += token.length;
+            byte[] separator;
+            if (++tokensOnLine == TOKENS_PER_LINE) {
+                separator = NEW_LINE;
+                tokensOnLine = 0;
+            } else {
+                separator = SEPARATORS[random.nextInt(SEPARATORS.length)]
+                        .getBytes(StandardCharsets.ISO_8859_1);
+            }
+            output.write(separator);
+            written += separator.length;
+        }
+    }
+
+    /**
+     * The writeKeywords method writes the keywords in the format of the
+     * file.path.keywords file
+     *
+     *@param path   the file to write
+     *@exception IOException  if the file can not be written
+     */
+    public void writeKeywords(Path path) throws IOException {
+        Files.write(path, Collections.singletonList(String.join(", ", keywords)),
+                StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * The main method writes a corpus file
+     *
+     *@param args   output file, megabytes, [vocabulary size, mean token
+     *              length, keyword density, seed]
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Please enter an output file and a size in megabytes, "
+                    + "optionally followed by vocabulary size, mean token length, "
+                    + "keyword density and seed");
+            return;
+        }
+        int vocabularySize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_VOCABULARY_SIZE;
+        double meanTokenLength = args.length > 3 ? Double.parseDouble(args[3])
+                : DEFAULT_MEAN_TOKEN_LENGTH;
+        double keywordDensity = args.length > 4 ? Double.parseDouble(args[4])
+                : DEFAULT_KEYWORD_DENSITY;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : DEFAULT_SEED;
+        CorpusGenerator generator = new CorpusGenerator(seed, vocabularySize, meanTokenLength,
+                keywordDensity, Arrays.asList(DEFAULT_KEYWORDS));
+        try {
+            generator.write(Paths.get(args[0]), (long) (Double.parseDouble(args[1]) * (1 << 20)));
+        } catch (IOException ioEx) {
+            System.out.println("Could not write the file");
+            ioEx.printStackTrace();
+        }
+    }
+
+}
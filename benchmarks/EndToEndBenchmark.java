@@ -0,0 +1,61 @@
+package java112.analyzer;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The EndToEndBenchmark class measures a whole run in each analysis mode:
+ * compiling the keywords, tokenizing, running every analyzer and writing
+ * every report, the same steps as AnalyzeFile.runAnalysis after the
+ * properties are loaded.
+ *
+ *@author   April Albaugh
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+
+    @Param({"mapped", "parallel", "pipeline", "reference"})
+    public String mode;
+
+    private Properties properties;
+
+    /**
+     * The setUp method sets the properties for the mode
+     *
+     *@param corpus the corpus
+     */
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkCorpus corpus) {
+        properties = corpus.getProperties();
+        if ("parallel".equals(mode) || "pipeline".equals(mode)) {
+            properties.setProperty("analysis.mode", mode);
+        } else if ("reference".equals(mode)) {
+            properties.setProperty("tokenizer.mode", "reference");
+        }
+    }
+
+    /**
+     * The runAnalysis method analyzes the corpus and writes the reports
+     *
+     *@param corpus     the corpus
+     *@param counters   the throughput counters
+     */
+    @Benchmark
+    public void runAnalysis(BenchmarkCorpus corpus, ThroughputCounters counters) {
+        KeywordMatcher keywordMatcher =
+                new KeywordMatcher(KeywordAnalyzer.readKeywords(properties));
+        AnalyzeFile analyzeFile = new AnalyzeFile(properties, keywordMatcher);
+        analyzeFile.analyze(corpus.getCorpusPath());
+        analyzeFile.writeAllOutputFiles();
+        counters.add(corpus);
+    }
+
+}
@@ -0,0 +1,50 @@
+package java112.analyzer;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The FusedKernelBenchmark class compares the analyzers a FusedKernel can
+ * share one loop for, run by the kernel and run one after another. Both
+ * pass the tokenized corpus through a TokenDispatcher, so the token ids are
+ * looked up once either way.
+ *
+ *@author   April Albaugh
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FusedKernelBenchmark {
+
+    public static final String[] FUSIBLE_ANALYZERS = {"summary", "unique", "bigwords",
+            "tokencount", "tokensize"};
+
+    @Param({"true", "false"})
+    public boolean fusion;
+
+    /**
+     * The processTokens method passes the whole corpus to a new set of the
+     * fusible analyzers
+     *
+     *@param corpus     the corpus
+     *@param counters   the throughput counters
+     *@return   the analyzers, so the work is not removed
+     */
+    @Benchmark
+    public List<Analyzer> processTokens(BenchmarkCorpus corpus, ThroughputCounters counters) {
+        List<Analyzer> analyzers = new ArrayList<Analyzer>();
+        for (String name : FUSIBLE_ANALYZERS) {
+            analyzers.add(corpus.createAnalyzer(name));
+        }
+        corpus.analyze(analyzers, fusion);
+        counters.add(corpus);
+        return analyzers;
+    }
+
+}
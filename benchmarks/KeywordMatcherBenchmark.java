@@ -0,0 +1,133 @@
+package java112.analyzer;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The KeywordMatcherBenchmark class compares keyword lists of literals
+ * only, matched by the keyword table, with lists of globs, regular
+ * expressions or a mix, matched by a PatternAutomaton. The entries are
+ * made from the distinct tokens of the corpus, so most of them can match.
+ * The compile benchmark builds a new matcher, the matchDistinct benchmark
+ * matches every distinct token once, as a KeywordAnalyzer does with token
+ * ids, and the processTokens benchmark passes the whole corpus to a
+ * KeywordAnalyzer with the list.
+ *
+ *@author   April Albaugh
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeywordMatcherBenchmark {
+
+    public static final int PATTERN_SHARE = 10;
+
+    @Param({"10000"})
+    public int keywordCount;
+
+    @Param({"literal", "glob", "regex", "mixed"})
+    public String keywordKind;
+
+    private List<String> keywords;
+    private List<String> distinctTokens;
+    private KeywordMatcher matcher;
+
+    /**
+     * The setUp method makes the keyword list and a matcher that has
+     * already seen the corpus
+     *
+     *@param corpus the corpus
+     */
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkCorpus corpus) {
+        Set<String> tokens = new LinkedHashSet<String>();
+        for (TokenBatch batch : corpus.getBatches()) {
+            for (int index = 0; index < batch.size(); index++) {
+                tokens.add(batch.getToken(index));
+            }
+        }
+        distinctTokens = new ArrayList<String>(tokens);
+        keywords = new ArrayList<String>();
+        for (String token : distinctTokens.subList(0,
+                Math.min(keywordCount, distinctTokens.size()))) {
+            keywords.add(entry(token, keywords.size()));
+        }
+        matcher = new KeywordMatcher(keywords);
+        matchDistinct();
+    }
+
+    /**
+     * The entry method makes the keyword entry of the kind being measured
+     * from a token
+     *
+     *@param token  a token of the corpus
+     *@param index  the number of entries made so far
+     *@return   the entry
+     */
+    private String entry(String token, int index) {
+        String kind = keywordKind;
+        if ("mixed".equals(kind)) {
+            kind = index % PATTERN_SHARE != 0 ? "literal" : index % 20 == 0 ? "glob" : "regex";
+        }
+        int length = token.length();
+        switch (kind) {
+            case "glob":
+                return index % 2 == 0 ? token.substring(0, length - 1) + "?"
+                        : token.substring(0, Math.min(4, length)) + "*";
+            case "regex":
+                return "^" + token.substring(0, Math.min(2, length)) + "[a-z]{0,"
+                        + length + "}" + token.charAt(length - 1) + "$";
+            default:
+                return token;
+        }
+    }
+
+    /**
+     * The compile method builds a matcher for the keyword list
+     *
+     *@return   the matcher
+     */
+    @Benchmark
+    public KeywordMatcher compile() {
+        return new KeywordMatcher(keywords);
+    }
+
+    /**
+     * The matchDistinct method matches every distinct token of the corpus
+     *
+     *@return   the number of keyword hits
+     */
+    @Benchmark
+    public long matchDistinct() {
+        long hits = 0;
+        for (String token : distinctTokens) {
+            int match = matcher.match(token);
+            if (match >= 0) {
+                hits += matcher.getKeywordIds(match).length;
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * The processTokens method passes the whole corpus to a new
+     * KeywordAnalyzer with the keyword list
+     *
+     *@param corpus     the corpus
+     *@param counters   the throughput counters
+     *@return   the analyzer, so the work is not removed
+     */
+    @Benchmark
+    public Analyzer processTokens(BenchmarkCorpus corpus, ThroughputCounters counters) {
+        Analyzer analyzer = corpus.analyze(new KeywordAnalyzer(corpus.getProperties(), matcher));
+        counters.add(corpus);
+        return analyzer;
+    }
+
+}
@@ -0,0 +1,231 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * The LargeFileStressTest class checks the analysis of inputs past the
+ * 32 bit limits. It writes a sparse file of several gigabytes that is zero
+ * bytes except for a few tokens placed across the segment boundaries, the
+ * 2 GB mark and the 4 GB mark, so only a few kilobytes are stored on disk.
+ * The file is analyzed mapped in segments, with a small segment size and
+ * in parallel, and the token count, token sizes and keyword positions are
+ * compared with the tokens written. A batch of tokens is then passed to
+ * the analyzers until more than Integer.MAX_VALUE tokens are counted, to
+ * check that the counts and keyword positions do not wrap. It is run on
+ * its own, not by the benchmark runner:
+ *
+ *     java -cp ... java112.analyzer.LargeFileStressTest [file] [gigabytes]
+ *
+ *@author   April Albaugh
+ */
+
+public class LargeFileStressTest {
+
+    public static final long GIGABYTE = 1L << 30;
+    public static final int DEFAULT_GIGABYTES = 5;
+    public static final String KEYWORD = "keyword";
+
+    private Path path;
+    private long size;
+    private List<String> tokens;
+    private SortedMap<Long, String> placements;
+
+    /**
+     * Constructor for the LargeFileStressTest object
+     *
+     *@param path   the sparse file to write
+     *@param size   the size of the file in bytes
+     */
+    public LargeFileStressTest(Path path, long size) {
+        this.path = path;
+        this.size = size;
+        placements = new TreeMap<Long, String>();
+        place(0, "first");
+        place(Integer.MAX_VALUE - 2, KEYWORD);
+        place((2L << 30) + 10, "after");
+        if (size > (4L << 30) + 16) {
+            place((4L << 30) - 2, KEYWORD);
+        }
+        for (long boundary = GIGABYTE; boundary < size - 16; boundary += GIGABYTE) {
+            place(boundary - 3, "segment" + (boundary / GIGABYTE));
+        }
+        place(size - 4, "last");
+        tokens = new ArrayList<String>(placements.values());
+    }
+
+    /**
+     * The place method puts a token at a position, moving it past any token
+     * already placed so that two tokens never touch
+     *
+     *@param position   the first byte of the token
+     *@param token      the token
+     */
+    private void place(long position, String token) {
+        for (Map.Entry<Long, String> entry : placements.entrySet()) {
+            long end = entry.getKey() + entry.getValue().length();
+            if (position + token.length() >= entry.getKey() && position <= end) {
+                position = end + 1;
+            }
+        }
+        placements.put(position, token);
+    }
+
+    /**
+     * The write method creates the sparse file and writes each token
+     *
+     *@exception IOException  if the file can not be written
+     */
+    public void write() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(size);
+            FileChannel channel = file.getChannel();
+            for (Map.Entry<Long, String> entry : placements.entrySet()) {
+                channel.write(ByteBuffer.wrap(entry.getValue().getBytes(StandardCharsets.US_ASCII)),
+                        entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * The createAnalyzers method creates the analyzers that are checked
+     *
+     *@return   a summary, token size and keyword analyzer
+     */
+    private static List<Analyzer> createAnalyzers() {
+        List<Analyzer> analyzers = new ArrayList<Analyzer>();
+        analyzers.add(new SummaryReport());
+        analyzers.add(new TokenSizeAnalyzer());
+        analyzers.add(new KeywordAnalyzer(new Properties(),
+                new KeywordMatcher(Collections.singleton(KEYWORD))));
+        return analyzers;
+    }
+
+    /**
+     * The analyzeMapped method analyzes the file mapped in segments
+     *
+     *@param segmentSize    the size of a segment
+     *@return   the analyzers
+     *@exception IOException  if the file can not be mapped
+     */
+    public List<Analyzer> analyzeMapped(long segmentSize) throws IOException {
+        List<Analyzer> analyzers = createAnalyzers();
+        TokenDispatcher dispatcher = new TokenDispatcher(analyzers, true);
+        MappedFileTokenizer tokenizer = new MappedFileTokenizer(path.toString());
+        tokenizer.setSegmentSize(segmentSize);
+        tokenizer.tokenize(new TokenBatch(), dispatcher::dispatch);
+        return analyzers;
+    }
+
+    /**
+     * The analyzeParallel method analyzes the file in a ParallelAnalysis
+     *
+     *@param threads    number of worker threads
+     *@return   the merged analyzers
+     *@exception IOException  if the file can not be mapped
+     */
+    public List<Analyzer> analyzeParallel(int threads) throws IOException {
+        ParallelAnalysis analysis = new ParallelAnalysis(path.toString(),
+                LargeFileStressTest::createAnalyzers, threads);
+        analysis.setFusion(true);
+        return analysis.run();
+    }
+
+    /**
+     * The check method compares the analyzers with the tokens written
+     *
+     *@param name       the name of the run
+     *@param analyzers  the analyzers of the run
+     */
+    public void check(String name, List<Analyzer> analyzers) {
+        SortedMap<Integer, Long> sizes = new TreeMap<Integer, Long>();
+        List<Long> positions = new ArrayList<Long>();
+        for (int index = 0; index < tokens.size(); index++) {
+            sizes.merge(tokens.get(index).length(), 1L, Long::sum);
+            if (KEYWORD.equals(tokens.get(index))) {
+                positions.add(index + 1L);
+            }
+        }
+        expect(name + " token count", (long) tokens.size(),
+                ((SummaryReport) analyzers.get(0)).getTotalTokensCount());
+        expect(name + " token sizes", sizes,
+                ((TokenSizeAnalyzer) analyzers.get(1)).getTokenSizes());
+        expect(name + " keyword positions", positions,
+                ((KeywordAnalyzer) analyzers.get(2)).getKeywordMap().get(KEYWORD));
+        System.out.println(name + ": ok");
+    }
+
+    /**
+     * The checkCounters method passes one batch to the analyzers until more
+     * than Integer.MAX_VALUE tokens have been counted. The last token of the
+     * batch is the keyword.
+     */
+    public static void checkCounters() {
+        List<Analyzer> analyzers = createAnalyzers();
+        TokenDispatcher dispatcher = new TokenDispatcher(analyzers, true);
+        TokenBatch batch = new TokenBatch();
+        while (batch.size() < TokenBatch.DEFAULT_CAPACITY - 1) {
+            batch.add("a");
+        }
+        batch.add(KEYWORD);
+        dispatcher.assignIds(batch);
+        long batches = (Integer.MAX_VALUE / batch.size()) + 2;
+        for (long count = 0; count < batches; count++) {
+            for (int consumer = 0; consumer < dispatcher.getConsumerCount(); consumer++) {
+                dispatcher.process(consumer, batch);
+            }
+        }
+        long total = batches * batch.size();
+        expect("counter token count", total,
+                ((SummaryReport) analyzers.get(0)).getTotalTokensCount());
+        expect("counter token size", total - batches,
+                ((TokenSizeAnalyzer) analyzers.get(1)).getTokenSizes().get(1));
+        List<Long> positions = ((KeywordAnalyzer) analyzers.get(2)).getKeywordMap().get(KEYWORD);
+        expect("counter keyword hits", batches, (long) positions.size());
+        expect("counter last keyword position", total, positions.get(positions.size() - 1));
+        System.out.println("counters past " + Integer.MAX_VALUE + ": ok");
+    }
+
+    /**
+     * The expect method stops the test when a value is not the one expected
+     *
+     *@param name       what is checked
+     *@param expected   the expected value
+     *@param actual     the actual value
+     */
+    private static void expect(String name, Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(name + ": expected " + expected
+                    + " but was " + actual);
+        }
+    }
+
+    /**
+     * The main method writes the sparse file, checks every way of reading
+     * it and deletes it
+     *
+     *@param args   the file to write and its size in gigabytes, both
+     *      optional
+     *@exception IOException  if the file can not be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        Path path = args.length > 0 ? Paths.get(args[0])
+                : Files.createTempFile("large-input", ".txt");
+        long gigabytes = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_GIGABYTES;
+        LargeFileStressTest test = new LargeFileStressTest(path, gigabytes * GIGABYTE + 100);
+        try {
+            test.write();
+            test.check("mapped", test.analyzeMapped(MappedFileTokenizer.DEFAULT_SEGMENT_SIZE));
+            test.check("small segments", test.analyzeMapped(GIGABYTE / 3));
+            test.check("parallel", test.analyzeParallel(2));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+        checkCounters();
+    }
+
+}
@@ -0,0 +1,59 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The PredicatePushdownBenchmark class compares tokenizing the corpus into
+ * a set of analyzers with and without the TokenPredicate of the
+ * dispatcher. Only analyzers that read some of the tokens are measured:
+ * the summary and token sizes, which read none, the keywords, which read
+ * the keywords, and the big words, which read the long tokens.
+ *
+ *@author   April Albaugh
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PredicatePushdownBenchmark {
+
+    @Param({"summary,tokensize", "summary,tokensize,keyword", "bigwords"})
+    public String analyzerNames;
+
+    @Param({"true", "false"})
+    public boolean pushdown;
+
+    /**
+     * The tokenize method tokenizes the mapped corpus into a new set of the
+     * analyzers
+     *
+     *@param corpus     the corpus
+     *@param counters   the throughput counters
+     *@return   the analyzers, so the work is not removed
+     *@exception IOException  if the corpus can not be read
+     */
+    @Benchmark
+    public List<Analyzer> tokenize(BenchmarkCorpus corpus, ThroughputCounters counters)
+            throws IOException {
+        List<Analyzer> analyzers = new ArrayList<Analyzer>();
+        for (String name : analyzerNames.split(",")) {
+            analyzers.add(corpus.createAnalyzer(name));
+        }
+        TokenDispatcher dispatcher = new TokenDispatcher(analyzers, true);
+        MappedFileTokenizer tokenizer = new MappedFileTokenizer(corpus.getCorpusPath());
+        if (pushdown) {
+            tokenizer.setPredicate(dispatcher.getTokenPredicate());
+        }
+        tokenizer.tokenize(new TokenBatch(), dispatcher::dispatch);
+        counters.add(corpus);
+        return analyzers;
+    }
+
+}
@@ -0,0 +1,42 @@
+package java112.analyzer;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The ThroughputCounters class adds tokens per second and megabytes per
+ * second columns to a benchmark's results. A benchmark adds the size of the
+ * corpus it processed after each call, and JMH reports the public fields as
+ * rates next to the operations per second.
+ *
+ *@author   April Albaugh
+ */
+
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ThroughputCounters {
+
+    public static final double BYTES_PER_MEGABYTE = 1 << 20;
+
+    public long tokens;
+    public double megabytes;
+
+    /**
+     * The reset method clears the counters before each iteration
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+        tokens = 0;
+        megabytes = 0;
+    }
+
+    /**
+     * The add method counts one pass over the corpus
+     *
+     *@param corpus the corpus that was processed
+     */
+    public void add(BenchmarkCorpus corpus) {
+        tokens += corpus.getTokenCount();
+        megabytes += corpus.getByteCount() / BYTES_PER_MEGABYTE;
+    }
+
+}
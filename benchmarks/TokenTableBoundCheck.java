@@ -0,0 +1,212 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * The TokenTableBoundCheck class checks that the modes meant to bound
+ * memory do not fill the TokenTable shared by a run. It writes a corpus
+ * with a large vocabulary, tokenizes it into the analyzers the registry
+ * creates for each mode, as a mapped run does, and compares the number of
+ * tokens left in the shared table with the number the mode may keep. The
+ * analyzers are closed without writing their reports, as when a run
+ * fails, and a spilling mode must leave no run files behind. It is run on
+ * its own, not by the benchmark runner:
+ *
+ *     java -cp ... java112.analyzer.TokenTableBoundCheck [megabytes]
+ *
+ *@author   April Albaugh
+ */
+
+public class TokenTableBoundCheck {
+
+    public static final int DEFAULT_MEGABYTES = 4;
+    public static final int VOCABULARY_SIZE = 200000;
+    public static final int BIG_WORD_LENGTH = 14;
+    public static final int SPILL_THRESHOLD = 1000;
+
+    private Path directory;
+    private Path corpusPath;
+    private Path keywordPath;
+    private int distinctTokens;
+    private int distinctBigWords;
+
+    /**
+     * Constructor for the TokenTableBoundCheck object
+     *
+     *@param directory  the directory for the corpus and the reports
+     */
+    public TokenTableBoundCheck(Path directory) {
+        this.directory = directory;
+        corpusPath = directory.resolve("corpus.txt");
+        keywordPath = directory.resolve("keywords.txt");
+    }
+
+    /**
+     * The write method writes the corpus and the keyword file and counts
+     * the distinct tokens and big words
+     *
+     *@param megabytes  the size of the corpus
+     *@exception IOException  if a file can not be written
+     */
+    public void write(int megabytes) throws IOException {
+        CorpusGenerator generator = new CorpusGenerator(CorpusGenerator.DEFAULT_SEED,
+                VOCABULARY_SIZE, CorpusGenerator.DEFAULT_MEAN_TOKEN_LENGTH,
+                CorpusGenerator.DEFAULT_KEYWORD_DENSITY,
+                Arrays.asList(CorpusGenerator.DEFAULT_KEYWORDS));
+        generator.write(corpusPath, (long) megabytes << 20);
+        generator.writeKeywords(keywordPath);
+        TokenTable tokens = new TokenTable();
+        new MappedFileTokenizer(corpusPath.toString()).tokenize(new TokenBatch(),
+                batch -> batch.assignIds(tokens));
+        distinctTokens = tokens.size();
+        for (int id = 0; id < tokens.size(); id++) {
+            if (tokens.getToken(id).length() >= BIG_WORD_LENGTH) {
+                distinctBigWords++;
+            }
+        }
+    }
+
+    /**
+     * The createProperties method creates the properties of a run with the
+     * given reports
+     *
+     *@param reports    the output.file properties to set, without the
+     *      prefix
+     *@return   the properties
+     */
+    private Properties createProperties(String... reports) {
+        Properties properties = new Properties();
+        properties.setProperty("application.name", "Check");
+        properties.setProperty("author", "Check");
+        properties.setProperty("author.email.address", "check@localhost");
+        properties.setProperty("output.dir", directory.toString() + File.separator);
+        properties.setProperty("bigwords.minimum.length", String.valueOf(BIG_WORD_LENGTH));
+        properties.setProperty("file.path.keywords", keywordPath.toString());
+        for (String report : reports) {
+            properties.setProperty("output.file." + report, report + ".txt");
+        }
+        return properties;
+    }
+
+    /**
+     * The tableSize method runs the analyzers of a mode over the corpus,
+     * closes them and returns the number of tokens in the shared table
+     *
+     *@param properties the properties of the mode
+     *@return   the size of the shared table
+     *@exception IOException  if the corpus can not be read
+     */
+    private int tableSize(Properties properties) throws IOException {
+        List<Analyzer> analyzers = new AnalyzerRegistry(properties).createAnalyzers(properties);
+        try {
+            TokenDispatcher dispatcher = new TokenDispatcher(analyzers, true);
+            MappedFileTokenizer tokenizer = new MappedFileTokenizer(corpusPath.toString());
+            tokenizer.setPredicate(dispatcher.getTokenPredicate());
+            tokenizer.tokenize(new TokenBatch(), dispatcher::dispatch);
+            return dispatcher.getTokenTable().size();
+        } finally {
+            for (Analyzer analyzer : analyzers) {
+                analyzer.close();
+            }
+        }
+    }
+
+    /**
+     * The check method stops the check when a mode keeps more tokens in the
+     * shared table than it may
+     *
+     *@param name       the name of the mode
+     *@param properties the properties of the mode
+     *@param limit      the number of tokens the table may hold
+     *@exception IOException  if the corpus can not be read
+     */
+    public void check(String name, Properties properties, int limit) throws IOException {
+        int size = tableSize(properties);
+        if (size > limit) {
+            throw new IllegalStateException(name + ": shared table holds " + size
+                    + " tokens, more than " + limit);
+        }
+        System.out.println(name + ": " + size + " of " + distinctTokens
+                + " distinct tokens in the shared table, ok");
+    }
+
+    /**
+     * The checkApproximate method checks that approximate token counts add
+     * nothing to the shared table
+     *
+     *@exception IOException  if the corpus can not be read
+     */
+    public void checkApproximate() throws IOException {
+        Properties properties = createProperties("summary", "token.size", "token.count");
+        properties.setProperty("token.count.mode", "approximate");
+        check("approximate counts", properties, 0);
+    }
+
+    /**
+     * The checkEstimate method checks that with cardinality estimates only
+     * the big words, which the big word report lists, are added to the
+     * shared table
+     *
+     *@exception IOException  if the corpus can not be read
+     */
+    public void checkEstimate() throws IOException {
+        Properties properties = createProperties("summary", "unique", "bigwords",
+                "token.size", "keyword");
+        properties.setProperty("cardinality.mode", "estimate");
+        check("cardinality estimates", properties, distinctBigWords);
+    }
+
+    /**
+     * The checkSpill method checks that with every report and spilling on
+     * only the big words are added to the shared table, and that closing
+     * the analyzers deletes their runs
+     *
+     *@exception IOException  if the corpus or the spill directory can not
+     *      be read
+     */
+    public void checkSpill() throws IOException {
+        Path spillDirectory = directory.resolve("runs");
+        Properties properties = createProperties("summary", "unique", "bigwords",
+                "token.count", "token.size", "keyword");
+        properties.setProperty("spill.threshold.tokens", String.valueOf(SPILL_THRESHOLD));
+        properties.setProperty("spill.dir", spillDirectory.toString());
+        check("spilled runs", properties, distinctBigWords);
+        try (Stream<Path> runs = Files.list(spillDirectory)) {
+            long left = runs.count();
+            if (left > 0) {
+                throw new IllegalStateException("spilled runs: " + left
+                        + " run files left after the analyzers were closed");
+            }
+        }
+    }
+
+    /**
+     * The main method writes the corpus, checks each mode and deletes the
+     * files
+     *
+     *@param args   the size of the corpus in megabytes, optional
+     *@exception IOException  if a file can not be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MEGABYTES;
+        Path directory = Files.createTempDirectory("table-bound-check");
+        try {
+            TokenTableBoundCheck check = new TokenTableBoundCheck(directory);
+            check.write(megabytes);
+            check.checkApproximate();
+            check.checkEstimate();
+            check.checkSpill();
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder())
+                        .collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The TokenizerBenchmark class measures tokenizing the corpus without any
+ * analyzer. The mapped benchmark runs the MappedFileTokenizer used by
+ * default and the mappedScalar benchmark the same tokenizer with block
+ * scanning off. The reference benchmark reads lines and splits them on non word
+ * characters the same way as AnalyzeFile.createTokens in reference mode.
+ *
+ *@author   April Albaugh
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    /**
+     * The mapped method tokenizes the memory mapped corpus
+     *
+     *@param corpus     the corpus
+     *@param counters   the throughput counters
+     *@param blackhole  consumes the batches
+     *@exception IOException  if the corpus can not be read
+     */
+    @Benchmark
+    public void mapped(BenchmarkCorpus corpus, ThroughputCounters counters, Blackhole blackhole)
+            throws IOException {
+        MappedFileTokenizer tokenizer = new MappedFileTokenizer(corpus.getCorpusPath());
+        tokenizer.tokenize(new TokenBatch(), batch -> blackhole.consume(batch.size()));
+        counters.add(corpus);
+    }
+
+    /**
+     * The mappedScalar method tokenizes the memory mapped corpus one byte at
+     * a time
+     *
+     *@param corpus     the corpus
+     *@param counters   the throughput counters
+     *@param blackhole  consumes the batches
+     *@exception IOException  if the corpus can not be read
+     */
+    @Benchmark
+    public void mappedScalar(BenchmarkCorpus corpus, ThroughputCounters counters,
+            Blackhole blackhole) throws IOException {
+        MappedFileTokenizer tokenizer = new MappedFileTokenizer(corpus.getCorpusPath());
+        tokenizer.setBlockScan(false);
+        tokenizer.tokenize(new TokenBatch(), batch -> blackhole.consume(batch.size()));
+        counters.add(corpus);
+    }
+
+    /**
+     * The reference method tokenizes the corpus line by line with split
+     *
+     *@param corpus     the corpus
+     *@param counters   the throughput counters
+     *@param blackhole  consumes the tokens
+     *@exception IOException  if the corpus can not be read
+     */
+    @Benchmark
+    public void reference(BenchmarkCorpus corpus, ThroughputCounters counters,
+            Blackhole blackhole) throws IOException {
+        try (BufferedReader input = new BufferedReader(new FileReader(corpus.getCorpusPath()))) {
+            while (input.ready()) {
+                String[] tokenList = input.readLine().split("\\W");
+                for (int index = 0; index < tokenList.length; index++) {
+                    if (tokenList[index].length() > 0) {
+                        blackhole.consume(tokenList[index]);
+                    }
+                }
+            }
+        }
+        counters.add(corpus);
+    }
+
+}
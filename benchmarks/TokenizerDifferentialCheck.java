@@ -0,0 +1,256 @@
+package java112.analyzer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * The TokenizerDifferentialCheck class checks that the MappedFileTokenizer
+ * finds the same tokens as the reference tokenizer, which reads the file
+ * one line at a time and splits each line with split("\\W"). Inputs with
+ * multi byte UTF-8 characters, \r\n line ends, empty lines, tokens at every
+ * offset from an eight byte block and tokens longer than a probe are
+ * written to a file, and the tokens of the block scan, the byte by byte
+ * scan and the stream scan are compared with the reference, the mapped
+ * scans with segments of many sizes so that tokens cross the segment
+ * boundaries. It is run on its own, not by the benchmark runner:
+ *
+ *     java -cp ... java112.analyzer.TokenizerDifferentialCheck
+ *
+ *@author   April Albaugh
+ */
+
+public class TokenizerDifferentialCheck {
+
+    public static final long[] SEGMENT_SIZES = {1, 2, 3, 7, 8, 9, 13, 64, 4097,
+            MappedFileTokenizer.DEFAULT_SEGMENT_SIZE};
+    public static final String[] SEPARATORS = {" ", "\t", ".", "\u00e9", "\u2014", "\r\n",
+            "\n\n", "\r\n\r\n"};
+    public static final int BATCH_CAPACITY = 3;
+    public static final int RANDOM_LENGTH = 2000;
+    public static final long RANDOM_SEED = 42L;
+    public static final String RANDOM_CHARACTERS = "abcXYZ019_ _-.,;\t\r\n\u00e9\u00fc\u00df"
+            + "\u2014\u65e5\u672c";
+
+    private Path path;
+    private int checks;
+
+    /**
+     * Constructor for the TokenizerDifferentialCheck object
+     *
+     *@param path   the file each input is written to
+     */
+    public TokenizerDifferentialCheck(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * The createInputs method creates the inputs to check, by name
+     *
+     *@return   the inputs
+     */
+    public static Map<String, String> createInputs() {
+        Map<String, String> inputs = new LinkedHashMap<String, String>();
+        inputs.put("empty file", "");
+        inputs.put("separators only", " .,\r\n\r\n\t--\n");
+        inputs.put("non-ASCII", "caf\u00e9 na\u00efve Stra\u00dfe \u2014 r\u00e9sum\u00e9_2 "
+                + "\u65e5\u672c\u8a9e x\u00e9y \u00fcber\u00e9\n\u00e9start end\u00e9");
+        inputs.put("\\r\\n lines", "one two\r\nthree\r\n\r\nfour\r\n\rfive\r\n");
+        inputs.put("empty lines", "\n\n\nalpha\n\n beta \n\n\n");
+        inputs.put("no final newline", "first line\nlast_token");
+        inputs.put("block boundaries", createBlockInput());
+        inputs.put("long token", createLongInput());
+        inputs.put("random", createRandomInput());
+        return inputs;
+    }
+
+    /**
+     * The createBlockInput method creates an input that starts tokens of
+     * every length up to seventeen at every offset from an eight byte block,
+     * ending them with each separator in turn
+     *
+     *@return   the input
+     */
+    private static String createBlockInput() {
+        StringBuilder input = new StringBuilder();
+        int separator = 0;
+        for (int offset = 0; offset <= 16; offset++) {
+            for (int length = 1; length <= 17; length++) {
+                for (int space = 0; space < offset; space++) {
+                    input.append(' ');
+                }
+                for (int index = 0; index < length; index++) {
+                    input.append((char) ('a' + (offset + index) % 26));
+                }
+                input.append(SEPARATORS[separator++ % SEPARATORS.length]);
+            }
+        }
+        return input.toString();
+    }
+
+    /**
+     * The createLongInput method creates an input with tokens longer than
+     * the probe that moves a segment end past a token
+     *
+     *@return   the input
+     */
+    private static String createLongInput() {
+        StringBuilder input = new StringBuilder("short ");
+        for (int index = 0; index < MappedFileTokenizer.PROBE_SIZE * 2 + 5; index++) {
+            input.append((char) ('a' + index % 26));
+        }
+        input.append("\r\nmiddle\n");
+        for (int index = 0; index < MappedFileTokenizer.PROBE_SIZE + 1; index++) {
+            input.append('_');
+        }
+        return input.toString();
+    }
+
+    /**
+     * The createRandomInput method creates an input of characters drawn at
+     * random from RANDOM_CHARACTERS
+     *
+     *@return   the input
+     */
+    private static String createRandomInput() {
+        Random random = new Random(RANDOM_SEED);
+        StringBuilder input = new StringBuilder();
+        for (int index = 0; index < RANDOM_LENGTH; index++) {
+            input.append(RANDOM_CHARACTERS.charAt(random.nextInt(RANDOM_CHARACTERS.length())));
+        }
+        return input.toString();
+    }
+
+    /**
+     * The referenceTokens method reads the file one line at a time and
+     * splits each line as the reference tokenizer does, skipping the empty
+     * tokens the analyzers ignore
+     *
+     *@return   the tokens in file order
+     *@exception IOException  if the file can not be read
+     */
+    public List<String> referenceTokens() throws IOException {
+        List<String> tokens = new ArrayList<String>();
+        try (BufferedReader input = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line = null;
+            while ((line = input.readLine()) != null) {
+                for (String token : line.split("\\W")) {
+                    if (!token.isEmpty()) {
+                        tokens.add(token);
+                    }
+                }
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * The mappedTokens method maps the file and returns its tokens
+     *
+     *@param blockScan      true to scan eight bytes at a time
+     *@param segmentSize    the size of a segment
+     *@return   the tokens in file order
+     *@exception IOException  if the file can not be mapped
+     */
+    public List<String> mappedTokens(boolean blockScan, long segmentSize) throws IOException {
+        List<String> tokens = new ArrayList<String>();
+        MappedFileTokenizer tokenizer = new MappedFileTokenizer(path.toString());
+        tokenizer.setBlockScan(blockScan);
+        tokenizer.setSegmentSize(segmentSize);
+        tokenizer.tokenize(new TokenBatch(BATCH_CAPACITY), batch -> addTokens(batch, tokens));
+        return tokens;
+    }
+
+    /**
+     * The streamTokens method reads the file as a stream and returns its
+     * tokens
+     *
+     *@return   the tokens in file order
+     *@exception IOException  if the file can not be read
+     */
+    public List<String> streamTokens() throws IOException {
+        List<String> tokens = new ArrayList<String>();
+        try (InputStream input = Files.newInputStream(path)) {
+            new MappedFileTokenizer(path.toString()).tokenize(input,
+                    new TokenBatch(BATCH_CAPACITY), batch -> addTokens(batch, tokens));
+        }
+        return tokens;
+    }
+
+    /**
+     * The addTokens method adds every token of a batch to a list
+     *
+     *@param batch  the batch
+     *@param tokens the list
+     */
+    private static void addTokens(TokenBatch batch, List<String> tokens) {
+        for (int index = 0; index < batch.size(); index++) {
+            tokens.add(batch.getToken(index));
+        }
+    }
+
+    /**
+     * The check method writes an input and compares the tokens of every
+     * scan with the reference
+     *
+     *@param name   the name of the input
+     *@param input  the input
+     *@exception IOException  if the file can not be written or read
+     */
+    public void check(String name, String input) throws IOException {
+        Files.write(path, input.getBytes(StandardCharsets.UTF_8));
+        List<String> expected = referenceTokens();
+        for (long segmentSize : SEGMENT_SIZES) {
+            expect(name + ", block scan, segment " + segmentSize, expected,
+                    mappedTokens(true, segmentSize));
+            expect(name + ", scalar scan, segment " + segmentSize, expected,
+                    mappedTokens(false, segmentSize));
+        }
+        expect(name + ", stream", expected, streamTokens());
+        System.out.println(name + ": " + expected.size() + " tokens, ok");
+    }
+
+    /**
+     * The expect method stops the check at the first token that differs
+     * from the reference
+     *
+     *@param name       the name of the scan
+     *@param expected   the reference tokens
+     *@param actual     the tokens of the scan
+     */
+    private void expect(String name, List<String> expected, List<String> actual) {
+        checks++;
+        int size = Math.min(expected.size(), actual.size());
+        for (int index = 0; index < size; index++) {
+            if (!expected.get(index).equals(actual.get(index))) {
+                throw new IllegalStateException(name + ": token " + index + " expected "
+                        + expected.get(index) + " but was " + actual.get(index));
+            }
+        }
+        if (expected.size() != actual.size()) {
+            throw new IllegalStateException(name + ": expected " + expected.size()
+                    + " tokens but was " + actual.size());
+        }
+    }
+
+    /**
+     * The main method checks every input and deletes the file
+     *
+     *@param args   not used
+     *@exception IOException  if the file can not be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        Path path = Files.createTempFile("tokenizer-check", ".txt");
+        try {
+            TokenizerDifferentialCheck check = new TokenizerDifferentialCheck(path);
+            for (Map.Entry<String, String> input : createInputs().entrySet()) {
+                check.check(input.getKey(), input.getValue());
+            }
+            System.out.println(check.checks + " scans match the reference");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+}